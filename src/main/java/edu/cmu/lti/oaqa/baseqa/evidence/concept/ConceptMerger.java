@@ -15,7 +15,7 @@
 package edu.cmu.lti.oaqa.baseqa.evidence.concept;
 
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toSet;
+import static java.util.stream.Collectors.toCollection;
 
 import java.util.*;
 
@@ -25,10 +25,6 @@ import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
-import org.jgrapht.UndirectedGraph;
-import org.jgrapht.alg.ConnectivityInspector;
-import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.graph.SimpleGraph;
 
 import com.google.common.base.CharMatcher;
 
@@ -56,6 +52,9 @@ import org.slf4j.LoggerFactory;
  *   into disconnected {@link Concept}s using a connected graph identification algorithm.
  *   Specifically, two {@link Concept}s are combined if they share either the same Concept ID or the
  *   same Concept name.
+ *   The connected components are found by a union-find over the indexes of the concepts and of
+ *   their distinct IDs and normalized names, and the merged {@link Concept}s are created in the
+ *   order of their first concepts.
  * </p>
  *
  * @author <a href="mailto:ziy@cs.cmu.edu">Zi Yang</a> created on 4/19/25
@@ -68,8 +67,6 @@ public class ConceptMerger extends JCasAnnotator_ImplBase {
 
   private boolean useName;
 
-  private static final String UUID_PREFIX = "__UUID__";
-
   private static CharMatcher alphaNumeric = CharMatcher.JAVA_LETTER_OR_DIGIT;
 
   private static final Logger LOG = LoggerFactory.getLogger(ConceptMerger.class);
@@ -84,7 +81,6 @@ public class ConceptMerger extends JCasAnnotator_ImplBase {
     useName = UimaContextHelper.getConfigParameterBooleanValue(context, "use-name", true);
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public void process(JCas jcas) throws AnalysisEngineProcessException {
     // create views and get all concepts in the views
@@ -95,53 +91,91 @@ public class ConceptMerger extends JCasAnnotator_ImplBase {
     views.addAll(ViewType.listViews(jcas, viewNamePrefix));
     List<Concept> concepts = views.stream().map(TypeUtil::getConcepts).flatMap(Collection::stream)
             .collect(toList());
-    // preserve concept fields
-    Set<String> uuids = new HashSet<>();
-    SetMultimap<String, String> uuid2ids = HashMultimap.create();
-    SetMultimap<String, String> uuid2names = HashMultimap.create();
-    SetMultimap<String, String> uuid2uris = HashMultimap.create();
-    SetMultimap<String, ConceptMention> uuid2mentions = HashMultimap.create();
-    SetMultimap<String, List<String>> uuid2types = HashMultimap.create();
-    for (Concept concept : concepts) {
-      String uuid = UUID_PREFIX + UUID.randomUUID().toString();
-      uuids.add(uuid);
-      uuid2ids.putAll(uuid, TypeUtil.getConceptIds(concept));
-      uuid2names.putAll(uuid, TypeUtil.getConceptNames(concept));
-      uuid2uris.putAll(uuid, TypeUtil.getConceptUris(concept));
-      uuid2mentions.putAll(uuid, TypeUtil.getConceptMentions(concept));
+    // preserve concept fields, and link each concept to its ids and name keys, which share the
+    // same key space and are indexed after the concepts
+    int n = concepts.size();
+    List<Collection<String>> conceptIds = new ArrayList<>(n);
+    List<Collection<String>> conceptNames = new ArrayList<>(n);
+    List<Collection<String>> conceptUris = new ArrayList<>(n);
+    List<Collection<ConceptMention>> conceptMentions = new ArrayList<>(n);
+    List<Collection<List<String>>> conceptTypes = new ArrayList<>(n);
+    Map<String, Integer> key2index = new HashMap<>();
+    UnionFind uf = new UnionFind(n);
+    for (int i = 0; i < n; i++) {
+      Concept concept = concepts.get(i);
+      Collection<String> ids = new LinkedHashSet<>(TypeUtil.getConceptIds(concept));
+      Collection<String> names = new LinkedHashSet<>(TypeUtil.getConceptNames(concept));
+      conceptIds.add(ids);
+      conceptNames.add(names);
+      conceptUris.add(new LinkedHashSet<>(TypeUtil.getConceptUris(concept)));
+      conceptMentions.add(new LinkedHashSet<>(TypeUtil.getConceptMentions(concept)));
       // also remove duplicated concept type entries
-      TypeUtil.getConceptTypes(concept).forEach(type -> uuid2types.put(uuid, toTypeList(type)));
-    }
-    // connectivity detection for merging
-    UndirectedGraph<String, DefaultEdge> graph = new SimpleGraph<>(DefaultEdge.class);
-    uuids.forEach(graph::addVertex);
-    uuid2ids.values().forEach(graph::addVertex);
-    uuid2ids.entries().forEach(entry -> graph.addEdge(entry.getKey(), entry.getValue()));
-    if (useName) {
-      uuid2names.values().stream().map(ConceptMerger::nameKey).forEach(graph::addVertex);
-      uuid2names.entries().forEach(entry -> graph.addEdge(entry.getKey(), nameKey(entry.getValue())));
+      conceptTypes.add(TypeUtil.getConceptTypes(concept).stream().map(ConceptMerger::toTypeList)
+              .collect(toCollection(LinkedHashSet::new)));
+      for (String id : ids) {
+        if (id != null) {
+          uf.union(i, key2index.computeIfAbsent(id, key -> uf.add()));
+        }
+      }
+      if (useName) {
+        for (String name : names) {
+          if (name != null) {
+            uf.union(i, key2index.computeIfAbsent(nameKey(name), key -> uf.add()));
+          }
+        }
+      }
     }
     views.forEach(view -> view.removeAllIncludingSubtypes(Concept.type));
-    ConnectivityInspector<String, DefaultEdge> ci = new ConnectivityInspector<>(graph);
+    // group the concepts by their roots, in the order of their first concepts
+    int[] root2group = new int[uf.size()];
+    Arrays.fill(root2group, -1);
+    int[] concept2group = new int[n];
+    int[] groupSizes = new int[n + 1];
+    int ngroups = 0;
+    for (int i = 0; i < n; i++) {
+      int root = uf.find(i);
+      if (root2group[root] < 0) {
+        root2group[root] = ngroups++;
+      }
+      concept2group[i] = root2group[root];
+      groupSizes[concept2group[i] + 1]++;
+    }
+    int[] groupStarts = new int[ngroups + 1];
+    for (int g = 0; g < ngroups; g++) {
+      groupStarts[g + 1] = groupStarts[g] + groupSizes[g + 1];
+    }
+    int[] groupedConcepts = new int[n];
+    int[] fill = Arrays.copyOf(groupStarts, ngroups);
+    for (int i = 0; i < n; i++) {
+      groupedConcepts[fill[concept2group[i]]++] = i;
+    }
     Multiset<Integer> mergedSizes = HashMultiset.create();
-    List<Concept> mergedConcepts = ci.connectedSets().stream().map(subgraph -> {
-      Set<String> cuuids = subgraph.stream().filter(str -> str.startsWith(UUID_PREFIX))
-              .collect(toSet());
-      List<String> ids = cuuids.stream().map(uuid2ids::get).flatMap(Set::stream)
-              .filter(Objects::nonNull).distinct().collect(toList());
-      List<String> names = cuuids.stream().map(uuid2names::get).flatMap(Set::stream)
-              .filter(Objects::nonNull).distinct().collect(toList());
-      List<String> uris = cuuids.stream().map(uuid2uris::get).flatMap(Set::stream)
-              .filter(Objects::nonNull).distinct().collect(toList());
-      List<ConceptType> types = cuuids.stream().map(uuid2types::get).flatMap(Set::stream)
-              .filter(Objects::nonNull).distinct().map(type -> parseTypeList(jcas, type))
+    List<Concept> mergedConcepts = new ArrayList<>(ngroups);
+    for (int g = 0; g < ngroups; g++) {
+      Set<String> ids = new LinkedHashSet<>();
+      Set<String> names = new LinkedHashSet<>();
+      Set<String> uris = new LinkedHashSet<>();
+      Set<List<String>> typeLists = new LinkedHashSet<>();
+      List<ConceptMention> mentions = new ArrayList<>();
+      for (int k = groupStarts[g]; k < groupStarts[g + 1]; k++) {
+        int i = groupedConcepts[k];
+        ids.addAll(conceptIds.get(i));
+        names.addAll(conceptNames.get(i));
+        uris.addAll(conceptUris.get(i));
+        typeLists.addAll(conceptTypes.get(i));
+        mentions.addAll(conceptMentions.get(i));
+      }
+      ids.remove(null);
+      names.remove(null);
+      uris.remove(null);
+      typeLists.remove(null);
+      mentions.removeIf(Objects::isNull);
+      List<ConceptType> types = typeLists.stream().map(type -> parseTypeList(jcas, type))
               .collect(toList());
-      List<ConceptMention> mentions = cuuids.stream().map(uuid2mentions::get).flatMap(Set::stream)
-              .filter(Objects::nonNull).collect(toList());
-      mergedSizes.add(cuuids.size());
-      return TypeFactory.createConcept(jcas, names, uris, ImmutableList.copyOf(ids), mentions,
-              types);
-    }).collect(toList());
+      mergedSizes.add(groupStarts[g + 1] - groupStarts[g]);
+      mergedConcepts.add(TypeFactory.createConcept(jcas, new ArrayList<>(names),
+              new ArrayList<>(uris), ImmutableList.copyOf(ids), mentions, types));
+    }
     mergedConcepts.forEach(Concept::addToIndexes);
     LOG.info("Merged concepts from {} concepts.", mergedSizes);
     if (LOG.isDebugEnabled()) {
@@ -18,12 +18,14 @@ import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 import org.apache.uima.UimaContext;
@@ -57,7 +59,8 @@ public class ConceptSearcher extends JCasAnnotator_ImplBase {
 
   private SynonymExpansionProvider synonymExpanisonProvider;
 
-  private static final String NAME_NORMALIZATION = " \\(.*?\\)$| \\[.*?\\]$|\\*|\\^";
+  private static final Pattern NAME_NORMALIZATION = Pattern
+          .compile(" \\(.*?\\)$| \\[.*?\\]$|\\*|\\^");
 
   private static final Logger LOG = LoggerFactory.getLogger(ConceptSearcher.class);
 
@@ -79,12 +82,15 @@ public class ConceptSearcher extends JCasAnnotator_ImplBase {
     Collection<Concept> concepts = TypeUtil.getConcepts(jcas);
     Set<Concept> missingIdConcepts = concepts.stream()
             .filter(concept -> TypeUtil.getConceptIds(concept).isEmpty()).collect(toSet());
-    // retrieving IDs
+    // retrieving IDs, in a batch of distinct names
     LOG.info("Retrieving IDs for {} concepts.", missingIdConcepts.size());
+    Set<String> missingIdNames = missingIdConcepts.stream()
+            .map(TypeUtil::getConceptPreferredName).filter(Objects::nonNull).collect(toSet());
+    Map<String, Optional<Concept>> name2response = conceptSearchProvider.search(jcas,
+            missingIdNames);
     for (Concept concept : missingIdConcepts) {
-      Optional<Concept> response = conceptSearchProvider.search(jcas,
-              TypeUtil.getConceptPreferredName(concept));
-      response.ifPresent(c -> TypeUtil.mergeConcept(jcas, concept, c));
+      name2response.getOrDefault(TypeUtil.getConceptPreferredName(concept), Optional.empty())
+              .ifPresent(c -> TypeUtil.mergeConcept(jcas, concept, c));
     }
     // retrieving synonyms (names)
     LOG.info("Retrieving synonyms for {} concepts.", concepts.size());
@@ -95,12 +101,17 @@ public class ConceptSearcher extends JCasAnnotator_ImplBase {
     }
     Map<String, Set<String>> id2synonyms = synonymExpanisonProvider
             .getSynonyms(id2concept.keySet());
+    // each distinct name is normalized only once
+    Map<String, String> name2normalized = new HashMap<>();
     for (Map.Entry<String, Concept> entry : id2concept.entrySet()) {
       String id = entry.getKey();
       Concept concept = entry.getValue();
       List<String> names = Stream
-              .concat(TypeUtil.getConceptNames(concept).stream(), id2synonyms.get(id).stream())
-              .filter(Objects::nonNull).map(name -> name.replaceAll(NAME_NORMALIZATION, ""))
+              .concat(TypeUtil.getConceptNames(concept).stream(),
+                      id2synonyms.getOrDefault(id, Collections.emptySet()).stream())
+              .filter(Objects::nonNull).distinct()
+              .map(name -> name2normalized.computeIfAbsent(name,
+                      n -> NAME_NORMALIZATION.matcher(n).replaceAll("")))
               .distinct().collect(toList());
       concept.setNames(FSCollectionFactory.createStringList(jcas, names));
     }
@@ -0,0 +1,80 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.cmu.lti.oaqa.baseqa.evidence.concept;
+
+import java.util.Arrays;
+
+/**
+ * A union-find over integer indexes, with path compression and union by size, used by
+ * {@link ConceptMerger} to find the connected components of the concepts and their keys.
+ * The indexes are allocated in order by {@link #add()}, and the arrays grow as needed.
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+final class UnionFind {
+
+  private int[] parent;
+
+  private int[] size;
+
+  private int count;
+
+  UnionFind(int n) {
+    parent = new int[Math.max(16, 2 * n)];
+    size = new int[parent.length];
+    for (int i = 0; i < n; i++) {
+      add();
+    }
+  }
+
+  int add() {
+    if (count == parent.length) {
+      parent = Arrays.copyOf(parent, 2 * count);
+      size = Arrays.copyOf(size, 2 * count);
+    }
+    parent[count] = count;
+    size[count] = 1;
+    return count++;
+  }
+
+  int size() {
+    return count;
+  }
+
+  int find(int x) {
+    while (parent[x] != x) {
+      parent[x] = parent[parent[x]];
+      x = parent[x];
+    }
+    return x;
+  }
+
+  void union(int x, int y) {
+    int rx = find(x);
+    int ry = find(y);
+    if (rx == ry) {
+      return;
+    }
+    if (size[rx] < size[ry]) {
+      int tmp = rx;
+      rx = ry;
+      ry = tmp;
+    }
+    parent[ry] = rx;
+    size[rx] += size[ry];
+  }
+
+}
@@ -14,6 +14,7 @@
 
 package edu.cmu.lti.oaqa.baseqa.evidence.parse;
 
+import edu.cmu.lti.oaqa.baseqa.providers.parser.ParsedToken;
 import edu.cmu.lti.oaqa.baseqa.providers.parser.ParserProvider;
 import edu.cmu.lti.oaqa.baseqa.util.ProviderCache;
 import edu.cmu.lti.oaqa.baseqa.util.UimaContextHelper;
@@ -25,11 +26,19 @@ import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This {@link JCasAnnotator_ImplBase} uses a {@link ParserProvider} to parse and annotate the
  * passages residing in the individual views.
+ * If <tt>nthreads</tt> is greater than 1, the view texts are parsed by
+ * {@link ParserProvider#parse(String)} on a pool of worker threads, and the {@link Token}s are
+ * created on the CAS thread in the order of the views.
  *
  * @see ParserProvider
  *
@@ -41,6 +50,8 @@ public class PassageParser extends JCasAnnotator_ImplBase {
 
   private String viewNamePrefix;
 
+  private ExecutorService es;
+
   @Override
   public void initialize(UimaContext context) throws ResourceInitializationException {
     super.initialize(context);
@@ -48,12 +59,52 @@ public class PassageParser extends JCasAnnotator_ImplBase {
             "parser-provider");
     parserProvider = ProviderCache.getProvider(parserProviderName, ParserProvider.class);
     viewNamePrefix = UimaContextHelper.getConfigParameterStringValue(context, "view-name-prefix");
+    int nthreads = UimaContextHelper.getConfigParameterIntValue(context, "nthreads", 1);
+    if (nthreads > 1) {
+      es = Executors.newFixedThreadPool(nthreads, r -> {
+        Thread thread = new Thread(r, "passage-parser");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
   }
 
   @Override
   public void process(JCas jcas) throws AnalysisEngineProcessException {
-    ViewType.listViews(jcas, viewNamePrefix).stream().map(parserProvider::parseDependency)
-            .flatMap(List::stream).forEach(Token::addToIndexes);
+    if (es == null) {
+      ViewType.listViews(jcas, viewNamePrefix).stream().map(parserProvider::parseDependency)
+              .flatMap(List::stream).forEach(Token::addToIndexes);
+      return;
+    }
+    List<JCas> views = ViewType.listViews(jcas, viewNamePrefix);
+    List<Future<List<ParsedToken>>> futures = new ArrayList<>();
+    for (JCas view : views) {
+      String text = view.getDocumentText();
+      futures.add(es.submit(() -> parserProvider.parse(text)));
+    }
+    try {
+      for (int i = 0; i < views.size(); i++) {
+        ParsedToken.createTokens(views.get(i), futures.get(i).get())
+                .forEach(Token::addToIndexes);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AnalysisEngineProcessException(e);
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof AnalysisEngineProcessException ?
+              (AnalysisEngineProcessException) e.getCause() :
+              new AnalysisEngineProcessException(e.getCause());
+    } finally {
+      futures.forEach(future -> future.cancel(true));
+    }
+  }
+
+  @Override
+  public void destroy() {
+    super.destroy();
+    if (es != null) {
+      es.shutdownNow();
+    }
   }
 
 }
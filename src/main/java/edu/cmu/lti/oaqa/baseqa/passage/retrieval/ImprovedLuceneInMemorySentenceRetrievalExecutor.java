@@ -19,13 +19,13 @@ import com.aliasi.sentences.SentenceChunker;
 import com.aliasi.sentences.SentenceModel;
 import com.aliasi.tokenizer.IndoEuropeanTokenizerFactory;
 import com.aliasi.tokenizer.TokenizerFactory;
+import edu.cmu.lti.oaqa.baseqa.providers.parser.ParsedToken;
 import edu.cmu.lti.oaqa.baseqa.providers.parser.ParserProvider;
 import edu.cmu.lti.oaqa.baseqa.providers.query.BagOfPhraseQueryStringConstructor;
 import edu.cmu.lti.oaqa.baseqa.providers.query.QueryStringConstructor;
 import edu.cmu.lti.oaqa.baseqa.passage.RetrievalUtil;
 import edu.cmu.lti.oaqa.baseqa.util.ProviderCache;
 import edu.cmu.lti.oaqa.baseqa.util.UimaContextHelper;
-import edu.cmu.lti.oaqa.type.nlp.Token;
 import edu.cmu.lti.oaqa.type.retrieval.AbstractQuery;
 import edu.cmu.lti.oaqa.type.retrieval.Passage;
 import edu.cmu.lti.oaqa.util.TypeUtil;
@@ -48,7 +48,6 @@ import org.apache.uima.UIMAException;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
-import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.slf4j.Logger;
@@ -311,15 +310,13 @@ public class ImprovedLuceneInMemorySentenceRetrievalExecutor extends JCasAnnotat
   private HashMap<String, String> sentenceAnalysis(String sentence) {
     HashMap<String, String> dependency = new HashMap<String, String>();
     try {
-      JCas snippetJcas = JCasFactory.createJCas();
-      snippetJcas.setDocumentText(sentence);
-      List<Token> tokens = parserProvider.parseDependency(snippetJcas);
-      for (Token tok : tokens) {
-        if (tok.getHead() == null)
+      // parsed without creating a JCas, and served from the cache if the provider is cached
+      List<ParsedToken> tokens = parserProvider.parse(sentence);
+      for (ParsedToken tok : tokens) {
+        if (tok.getHead() < 0)
           continue;
-        dependency.put(tok.getLemmaForm(), tok.getHead().getLemmaForm());
+        dependency.put(tok.getLemmaForm(), tokens.get(tok.getHead()).getLemmaForm());
       }
-      snippetJcas.release();
     } catch (UIMAException err) {
       err.printStackTrace();
     }
@@ -0,0 +1,257 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.baseqa.preprocess;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.cmu.lti.oaqa.baseqa.providers.kb.ConceptProvider;
+import edu.cmu.lti.oaqa.baseqa.providers.kb.SynonymExpansionProvider;
+import edu.cmu.lti.oaqa.type.kb.Concept;
+import edu.cmu.lti.oaqa.util.TypeUtil;
+
+/**
+ * <p>
+ *   A pipelined bulk cache warmer used by {@link PassageConceptCache} and
+ *   {@link QuestionConceptCache}.
+ *   The submitted texts are deduplicated against the last <tt>dedup-window</tt> distinct texts
+ *   (the cached providers skip the older duplicates anyway), and grouped into batches of
+ *   <tt>batch-size</tt>.
+ *   Each batch is sent to all the {@link ConceptProvider}s concurrently, and as soon as a provider
+ *   returns, the IDs of its concepts are sent to the {@link SynonymExpansionProvider}s, so that
+ *   reading the next questions, concept recognition and synonym expansion overlap.
+ * </p>
+ * <p>
+ *   Each provider has its own single-threaded executor, since the providers are not guaranteed to
+ *   be thread-safe (e.g. {@link edu.cmu.lti.oaqa.bioqa.providers.kb.MetaMapConceptProvider}
+ *   reuses its request configuration), and at most <tt>max-inflight-batches</tt> batches are
+ *   processed at the same time, beyond which {@link #submit(Collection)} blocks the caller.
+ *   A failed stage is put into a retry queue, which is processed after all the batches are
+ *   complete, up to <tt>max-retries</tt> times.
+ *   The throughput is reported in texts per second.
+ * </p>
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+class ConceptCacheWarmer {
+
+  @FunctionalInterface
+  private interface Stage {
+
+    void run() throws AnalysisEngineProcessException;
+
+  }
+
+  private static class RetryTask {
+
+    final String name;
+
+    final Stage stage;
+
+    int attempts;
+
+    RetryTask(String name, Stage stage) {
+      this.name = name;
+      this.stage = stage;
+    }
+
+  }
+
+  private final int batchSize;
+
+  private final int maxRetries;
+
+  private final Semaphore inflightBatches;
+
+  private final Map<ConceptProvider, ExecutorService> conceptExecutors;
+
+  private final Map<SynonymExpansionProvider, ExecutorService> synonymExecutors;
+
+  private final Set<String> submittedTexts;
+
+  private List<String> pendingTexts = new ArrayList<>();
+
+  private final List<CompletableFuture<Void>> batchFutures = new ArrayList<>();
+
+  private final Queue<RetryTask> retryQueue = new ConcurrentLinkedQueue<>();
+
+  private final AtomicLong warmedTextCount = new AtomicLong();
+
+  private long startTime;
+
+  private static final Logger LOG = LoggerFactory.getLogger(ConceptCacheWarmer.class);
+
+  ConceptCacheWarmer(List<ConceptProvider> conceptProviders,
+          List<SynonymExpansionProvider> synonymExpansionProviders, int batchSize,
+          int maxInflightBatches, int maxRetries, int dedupWindow) {
+    this.batchSize = batchSize;
+    // a bounded LRU set, so that a long warm-up does not keep all the texts in memory
+    this.submittedTexts = Collections.newSetFromMap(new LinkedHashMap<String, Boolean>(16, 0.75f,
+            true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+        return size() > dedupWindow;
+      }
+
+    });
+    this.maxRetries = maxRetries;
+    this.inflightBatches = new Semaphore(maxInflightBatches);
+    conceptExecutors = new LinkedHashMap<>();
+    conceptProviders.forEach(cp -> conceptExecutors.put(cp, Executors.newSingleThreadExecutor()));
+    synonymExecutors = new LinkedHashMap<>();
+    synonymExpansionProviders
+            .forEach(sep -> synonymExecutors.put(sep, Executors.newSingleThreadExecutor()));
+  }
+
+  void submit(Collection<String> texts) throws AnalysisEngineProcessException {
+    if (startTime == 0) startTime = System.currentTimeMillis();
+    texts.stream().filter(submittedTexts::add).forEachOrdered(pendingTexts::add);
+    if (pendingTexts.size() >= batchSize) {
+      dispatch(pendingTexts);
+      pendingTexts = new ArrayList<>();
+    }
+  }
+
+  /**
+   * Dispatches the remaining texts, waits for all the batches, processes the retry queue, and
+   * shuts down the executors.
+   *
+   * @throws AnalysisEngineProcessException if some stages still fail after the retries
+   */
+  void finish() throws AnalysisEngineProcessException {
+    if (startTime == 0) startTime = System.currentTimeMillis();
+    if (!pendingTexts.isEmpty()) {
+      dispatch(pendingTexts);
+      pendingTexts = new ArrayList<>();
+    }
+    CompletableFuture.allOf(batchFutures.toArray(new CompletableFuture[0])).join();
+    conceptExecutors.values().forEach(ExecutorService::shutdown);
+    synonymExecutors.values().forEach(ExecutorService::shutdown);
+    int failures = 0;
+    RetryTask task;
+    while ((task = retryQueue.poll()) != null) {
+      task.attempts++;
+      LOG.info("Retrying {} (attempt {}/{}).", task.name, task.attempts, maxRetries);
+      try {
+        task.stage.run();
+      } catch (AnalysisEngineProcessException | RuntimeException e) {
+        if (task.attempts < maxRetries) {
+          retryQueue.add(task);
+        } else {
+          LOG.error("Giving up {} after {} retries.", task.name, task.attempts, e);
+          failures++;
+        }
+      }
+    }
+    reportThroughput();
+    if (failures > 0) {
+      throw new AnalysisEngineProcessException(new IllegalStateException(
+              failures + " cache warm-up stages failed after " + maxRetries + " retries."));
+    }
+  }
+
+  private void dispatch(List<String> batch) throws AnalysisEngineProcessException {
+    try {
+      inflightBatches.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AnalysisEngineProcessException(e);
+    }
+    List<CompletableFuture<Void>> stages = conceptExecutors.entrySet().stream()
+            .map(entry -> CompletableFuture
+                    .supplyAsync(() -> recognizeConcepts(entry.getKey(), batch), entry.getValue())
+                    .thenCompose(this::expandSynonyms))
+            .collect(toList());
+    CompletableFuture<Void> batchFuture = CompletableFuture
+            .allOf(stages.toArray(new CompletableFuture[0])).whenComplete((v, t) -> {
+              inflightBatches.release();
+              warmedTextCount.addAndGet(batch.size());
+              reportThroughput();
+            });
+    batchFutures.removeIf(CompletableFuture::isDone);
+    batchFutures.add(batchFuture);
+  }
+
+  private List<Concept> recognizeConcepts(ConceptProvider conceptProvider, List<String> texts) {
+    String name = conceptProvider.getClass().getName();
+    try {
+      return conceptProvider.getConcepts(texts, name);
+    } catch (AnalysisEngineProcessException | RuntimeException e) {
+      LOG.warn("{} failed for {} texts, queued for retry.", name, texts.size(), e);
+      retryQueue.add(new RetryTask(name + " on " + texts.size() + " texts", () -> {
+        List<Concept> concepts = conceptProvider.getConcepts(texts, name);
+        for (SynonymExpansionProvider sep : synonymExecutors.keySet()) {
+          sep.getSynonyms(getAcceptedIds(sep, concepts));
+        }
+      }));
+      return Collections.emptyList();
+    }
+  }
+
+  private CompletableFuture<Void> expandSynonyms(List<Concept> concepts) {
+    if (concepts.isEmpty()) return CompletableFuture.completedFuture(null);
+    List<CompletableFuture<Void>> stages = synonymExecutors.entrySet().stream()
+            .map(entry -> CompletableFuture.runAsync(() -> {
+              SynonymExpansionProvider sep = entry.getKey();
+              Set<String> ids = getAcceptedIds(sep, concepts);
+              try {
+                sep.getSynonyms(ids);
+              } catch (AnalysisEngineProcessException | RuntimeException e) {
+                String name = sep.getClass().getName();
+                LOG.warn("{} failed for {} ids, queued for retry.", name, ids.size(), e);
+                retryQueue.add(new RetryTask(name + " on " + ids.size() + " ids",
+                        () -> sep.getSynonyms(ids)));
+              }
+            }, entry.getValue())).collect(toList());
+    return CompletableFuture.allOf(stages.toArray(new CompletableFuture[0]));
+  }
+
+  private static Set<String> getAcceptedIds(SynonymExpansionProvider sep,
+          List<Concept> concepts) {
+    return concepts.stream().map(TypeUtil::getConceptIds).flatMap(Collection::stream)
+            .filter(sep::accept).collect(toSet());
+  }
+
+  private void reportThroughput() {
+    long count = warmedTextCount.get();
+    double seconds = Math.max(System.currentTimeMillis() - startTime, 1) / 1000.0;
+    LOG.info("Warmed up {} texts in {} s ({} texts/s), {} stages queued for retry.", count,
+            String.format("%.1f", seconds), String.format("%.2f", count / seconds),
+            retryQueue.size());
+  }
+
+}
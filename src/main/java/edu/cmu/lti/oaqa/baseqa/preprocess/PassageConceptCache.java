@@ -14,7 +14,8 @@
 
 package edu.cmu.lti.oaqa.baseqa.preprocess;
 
-import java.util.ArrayList;
+import static java.util.stream.Collectors.toList;
+
 import java.util.Collection;
 import java.util.List;
 
@@ -46,6 +47,12 @@ import org.slf4j.LoggerFactory;
  *   to process the questions and passages individually than all together.
  *   The cache generated in this processing step can be reused later.
  * </p>
+ * <p>
+ *   The passages are warmed up by a {@link ConceptCacheWarmer} in the background, configured by
+ *   <tt>batch-size</tt>, <tt>max-inflight-batches</tt>, <tt>max-retries</tt>, and
+ *   <tt>dedup-window</tt>, so that the collection reader is only blocked when too many batches
+ *   are in flight.
+ * </p>
  *
  * @see QuestionConceptCache
  *
@@ -53,21 +60,23 @@ import org.slf4j.LoggerFactory;
  */
 public class PassageConceptCache extends JCasAnnotator_ImplBase {
 
-  private int batchSize;
-
   private List<ConceptProvider> conceptProviders;
 
   private List<SynonymExpansionProvider> synonymExpansionProviders;
 
-  private List<String> texts;
+  private ConceptCacheWarmer warmer;
 
   private static final Logger LOG = LoggerFactory.getLogger(PassageConceptCache.class);
 
   @Override
   public void initialize(UimaContext context) throws ResourceInitializationException {
     super.initialize(context);
-    texts = new ArrayList<>();
-    batchSize = UimaContextHelper.getConfigParameterIntValue(context, "batch-size", 500);
+    int batchSize = UimaContextHelper.getConfigParameterIntValue(context, "batch-size", 500);
+    int maxInflightBatches = UimaContextHelper.getConfigParameterIntValue(context,
+            "max-inflight-batches", 4);
+    int maxRetries = UimaContextHelper.getConfigParameterIntValue(context, "max-retries", 2);
+    int dedupWindow = UimaContextHelper.getConfigParameterIntValue(context, "dedup-window",
+            100000);
     // concept cache
     String conceptProviderNames = UimaContextHelper
             .getConfigParameterStringValue(context, "concept-providers");
@@ -77,29 +86,26 @@ public class PassageConceptCache extends JCasAnnotator_ImplBase {
             "synonym-expansion-providers");
     synonymExpansionProviders = ProviderCache.getProviders(synonymExpansionProviderNames,
             SynonymExpansionProvider.class);
+    warmer = new ConceptCacheWarmer(conceptProviders, synonymExpansionProviders, batchSize,
+            maxInflightBatches, maxRetries, dedupWindow);
   }
 
   @Override
   public void process(JCas jcas) throws AnalysisEngineProcessException {
     LOG.info("QID: {}", TypeUtil.getQuestion(jcas).getId());
     Collection<Passage> passages = TypeUtil.getRankedPassages(jcas);
-    passages.stream().map(Passage::getText).forEachOrdered(texts::add);
-    if (texts.size() > batchSize) {
-      try {
-        ConceptCacheUtil.cacheTexts(texts, conceptProviders, synonymExpansionProviders);
-      } catch (Exception ignored) {
-      } finally {
-        texts.clear();
-      }
-    }
+    warmer.submit(passages.stream().map(Passage::getText).collect(toList()));
   }
 
   @Override
   public void collectionProcessComplete() throws AnalysisEngineProcessException {
     super.collectionProcessComplete();
-    ConceptCacheUtil.cacheTexts(texts, conceptProviders, synonymExpansionProviders);
-    conceptProviders.forEach(ConceptProvider::destroy);
-    synonymExpansionProviders.forEach(SynonymExpansionProvider::destroy);
+    try {
+      warmer.finish();
+    } finally {
+      conceptProviders.forEach(ConceptProvider::destroy);
+      synonymExpansionProviders.forEach(SynonymExpansionProvider::destroy);
+    }
   }
 
 }
@@ -14,7 +14,7 @@
 
 package edu.cmu.lti.oaqa.baseqa.preprocess;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.uima.UimaContext;
@@ -54,12 +54,17 @@ public class QuestionConceptCache extends JCasAnnotator_ImplBase {
   
   private List<SynonymExpansionProvider> synonymExpansionProviders;
 
-  private List<String> texts;
+  private ConceptCacheWarmer warmer;
 
   @Override
   public void initialize(UimaContext context) throws ResourceInitializationException {
     super.initialize(context);
-    texts = new ArrayList<>();
+    int batchSize = UimaContextHelper.getConfigParameterIntValue(context, "batch-size", 500);
+    int maxInflightBatches = UimaContextHelper.getConfigParameterIntValue(context,
+            "max-inflight-batches", 4);
+    int maxRetries = UimaContextHelper.getConfigParameterIntValue(context, "max-retries", 2);
+    int dedupWindow = UimaContextHelper.getConfigParameterIntValue(context, "dedup-window",
+            100000);
     // concept cache
     String conceptProviderNames = UimaContextHelper
             .getConfigParameterStringValue(context, "concept-providers");
@@ -69,20 +74,25 @@ public class QuestionConceptCache extends JCasAnnotator_ImplBase {
             "synonym-expansion-providers");
     synonymExpansionProviders = ProviderCache.getProviders(synonymExpansionProviderNames,
             SynonymExpansionProvider.class);
+    warmer = new ConceptCacheWarmer(conceptProviders, synonymExpansionProviders, batchSize,
+            maxInflightBatches, maxRetries, dedupWindow);
   }
 
   @Override
   public void process(JCas jcas) throws AnalysisEngineProcessException {
     Question question = TypeUtil.getQuestion(jcas);
-    texts.add(question.getText());
+    warmer.submit(Collections.singletonList(question.getText()));
   }
 
   @Override
   public void collectionProcessComplete() throws AnalysisEngineProcessException {
     super.collectionProcessComplete();
-    ConceptCacheUtil.cacheTexts(texts, conceptProviders, synonymExpansionProviders);
-    conceptProviders.forEach(ConceptProvider::destroy);
-    synonymExpansionProviders.forEach(SynonymExpansionProvider::destroy);
+    try {
+      warmer.finish();
+    } finally {
+      conceptProviders.forEach(ConceptProvider::destroy);
+      synonymExpansionProviders.forEach(SynonymExpansionProvider::destroy);
+    }
   }
 
 }
@@ -21,7 +21,10 @@ import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.Resource;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -36,6 +39,10 @@ import java.util.Optional;
  * ontology, since some {@link ConceptProvider}s make "guess" based on their morphological
  * structures.
  * </p>
+ * <p>
+ * {@link #search(JCas, Collection)} looks up a batch of concept names at once, which an
+ * implementation backed by a remote service should override to send the requests in parallel.
+ * </p>
  *
  * @see ConceptProvider
  *
@@ -55,6 +62,34 @@ public interface ConceptSearchProvider extends Resource {
 
   Optional<Concept> search(JCas jcas, String string) throws AnalysisEngineProcessException;
 
+  default Map<String, Optional<Concept>> search(Collection<String> strings)
+          throws AnalysisEngineProcessException {
+    JCas jcas;
+    try {
+      jcas = JCasFactory.createJCas();
+    } catch (UIMAException e) {
+      throw new AnalysisEngineProcessException(e);
+    }
+    return search(jcas, strings);
+  }
+
+  /**
+   * Looks up each distinct string, and creates the {@link Concept}s in the {@link JCas}, which
+   * should be called on the thread that owns the {@link JCas}.
+   *
+   * @return the search result of each distinct string, in the order of the strings
+   */
+  default Map<String, Optional<Concept>> search(JCas jcas, Collection<String> strings)
+          throws AnalysisEngineProcessException {
+    Map<String, Optional<Concept>> string2concept = new LinkedHashMap<>();
+    for (String string : strings) {
+      if (!string2concept.containsKey(string)) {
+        string2concept.put(string, search(jcas, string));
+      }
+    }
+    return string2concept;
+  }
+
   default Optional<Concept> search(JCas jcas, String string, String searchType)
           throws AnalysisEngineProcessException {
     return search(jcas, string, searchType, 1).stream().findFirst();
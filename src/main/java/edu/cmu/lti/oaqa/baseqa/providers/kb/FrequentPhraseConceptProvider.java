@@ -21,6 +21,7 @@ import edu.cmu.lti.oaqa.ecd.config.ConfigurableProvider;
 import edu.cmu.lti.oaqa.type.kb.Concept;
 import edu.cmu.lti.oaqa.type.kb.ConceptMention;
 import edu.cmu.lti.oaqa.util.TypeFactory;
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
@@ -37,6 +38,11 @@ import static java.util.stream.Collectors.toList;
  * Since it is based on frequency of phrases, it can only identify candidate {@link Concept}s for
  * relevant {@link edu.cmu.lti.oaqa.type.retrieval.Passage}s (after copied to views by
  * {@link edu.cmu.lti.oaqa.baseqa.evidence.PassageToViewCopier}), but not question.
+ * If <tt>incremental</tt> is enabled, the phrases are counted by a {@link PhraseStatistics} that
+ * is kept across the calls, where only the texts that are not among the last
+ * <tt>doc-cache-size</tt> texts are analyzed, and only the views that differ from the previous
+ * call are counted, and the candidates are scored by the standard C-value (instead of the
+ * <tt>type</tt> of {@link CValuePhraseScorer}).
  *
  * @see edu.cmu.lti.oaqa.baseqa.evidence.concept.PassageConceptRecognizer
  *
@@ -56,6 +62,14 @@ public class FrequentPhraseConceptProvider extends ConfigurableProvider implemen
 
   private double scoreRatioThreshold;
 
+  private boolean incremental;
+
+  private PhraseStatistics stats;
+
+  private Map<String, PhraseStatistics.Document> text2doc;
+
+  private Analyzer analyzer;
+
   @Override
   public boolean initialize(ResourceSpecifier aSpecifier, Map<String, Object> aAdditionalParams)
           throws ResourceInitializationException {
@@ -66,6 +80,23 @@ public class FrequentPhraseConceptProvider extends ConfigurableProvider implemen
     type = String.class.cast(getParameterValue("type"));
     scoreThreshold = Double.class.cast(getParameterValue("score-threshold"));
     scoreRatioThreshold = Double.class.cast(getParameterValue("score-ratio-threshold"));
+    incremental = Optional.ofNullable((Boolean) getParameterValue("incremental")).orElse(false);
+    if (incremental) {
+      int docCacheSize = Optional.ofNullable((Integer) getParameterValue("doc-cache-size"))
+              .orElse(10000);
+      stats = new PhraseStatistics(maxLength);
+      text2doc = new LinkedHashMap<String, PhraseStatistics.Document>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PhraseStatistics.Document> eldest) {
+          return size() > docCacheSize;
+        }
+
+      };
+      analyzer = new StandardAnalyzer();
+    }
     return true;
   }
 
@@ -77,6 +108,9 @@ public class FrequentPhraseConceptProvider extends ConfigurableProvider implemen
 
   @Override
   public List<Concept> getConcepts(List<JCas> jcases) throws AnalysisEngineProcessException {
+    if (incremental) {
+      return getConceptsIncrementally(jcases);
+    }
     List<String> texts = jcases.stream().map(JCas::getDocumentText).collect(toList());
     int support = Math.min(minFreq, (int) (minFreqRatio * jcases.size()));
     FrequentPhraseExtractor fpe = new FrequentPhraseExtractor(maxLength, support);
@@ -106,4 +140,60 @@ public class FrequentPhraseConceptProvider extends ConfigurableProvider implemen
     return concepts;
   }
 
+  private synchronized List<Concept> getConceptsIncrementally(List<JCas> jcases)
+          throws AnalysisEngineProcessException {
+    // only the texts that have not been seen recently are analyzed, or analyzed again if the
+    // vocabulary has been rebuilt since
+    List<PhraseStatistics.Document> docs = new ArrayList<>(jcases.size());
+    try {
+      for (JCas jcas : jcases) {
+        String text = jcas.getDocumentText();
+        PhraseStatistics.Document doc = text2doc.get(text);
+        if (doc == null || !stats.isCurrent(doc)) {
+          doc = stats.analyze(analyzer, text);
+          text2doc.put(text, doc);
+        }
+        docs.add(doc);
+      }
+    } catch (IOException e) {
+      throw new AnalysisEngineProcessException(e);
+    }
+    stats.update(docs);
+    int support = Math.min(minFreq, (int) (minFreqRatio * jcases.size()));
+    Map<Integer, Double> phrase2score = stats.getCValues(support);
+    if (phrase2score.isEmpty()) {
+      return new ArrayList<>();
+    }
+    double maxScore = Collections.max(phrase2score.values());
+    Map<Integer, Double> selected = new HashMap<>();
+    phrase2score.forEach((phrase, score) -> {
+      if (score >= scoreThreshold && score >= scoreRatioThreshold * maxScore) {
+        selected.put(phrase, score);
+      }
+    });
+    // create the mentions in the order of the views
+    Map<Integer, List<ConceptMention>> phrase2mentions = new LinkedHashMap<>();
+    for (int i = 0; i < jcases.size(); i++) {
+      JCas jcas = jcases.get(i);
+      for (int[] occurrence : stats.findOccurrences(docs.get(i), selected)) {
+        phrase2mentions.computeIfAbsent(occurrence[0], phrase -> new ArrayList<>())
+                .add(TypeFactory.createConceptMention(jcas, occurrence[1], occurrence[2]));
+      }
+    }
+    List<Concept> concepts = new ArrayList<>();
+    JCas refJCas = jcases.get(0);
+    phrase2mentions.forEach((phrase, cmentions) -> concepts.add(TypeFactory
+            .createConcept(refJCas, stats.getPhraseString(phrase), cmentions,
+                    TypeFactory.createConceptType(refJCas, "frequent-phrase"))));
+    return concepts;
+  }
+
+  @Override
+  public void destroy() {
+    super.destroy();
+    if (analyzer != null) {
+      analyzer.close();
+    }
+  }
+
 }
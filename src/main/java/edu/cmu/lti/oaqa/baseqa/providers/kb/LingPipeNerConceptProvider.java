@@ -16,7 +16,7 @@ package edu.cmu.lti.oaqa.baseqa.providers.kb;
 
 import com.aliasi.chunk.Chunker;
 import com.aliasi.chunk.Chunking;
-import com.aliasi.util.Streams;
+import com.google.common.io.ByteStreams;
 import edu.cmu.lti.oaqa.ecd.config.ConfigurableProvider;
 import edu.cmu.lti.oaqa.type.kb.Concept;
 import edu.cmu.lti.oaqa.util.TypeFactory;
@@ -25,16 +25,32 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.ResourceSpecifier;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-
-import static java.util.stream.Collectors.toList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A {@link ConceptProvider} that wraps <a href="alias-i.com/lingpipe/">LingPipe</a> NER.
  * One should specify the path to the chunker model in the descriptor via parameter
  * <tt>chunker-model</tt>.
+ * If <tt>nthreads</tt> is greater than 1, the views of a batch ({@link #getConcepts(List)}) are
+ * chunked on a pool of worker threads, and the {@link Concept}s are created on the calling thread
+ * in the order of the views.
+ * Since a {@link Chunker} is not thread-safe, the chunking borrows one from a pool of at most
+ * <tt>nthreads</tt> chunkers, which are deserialized from the same model only when all the others
+ * are in use, and waits if the pool is exhausted.
  *
  * <p>
  *   NOTE: LingPipe has its own special
@@ -45,31 +61,128 @@ import static java.util.stream.Collectors.toList;
  */
 public class LingPipeNerConceptProvider extends ConfigurableProvider implements ConceptProvider {
 
-  private Chunker chunker;
+  private byte[] modelBytes;
+
+  private int maxChunkers;
+
+  private final BlockingQueue<Chunker> idleChunkers = new LinkedBlockingQueue<>();
+
+  private final AtomicInteger numChunkers = new AtomicInteger();
+
+  private ExecutorService es;
 
   @Override
   public boolean initialize(ResourceSpecifier aSpecifier, Map<String, Object> aAdditionalParams)
           throws ResourceInitializationException {
     boolean ret = super.initialize(aSpecifier, aAdditionalParams);
     String model = String.class.cast(getParameterValue("chunker-model"));
-    try (ObjectInputStream ois = new ObjectInputStream(getClass().getResourceAsStream(model))) {
-      chunker = (Chunker) ois.readObject();
-      Streams.closeQuietly(ois);
+    try (InputStream is = getClass().getResourceAsStream(model)) {
+      modelBytes = ByteStreams.toByteArray(is);
+      idleChunkers.add(readChunker(modelBytes));
+      numChunkers.set(1);
     } catch (Exception e) {
       throw new ResourceInitializationException(e);
     }
+    Integer nthreads = Integer.class.cast(getParameterValue("nthreads"));
+    maxChunkers = nthreads == null ? 1 : Math.max(nthreads, 1);
+    if (nthreads != null && nthreads > 1) {
+      es = Executors.newFixedThreadPool(nthreads, r -> {
+        Thread thread = new Thread(r, "lingpipe-ner");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
     return ret;
   }
 
+  private static Chunker readChunker(byte[] bytes) throws IOException, ClassNotFoundException {
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return (Chunker) ois.readObject();
+    }
+  }
+
+  /**
+   * Takes an idle chunker, or deserializes a new one if fewer than <tt>nthreads</tt> have been
+   * created, or waits for one to be released otherwise.
+   */
+  private Chunker acquireChunker() throws InterruptedException {
+    Chunker chunker = idleChunkers.poll();
+    if (chunker != null) return chunker;
+    for (int n = numChunkers.get(); n < maxChunkers; n = numChunkers.get()) {
+      if (!numChunkers.compareAndSet(n, n + 1)) continue;
+      try {
+        return readChunker(modelBytes);
+      } catch (IOException | ClassNotFoundException e) {
+        numChunkers.decrementAndGet();
+        // the same model has been read once in initialize
+        throw new IllegalStateException(e);
+      }
+    }
+    return idleChunkers.take();
+  }
+
+  private Chunking chunk(String text) throws InterruptedException {
+    Chunker chunker = acquireChunker();
+    try {
+      return chunker.chunk(text);
+    } finally {
+      idleChunkers.add(chunker);
+    }
+  }
+
   @Override
   public List<Concept> getConcepts(JCas jcas) throws AnalysisEngineProcessException {
-    String text = jcas.getDocumentText();
-    Chunking chunking = chunker.chunk(text);
-    return chunking.chunkSet().stream().map(chunk -> {
-      return TypeFactory.createConcept(jcas,
+    return getConcepts(Collections.singletonList(jcas));
+  }
+
+  @Override
+  public List<Concept> getConcepts(List<JCas> jcases) throws AnalysisEngineProcessException {
+    List<Chunking> chunkings = new ArrayList<>(jcases.size());
+    if (es == null || jcases.size() < 2) {
+      try {
+        for (JCas jcas : jcases) {
+          chunkings.add(chunk(jcas.getDocumentText()));
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AnalysisEngineProcessException(e);
+      }
+    } else {
+      List<Future<Chunking>> futures = new ArrayList<>(jcases.size());
+      for (JCas jcas : jcases) {
+        String text = jcas.getDocumentText();
+        futures.add(es.submit(() -> chunk(text)));
+      }
+      try {
+        for (Future<Chunking> future : futures) {
+          chunkings.add(future.get());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AnalysisEngineProcessException(e);
+      } catch (ExecutionException e) {
+        throw new AnalysisEngineProcessException(e.getCause());
+      } finally {
+        futures.forEach(future -> future.cancel(true));
+      }
+    }
+    // create the annotations on the calling thread
+    List<Concept> concepts = new ArrayList<>();
+    for (int i = 0; i < jcases.size(); i++) {
+      JCas jcas = jcases.get(i);
+      chunkings.get(i).chunkSet().forEach(chunk -> concepts.add(TypeFactory.createConcept(jcas,
               TypeFactory.createConceptMention(jcas, chunk.start(), chunk.end()),
-              TypeFactory.createConceptType(jcas, "lingpipe:" + chunk.type()));
-    } ).collect(toList());
+              TypeFactory.createConceptType(jcas, "lingpipe:" + chunk.type()))));
+    }
+    return concepts;
+  }
+
+  @Override
+  public void destroy() {
+    super.destroy();
+    if (es != null) {
+      es.shutdownNow();
+    }
   }
 
 }
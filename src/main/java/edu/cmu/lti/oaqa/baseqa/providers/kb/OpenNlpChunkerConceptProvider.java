@@ -14,11 +14,12 @@
 
 package edu.cmu.lti.oaqa.baseqa.providers.kb;
 
-import static java.util.stream.Collectors.toList;
-
 import java.io.InputStream;
 import java.util.*;
-import java.util.stream.IntStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.google.common.collect.ImmutableSet;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
@@ -26,8 +27,6 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.ResourceSpecifier;
 
-import com.aliasi.util.Streams;
-
 import edu.cmu.lti.oaqa.ecd.config.ConfigurableProvider;
 import edu.cmu.lti.oaqa.type.kb.Concept;
 import edu.cmu.lti.oaqa.type.nlp.Token;
@@ -42,52 +41,130 @@ import opennlp.tools.util.Span;
  * {@link opennlp.tools.chunker.Chunker} to identify the phrases, and then annotates the sequences
  * of phrases based on the parameter <tt>type</tt> as {@link Concept}s.
  * Example <tt>type</tt>s can be "np", which means "noun phrase", or "np,pp,np", which means "a noun
- * phrase, followed by a prepositional phrase, then another noun phrase"
+ * phrase, followed by a prepositional phrase, then another noun phrase".
+ * If <tt>nthreads</tt> is greater than 1, the views of a batch ({@link #getConcepts(List)}) are
+ * chunked on a pool of worker threads, each of which has its own {@link ChunkerME} of the shared
+ * {@link ChunkerModel}, and the {@link Concept}s are created on the calling thread in the order of
+ * the views.
  *
  * @author <a href="mailto:ziy@cs.cmu.edu">Zi Yang</a> created on 3/12/16
  */
 public class OpenNlpChunkerConceptProvider extends ConfigurableProvider implements ConceptProvider {
 
-  private ChunkerME chunker;
+  private ThreadLocal<ChunkerME> chunker;
 
   private List<String> type;
 
   private int minLength;
 
+  private ExecutorService es;
+
   @Override
   public boolean initialize(ResourceSpecifier aSpecifier, Map<String, Object> aAdditionalParams)
           throws ResourceInitializationException {
     boolean ret = super.initialize(aSpecifier, aAdditionalParams);
     String model = String.class.cast(getParameterValue("chunker-model"));
     try (InputStream ois = getClass().getResourceAsStream(model)) {
-      chunker = new ChunkerME(new ChunkerModel(ois));
-      Streams.closeQuietly(ois);
+      // the model is thread-safe, whereas the chunker is not
+      ChunkerModel chunkerModel = new ChunkerModel(ois);
+      chunker = ThreadLocal.withInitial(() -> new ChunkerME(chunkerModel));
     } catch (Exception e) {
       throw new ResourceInitializationException(e);
     }
     type = Arrays.asList(String.class.cast(getParameterValue("type")).split(","));
     minLength = Integer.class.cast(getParameterValue("min-length"));
+    Integer nthreads = Integer.class.cast(getParameterValue("nthreads"));
+    if (nthreads != null && nthreads > 1) {
+      es = Executors.newFixedThreadPool(nthreads, r -> {
+        Thread thread = new Thread(r, "opennlp-chunker");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
     return ret;
   }
 
   @Override
   public List<Concept> getConcepts(JCas jcas) throws AnalysisEngineProcessException {
-    List<Token> tokens = TypeUtil.getOrderedTokens(jcas);
-    String[] texts = tokens.stream().map(Token::getCoveredText).toArray(String[]::new);
-    String[] pos = tokens.stream().map(Token::getPartOfSpeech).toArray(String[]::new);
-    List<Span> spans = insertOutsideSpans(chunker.chunkAsSpans(texts, pos));
-    return IntStream.rangeClosed(0, spans.size() - type.size())
-            .mapToObj(i -> spans.subList(i, i + type.size()))
-            .filter(spansSublist -> type
-                    .equals(spansSublist.stream().map(Span::getType).collect(toList())))
-            .map(spansSublist -> tokens.subList(spansSublist.get(0).getStart(),
-                    spansSublist.get(spansSublist.size() - 1).getEnd()))
-            .filter(toks -> toks.size() >= minLength)
-            .map(toks -> TypeFactory.createConceptMention(jcas, getFirstTokenBegin(toks),
-                    getLastTokenEnd(toks)))
-            .map(cmention -> TypeFactory.createConcept(jcas, cmention,
-                    TypeFactory.createConceptType(jcas, "opennlp:" + String.join("-", type))))
-            .collect(toList());
+    return getConcepts(Collections.singletonList(jcas));
+  }
+
+  @Override
+  public List<Concept> getConcepts(List<JCas> jcases) throws AnalysisEngineProcessException {
+    // read the tokens on the calling thread
+    List<List<Token>> viewTokens = new ArrayList<>(jcases.size());
+    List<String[]> viewTexts = new ArrayList<>(jcases.size());
+    List<String[]> viewPoses = new ArrayList<>(jcases.size());
+    for (JCas jcas : jcases) {
+      List<Token> tokens = TypeUtil.getOrderedTokens(jcas);
+      viewTokens.add(tokens);
+      viewTexts.add(tokens.stream().map(Token::getCoveredText).toArray(String[]::new));
+      viewPoses.add(tokens.stream().map(Token::getPartOfSpeech).toArray(String[]::new));
+    }
+    List<List<int[]>> viewRanges = new ArrayList<>(jcases.size());
+    if (es == null || jcases.size() < 2) {
+      for (int i = 0; i < jcases.size(); i++) {
+        viewRanges.add(getTokenRanges(viewTexts.get(i), viewPoses.get(i)));
+      }
+    } else {
+      List<Future<List<int[]>>> futures = new ArrayList<>(jcases.size());
+      for (int i = 0; i < jcases.size(); i++) {
+        String[] texts = viewTexts.get(i);
+        String[] poses = viewPoses.get(i);
+        futures.add(es.submit(() -> getTokenRanges(texts, poses)));
+      }
+      try {
+        for (Future<List<int[]>> future : futures) {
+          viewRanges.add(future.get());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AnalysisEngineProcessException(e);
+      } catch (ExecutionException e) {
+        throw new AnalysisEngineProcessException(e.getCause());
+      } finally {
+        futures.forEach(future -> future.cancel(true));
+      }
+    }
+    // create the annotations on the calling thread
+    String typeName = "opennlp:" + String.join("-", type);
+    List<Concept> concepts = new ArrayList<>();
+    for (int i = 0; i < jcases.size(); i++) {
+      JCas jcas = jcases.get(i);
+      List<Token> tokens = viewTokens.get(i);
+      for (int[] range : viewRanges.get(i)) {
+        List<Token> toks = tokens.subList(range[0], range[1]);
+        concepts.add(TypeFactory.createConcept(jcas,
+                TypeFactory.createConceptMention(jcas, getFirstTokenBegin(toks),
+                        getLastTokenEnd(toks)),
+                TypeFactory.createConceptType(jcas, typeName)));
+      }
+    }
+    return concepts;
+  }
+
+  /**
+   * @return the (begin, end) token indexes of the sequences of phrases that match the
+   *         <tt>type</tt> and have at least <tt>min-length</tt> tokens
+   */
+  private List<int[]> getTokenRanges(String[] texts, String[] poses) {
+    List<Span> spans = insertOutsideSpans(chunker.get().chunkAsSpans(texts, poses));
+    List<int[]> ranges = new ArrayList<>();
+    for (int i = 0; i + type.size() <= spans.size(); i++) {
+      boolean matched = true;
+      for (int j = 0; j < type.size() && matched; j++) {
+        matched = type.get(j).equals(spans.get(i + j).getType());
+      }
+      if (!matched) {
+        continue;
+      }
+      int begin = spans.get(i).getStart();
+      int end = spans.get(i + type.size() - 1).getEnd();
+      if (end - begin >= minLength) {
+        ranges.add(new int[] { begin, end });
+      }
+    }
+    return ranges;
   }
 
   private Set<Character> FORBIDDEN_POS_TAG_HEAD_LETTER = ImmutableSet.of('A', 'D', 'P', 'Q', 'W');
@@ -103,11 +180,22 @@ public class OpenNlpChunkerConceptProvider extends ConfigurableProvider implemen
   }
 
   private static List<Span> insertOutsideSpans(Span[] spans) {
-    List<Span> spansWithO = new LinkedList<>(Arrays.asList(spans));
-    IntStream.range(0, spans.length - 1).filter(i -> spans[i].getEnd() < spans[i + 1].getStart())
-            .forEach(i -> spansWithO.add(spansWithO.indexOf(spans[i + 1]),
-                    new Span(spans[i].getEnd(), spans[i + 1].getStart(), "O")));
+    List<Span> spansWithO = new ArrayList<>(2 * spans.length);
+    for (int i = 0; i < spans.length; i++) {
+      spansWithO.add(spans[i]);
+      if (i + 1 < spans.length && spans[i].getEnd() < spans[i + 1].getStart()) {
+        spansWithO.add(new Span(spans[i].getEnd(), spans[i + 1].getStart(), "O"));
+      }
+    }
     return spansWithO;
   }
 
+  @Override
+  public void destroy() {
+    super.destroy();
+    if (es != null) {
+      es.shutdownNow();
+    }
+  }
+
 }
@@ -0,0 +1,350 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.baseqa.providers.kb;
+
+import edu.cmu.lti.oaqa.baseqa.util.LongIntMap;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ *   Incremental n-gram statistics of a changing set of documents, used by
+ *   {@link FrequentPhraseConceptProvider}.
+ *   The n-grams (up to <tt>maxLength</tt> terms) are kept in a trie over term ids, whose edges are
+ *   a {@link LongIntMap} from (node, term) pairs to nodes, and whose occurrence counts are kept in
+ *   primitive arrays.
+ *   Adding or removing a document only walks the n-grams of that document, so the cost of moving
+ *   from one set of documents to an overlapping one scales with the changed documents.
+ *   N-grams do not span a gap left by a removed token (e.g. a stop word).
+ * </p>
+ * <p>
+ *   {@link #getCValues(int)} scores the candidate phrases, i.e. the n-grams that occur at least
+ *   <tt>support</tt> times, by <a href="https://doi.org/10.1007/s007999900023">C-value</a>:
+ *   <tt>log2(|a|) * (f(a) - sum(f(b)) / |T(a)|)</tt>, where <tt>T(a)</tt> is the set of longer
+ *   candidates that contain <tt>a</tt>.
+ *   Nodes and terms that no longer occur are reclaimed by rebuilding the trie and the vocabulary
+ *   from the counted documents when they outnumber the live ones.
+ *   The terms of the counted documents are renumbered in place, and any other document analyzed
+ *   before the rebuild is no longer {@link #isCurrent(Document) current}, and should be analyzed
+ *   again.
+ * </p>
+ *
+ * @see FrequentPhraseConceptProvider
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+class PhraseStatistics {
+
+  /**
+   * An analyzed document, where a gap between two terms is marked by a term id of -1, and the
+   * term ids are valid for the vocabulary of the given generation.
+   */
+  static final class Document {
+
+    final int[] terms;
+
+    final int[] begins;
+
+    final int[] ends;
+
+    int generation;
+
+    Document(int[] terms, int[] begins, int[] ends, int generation) {
+      this.terms = terms;
+      this.begins = begins;
+      this.ends = ends;
+      this.generation = generation;
+    }
+
+  }
+
+  private static final int MIN_REBUILD_NODES = 1 << 16;
+
+  private final int maxLength;
+
+  private final Map<String, Integer> term2id = new HashMap<>();
+
+  private final List<String> terms = new ArrayList<>();
+
+  // incremented whenever the vocabulary is rebuilt
+  private int generation;
+
+  // the edges, keyed by (node << 32 | term)
+  private LongIntMap edges;
+
+  private int numNodes;
+
+  private int[] parents;
+
+  private int[] nodeTerms;
+
+  private int[] depths;
+
+  private int[] counts;
+
+  private int numLiveNodes;
+
+  // the live nodes of depth 1, i.e. the terms that occur in the counted documents
+  private int numLiveTerms;
+
+  // the documents that are currently counted, with their multiplicities
+  private final Map<Document, Integer> doc2multiplicity = new IdentityHashMap<>();
+
+  PhraseStatistics(int maxLength) {
+    this.maxLength = maxLength;
+    clear();
+  }
+
+  private void clear() {
+    edges = new LongIntMap(1 << 12);
+    parents = new int[1 << 10];
+    nodeTerms = new int[1 << 10];
+    depths = new int[1 << 10];
+    counts = new int[1 << 10];
+    parents[0] = -1;
+    numNodes = 1;
+    numLiveNodes = 0;
+    numLiveTerms = 0;
+  }
+
+  /**
+   * Tokenizes the text with the analyzer, and interns the terms.
+   */
+  Document analyze(Analyzer analyzer, String text) throws IOException {
+    List<Integer> docTerms = new ArrayList<>();
+    List<Integer> begins = new ArrayList<>();
+    List<Integer> ends = new ArrayList<>();
+    try (TokenStream ts = analyzer.tokenStream("text", text)) {
+      CharTermAttribute termAttr = ts.addAttribute(CharTermAttribute.class);
+      OffsetAttribute offsetAttr = ts.addAttribute(OffsetAttribute.class);
+      PositionIncrementAttribute posIncAttr = ts.addAttribute(PositionIncrementAttribute.class);
+      ts.reset();
+      while (ts.incrementToken()) {
+        if (posIncAttr.getPositionIncrement() > 1 && !docTerms.isEmpty()) {
+          docTerms.add(-1);
+          begins.add(-1);
+          ends.add(-1);
+        }
+        String term = termAttr.toString();
+        Integer id = term2id.get(term);
+        if (id == null) {
+          id = terms.size();
+          term2id.put(term, id);
+          terms.add(term);
+        }
+        docTerms.add(id);
+        begins.add(offsetAttr.startOffset());
+        ends.add(offsetAttr.endOffset());
+      }
+      ts.end();
+    }
+    return new Document(docTerms.stream().mapToInt(Integer::intValue).toArray(),
+            begins.stream().mapToInt(Integer::intValue).toArray(),
+            ends.stream().mapToInt(Integer::intValue).toArray(), generation);
+  }
+
+  /**
+   * @return <tt>false</tt> if the vocabulary has been rebuilt since the document was analyzed and
+   *         the document was not counted at that time, in which case its term ids are stale
+   */
+  boolean isCurrent(Document doc) {
+    return doc.generation == generation;
+  }
+
+  /**
+   * Updates the statistics to count exactly the given documents, by adding the documents that
+   * are new or more frequent, and removing those that are no longer in the list or less frequent.
+   */
+  void update(List<Document> docs) {
+    Map<Document, Integer> target = new IdentityHashMap<>();
+    docs.forEach(doc -> target.merge(doc, 1, Integer::sum));
+    for (Map.Entry<Document, Integer> entry : new ArrayList<>(doc2multiplicity.entrySet())) {
+      int delta = target.getOrDefault(entry.getKey(), 0) - entry.getValue();
+      if (delta < 0) count(entry.getKey(), delta);
+    }
+    for (Map.Entry<Document, Integer> entry : target.entrySet()) {
+      int delta = entry.getValue() - doc2multiplicity.getOrDefault(entry.getKey(), 0);
+      if (delta > 0) count(entry.getKey(), delta);
+    }
+    doc2multiplicity.clear();
+    doc2multiplicity.putAll(target);
+    if (numNodes > MIN_REBUILD_NODES && numNodes > 2 * (numLiveNodes + 1)
+            || terms.size() > MIN_REBUILD_NODES && terms.size() > 2 * (numLiveTerms + 1)) {
+      rebuild();
+    }
+  }
+
+  /**
+   * Renumbers the terms of the counted documents into a new vocabulary, and recounts them.
+   */
+  private void rebuild() {
+    int[] old2new = new int[terms.size()];
+    Arrays.fill(old2new, -1);
+    List<String> oldTerms = new ArrayList<>(terms);
+    term2id.clear();
+    terms.clear();
+    generation++;
+    for (Document doc : doc2multiplicity.keySet()) {
+      int[] docTerms = doc.terms;
+      for (int i = 0; i < docTerms.length; i++) {
+        if (docTerms[i] < 0) continue;
+        if (old2new[docTerms[i]] < 0) {
+          old2new[docTerms[i]] = terms.size();
+          term2id.put(oldTerms.get(docTerms[i]), terms.size());
+          terms.add(oldTerms.get(docTerms[i]));
+        }
+        docTerms[i] = old2new[docTerms[i]];
+      }
+      doc.generation = generation;
+    }
+    clear();
+    doc2multiplicity.forEach(this::count);
+  }
+
+  private void count(Document doc, int delta) {
+    int[] docTerms = doc.terms;
+    for (int i = 0; i < docTerms.length; i++) {
+      int node = 0;
+      for (int j = i; j < docTerms.length && j - i < maxLength && docTerms[j] >= 0; j++) {
+        int next = get(node, docTerms[j]);
+        if (next < 0) {
+          next = newNode(node, docTerms[j]);
+        }
+        node = next;
+        int before = counts[node];
+        counts[node] += delta;
+        if (before <= 0 && counts[node] > 0) {
+          numLiveNodes++;
+          if (j == i) numLiveTerms++;
+        }
+        if (before > 0 && counts[node] <= 0) {
+          numLiveNodes--;
+          if (j == i) numLiveTerms--;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the C-value of each candidate phrase (a node id) that occurs at least
+   *         <tt>support</tt> times
+   */
+  Map<Integer, Double> getCValues(int support) {
+    int threshold = Math.max(support, 1);
+    double[] nestedFreqs = new double[numNodes];
+    int[] nestedCounts = new int[numNodes];
+    int[] lastContainer = new int[numNodes];
+    Arrays.fill(lastContainer, -1);
+    int[] sequence = new int[maxLength];
+    for (int node = 1; node < numNodes; node++) {
+      if (counts[node] < threshold || depths[node] < 2) continue;
+      int length = getTerms(node, sequence);
+      // every proper sub-phrase of a candidate is also a candidate, and is counted once
+      for (int i = 0; i < length; i++) {
+        int sub = 0;
+        for (int j = i; j < length; j++) {
+          sub = get(sub, sequence[j]);
+          if (sub < 0) break;
+          if (j - i + 1 == length || lastContainer[sub] == node) continue;
+          lastContainer[sub] = node;
+          nestedFreqs[sub] += counts[node];
+          nestedCounts[sub]++;
+        }
+      }
+    }
+    Map<Integer, Double> node2score = new HashMap<>();
+    for (int node = 1; node < numNodes; node++) {
+      if (counts[node] < threshold) continue;
+      double freq = nestedCounts[node] == 0 ? counts[node] :
+              counts[node] - nestedFreqs[node] / nestedCounts[node];
+      node2score.put(node, Math.log(depths[node]) / Math.log(2) * freq);
+    }
+    return node2score;
+  }
+
+  /**
+   * Finds the occurrences of the given phrases in the document.
+   *
+   * @return the (node, begin, end) triples of the occurrences
+   */
+  List<int[]> findOccurrences(Document doc, Map<Integer, ?> phrases) {
+    List<int[]> occurrences = new ArrayList<>();
+    int[] docTerms = doc.terms;
+    for (int i = 0; i < docTerms.length; i++) {
+      int node = 0;
+      for (int j = i; j < docTerms.length && j - i < maxLength && docTerms[j] >= 0; j++) {
+        node = get(node, docTerms[j]);
+        if (node < 0) break;
+        if (phrases.containsKey(node)) {
+          occurrences.add(new int[] { node, doc.begins[i], doc.ends[j] });
+        }
+      }
+    }
+    return occurrences;
+  }
+
+  String getPhraseString(int node) {
+    int[] sequence = new int[depths[node]];
+    int length = getTerms(node, sequence);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      if (i > 0) sb.append(' ');
+      sb.append(terms.get(sequence[i]));
+    }
+    return sb.toString();
+  }
+
+  private int getTerms(int node, int[] sequence) {
+    int length = depths[node];
+    for (int i = length - 1; i >= 0; i--) {
+      sequence[i] = nodeTerms[node];
+      node = parents[node];
+    }
+    return length;
+  }
+
+  private int newNode(int parent, int term) {
+    if (numNodes == counts.length) {
+      int capacity = numNodes * 2;
+      parents = Arrays.copyOf(parents, capacity);
+      nodeTerms = Arrays.copyOf(nodeTerms, capacity);
+      depths = Arrays.copyOf(depths, capacity);
+      counts = Arrays.copyOf(counts, capacity);
+    }
+    int node = numNodes++;
+    parents[node] = parent;
+    nodeTerms[node] = term;
+    depths[node] = depths[parent] + 1;
+    counts[node] = 0;
+    edges.put(LongIntMap.key(parent, term), node);
+    return node;
+  }
+
+  private int get(int node, int term) {
+    return edges.get(LongIntMap.key(node, term));
+  }
+
+}
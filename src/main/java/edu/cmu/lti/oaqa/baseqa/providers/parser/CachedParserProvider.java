@@ -0,0 +1,200 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.baseqa.providers.parser;
+
+import com.google.common.hash.Hashing;
+import edu.cmu.lti.oaqa.ecd.config.ConfigurableProvider;
+import edu.cmu.lti.oaqa.type.nlp.Token;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.CustomResourceSpecifier;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceSpecifier;
+import org.apache.uima.resource.impl.CustomResourceSpecifier_impl;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>
+ *   A {@link ParserProvider} that caches the parses of a delegate {@link ParserProvider} (specified
+ *   via <tt>delegate-class</tt>, which is initialized with the same parameters) in a local
+ *   <a href="http://www.mapdb.org/">MapDB</a> instance, so that a sentence retrieved again, e.g.
+ *   for another question, is not parsed again.
+ *   The key is the <tt>model-id</tt> of the delegate (e.g. <tt>clearnlp-medical</tt>), which
+ *   should be changed whenever the models change, and a 128-bit hash of the text, and the value is
+ *   a compact encoding of the {@link ParsedToken}s by {@link ParsedTokenCodec}.
+ * </p>
+ * <p>
+ *   {@link #parseDependency(JCas)} and {@link #parse(String)} are served from the cache, where a
+ *   hit rebuilds the {@link Token}s without invoking the delegate, whereas the individual steps,
+ *   e.g. {@link #tokenize(JCas)}, are always delegated.
+ *   The hit rate and the estimated time saved (from the average parse time per character of the
+ *   misses) are reported when the provider is destroyed.
+ * </p>
+ *
+ * @see ParsedToken
+ * @see ParsedTokenCodec
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class CachedParserProvider extends ConfigurableProvider implements ParserProvider {
+
+  private static final int COMMIT_INTERVAL = 100;
+
+  private ParserProvider delegate;
+
+  private String modelId;
+
+  private DB db;
+
+  private Map<String, byte[]> key2parse;
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong hitChars = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong missChars = new AtomicLong();
+
+  private final AtomicLong missNanos = new AtomicLong();
+
+  private static final Logger LOG = LoggerFactory.getLogger(CachedParserProvider.class);
+
+  @Override
+  public boolean initialize(ResourceSpecifier aSpecifier, Map<String, Object> aAdditionalParams)
+          throws ResourceInitializationException {
+    boolean ret = super.initialize(aSpecifier, aAdditionalParams);
+    // initialize delegate
+    String delegateClassName = String.class.cast(getParameterValue("delegate-class"));
+    Class<? extends ParserProvider> delegateClass;
+    try {
+      delegateClass = Class.forName(delegateClassName).asSubclass(ParserProvider.class);
+    } catch (ClassNotFoundException e) {
+      throw new ResourceInitializationException(e);
+    }
+    CustomResourceSpecifier delegateResourceSpecifier = new CustomResourceSpecifier_impl();
+    delegateResourceSpecifier.setResourceClassName(delegateClass.getCanonicalName());
+    delegate = delegateClass.cast(UIMAFramework.produceResource(delegateClass,
+            delegateResourceSpecifier, aAdditionalParams));
+    modelId = String.class.cast(getParameterValue("model-id"));
+    // initialize mapdb
+    File file = new File((String) getParameterValue("db-file"));
+    db = DBMaker.newFileDB(file).compressionEnable().commitFileSyncDisable().cacheSize(128)
+            .closeOnJvmShutdown().make();
+    key2parse = db.getHashMap((String) getParameterValue("map-name"));
+    return ret;
+  }
+
+  @Override
+  public List<Token> tokenize(JCas jcas) {
+    return delegate.tokenize(jcas);
+  }
+
+  @Override
+  public void tagPartOfSpeech(JCas jcas, List<Token> tokens) {
+    delegate.tagPartOfSpeech(jcas, tokens);
+  }
+
+  @Override
+  public void lemmatize(JCas jcas, List<Token> tokens) {
+    delegate.lemmatize(jcas, tokens);
+  }
+
+  @Override
+  public void parseDependency(JCas jcas, List<Token> tokens) {
+    delegate.parseDependency(jcas, tokens);
+  }
+
+  @Override
+  public List<Token> parseDependency(JCas jcas) {
+    String text = jcas.getDocumentText();
+    String key = getKey(text);
+    List<ParsedToken> cachedParsedTokens = get(key);
+    if (cachedParsedTokens != null) {
+      hit(text);
+      return ParsedToken.createTokens(jcas, cachedParsedTokens);
+    }
+    long start = System.nanoTime();
+    List<Token> tokens = delegate.parseDependency(jcas);
+    miss(text, System.nanoTime() - start, key, ParsedToken.fromTokens(tokens));
+    return tokens;
+  }
+
+  @Override
+  public List<ParsedToken> parse(String text) throws AnalysisEngineProcessException {
+    String key = getKey(text);
+    List<ParsedToken> cachedParsedTokens = get(key);
+    if (cachedParsedTokens != null) {
+      hit(text);
+      return cachedParsedTokens;
+    }
+    long start = System.nanoTime();
+    List<ParsedToken> parsedTokens = delegate.parse(text);
+    miss(text, System.nanoTime() - start, key, parsedTokens);
+    return parsedTokens;
+  }
+
+  private String getKey(String text) {
+    return modelId + "\t" + Hashing.murmur3_128().hashString(text, UTF_8);
+  }
+
+  /**
+   * @return the cached parse, or <tt>null</tt> if the key is not cached, or the entry is of an
+   * older {@link ParsedTokenCodec} version, and should be parsed again
+   */
+  private List<ParsedToken> get(String key) {
+    byte[] bytes = key2parse.get(key);
+    return bytes == null ? null : ParsedTokenCodec.decode(bytes);
+  }
+
+  private void hit(String text) {
+    hits.incrementAndGet();
+    hitChars.addAndGet(text.length());
+  }
+
+  private void miss(String text, long nanos, String key, List<ParsedToken> parsedTokens) {
+    missChars.addAndGet(text.length());
+    missNanos.addAndGet(nanos);
+    key2parse.put(key, ParsedTokenCodec.encode(parsedTokens));
+    if (misses.incrementAndGet() % COMMIT_INTERVAL == 0) {
+      db.commit();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    super.destroy();
+    long total = hits.get() + misses.get();
+    double nanosPerChar = missChars.get() == 0 ? 0 : (double) missNanos.get() / missChars.get();
+    LOG.info("Parse cache {}: {} hits of {} lookups ({}%), about {} ms saved.", modelId,
+            hits.get(), total, total == 0 ? 0 : 100 * hits.get() / total,
+            (long) (hitChars.get() * nanosPerChar / 1_000_000));
+    db.commit();
+    db.close();
+    delegate.destroy();
+  }
+
+}
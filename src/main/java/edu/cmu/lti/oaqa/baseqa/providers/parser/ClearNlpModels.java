@@ -0,0 +1,178 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.baseqa.providers.parser;
+
+import edu.emory.clir.clearnlp.component.mode.dep.DEPConfiguration;
+import edu.emory.clir.clearnlp.component.mode.dep.EnglishDEPParser;
+import edu.emory.clir.clearnlp.component.mode.pos.EnglishPOSTagger;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tukaani.xz.XZInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>
+ *   A process-wide registry of the XZ-compressed <a href="https://github.com/clir/clearnlp">
+ *   ClearNLP</a> models, where each model is identified by its class path resource, and loaded
+ *   only once, no matter how many {@link ClearParserProvider}s (e.g. one for question parsing and
+ *   another for passage parsing) refer to it.
+ *   The models are read-only once loaded, and shared by all the providers and threads.
+ * </p>
+ * <p>
+ *   The models are loaded asynchronously on a small pool of daemon threads, so that the POS model
+ *   and the dependency model of a provider (or the models of several providers) can be loaded in
+ *   parallel, e.g. at startup via {@link #preloadPosTagger(String, File)} and
+ *   {@link #preloadDepParser(String, File)}.
+ *   If a cache directory is given, the decompressed model is kept there, keyed by the resource
+ *   path, size, and last modified time, and read directly on subsequent loads, which saves the
+ *   XZ decompression.
+ *   Any failure to load a model is rethrown as a {@link ResourceInitializationException} to every
+ *   caller, and the failed model is removed from the registry so that it can be retried.
+ * </p>
+ *
+ * @see ClearParserProvider
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class ClearNlpModels {
+
+  private static final Map<String, CompletableFuture<EnglishPOSTagger>> path2tagger =
+          new ConcurrentHashMap<>();
+
+  private static final Map<String, CompletableFuture<EnglishDEPParser>> path2parser =
+          new ConcurrentHashMap<>();
+
+  private static final ExecutorService es = Executors.newFixedThreadPool(
+          Math.min(4, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread thread = new Thread(r, "clearnlp-model-loader");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private static final Logger LOG = LoggerFactory.getLogger(ClearNlpModels.class);
+
+  @FunctionalInterface
+  private interface ModelReader<T> {
+
+    T read(ObjectInputStream ois) throws Exception;
+
+  }
+
+  private ClearNlpModels() {
+  }
+
+  /**
+   * Starts loading the POS model in the background if it has not been loaded.
+   *
+   * @param cacheDir the directory of the decompressed models, or <tt>null</tt> if not cached
+   */
+  public static CompletableFuture<EnglishPOSTagger> preloadPosTagger(String path, File cacheDir) {
+    return path2tagger.computeIfAbsent(path, p -> CompletableFuture
+            .supplyAsync(() -> load(p, cacheDir, EnglishPOSTagger::new), es));
+  }
+
+  /**
+   * Starts loading the dependency model in the background if it has not been loaded.
+   *
+   * @param cacheDir the directory of the decompressed models, or <tt>null</tt> if not cached
+   */
+  public static CompletableFuture<EnglishDEPParser> preloadDepParser(String path, File cacheDir) {
+    return path2parser.computeIfAbsent(path, p -> CompletableFuture.supplyAsync(
+            () -> load(p, cacheDir, ois -> new EnglishDEPParser(new DEPConfiguration("root"), ois)),
+            es));
+  }
+
+  public static EnglishPOSTagger getPosTagger(String path, File cacheDir)
+          throws ResourceInitializationException {
+    return await(path, path2tagger, preloadPosTagger(path, cacheDir));
+  }
+
+  public static EnglishDEPParser getDepParser(String path, File cacheDir)
+          throws ResourceInitializationException {
+    return await(path, path2parser, preloadDepParser(path, cacheDir));
+  }
+
+  private static <T> T await(String path, Map<String, CompletableFuture<T>> path2model,
+          CompletableFuture<T> future) throws ResourceInitializationException {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      // allow a later attempt to reload the model, e.g. after the cache directory is fixed
+      path2model.remove(path, future);
+      throw new ResourceInitializationException(e.getCause() == null ? e : e.getCause());
+    }
+  }
+
+  private static <T> T load(String path, File cacheDir, ModelReader<T> reader) {
+    long start = System.currentTimeMillis();
+    try (ObjectInputStream ois = new ObjectInputStream(
+            new BufferedInputStream(open(path, cacheDir)))) {
+      T model = reader.read(ois);
+      LOG.info("Loaded ClearNLP model {} in {} ms.", path, System.currentTimeMillis() - start);
+      return model;
+    } catch (Exception e) {
+      LOG.error("Failed to load ClearNLP model {}.", path, e);
+      throw new CompletionException(e);
+    }
+  }
+
+  private static InputStream open(String path, File cacheDir) throws IOException {
+    URL url = ClearNlpModels.class.getResource(path);
+    if (url == null) {
+      throw new IOException("Model resource not found: " + path);
+    }
+    if (cacheDir == null) {
+      return new XZInputStream(new BufferedInputStream(url.openStream()));
+    }
+    URLConnection connection = url.openConnection();
+    String name = path.replaceAll("[^A-Za-z0-9._-]", "_") + "-"
+            + Long.toHexString(connection.getContentLengthLong()) + "-"
+            + Long.toHexString(connection.getLastModified());
+    File cached = new File(cacheDir, name);
+    if (!cached.isFile()) {
+      LOG.info("Decompressing ClearNLP model {} to {}.", path, cached);
+      Files.createDirectories(cacheDir.toPath());
+      Path tmp = Files.createTempFile(cacheDir.toPath(), name, ".tmp");
+      try (InputStream in = new XZInputStream(
+              new BufferedInputStream(connection.getInputStream()))) {
+        Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(tmp, cached.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+    }
+    return new FileInputStream(cached);
+  }
+
+}
@@ -14,48 +14,47 @@
 
 package edu.cmu.lti.oaqa.baseqa.providers.parser;
 
-import com.google.common.base.CharMatcher;
 import edu.cmu.lti.oaqa.ecd.config.ConfigurableProvider;
 import edu.cmu.lti.oaqa.type.nlp.Token;
 import edu.cmu.lti.oaqa.util.TypeFactory;
-import edu.emory.clir.clearnlp.component.mode.dep.DEPConfiguration;
 import edu.emory.clir.clearnlp.component.mode.dep.EnglishDEPParser;
-import edu.emory.clir.clearnlp.component.mode.morph.EnglishMPAnalyzer;
 import edu.emory.clir.clearnlp.component.mode.pos.EnglishPOSTagger;
-import edu.emory.clir.clearnlp.dependency.DEPFeat;
 import edu.emory.clir.clearnlp.dependency.DEPNode;
 import edu.emory.clir.clearnlp.dependency.DEPTree;
 import edu.emory.clir.clearnlp.tokenization.EnglishTokenizer;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.ResourceSpecifier;
-import org.tukaani.xz.XZInputStream;
 
-import java.io.BufferedInputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.IntStream;
-
-import static java.util.stream.Collectors.toList;
 
 /**
  * A {@link ParserProvider} that wraps <a href="https://github.com/clir/clearnlp">ClearNLP</a>
  * parser.
  * One should specify the paths to the POS and dependency models in the descriptor via parameters
  * <tt>pos-model</tt> and <tt>dep-model</tt>.
+ * The models are loaded once per process via {@link ClearNlpModels}, optionally decompressed into
+ * <tt>model-cache-dir</tt> for faster subsequent loads, and shared by all the providers and the
+ * threads that call {@link #parse(String)} concurrently, whereas each thread has its own tokenizer
+ * and lemmatizer.
+ * The lemmatizer ({@link ClearLemmatizer}) reuses a node per thread and caches up to
+ * <tt>lemma-cache-size</tt> (100000 by default) lemmas per thread, and the token offsets are found
+ * in one scan of the text.
  *
  * @author <a href="mailto:ziy@cs.cmu.edu">Zi Yang</a> created on 3/12/16
  */
 public class ClearParserProvider extends ConfigurableProvider implements ParserProvider {
 
-  private EnglishTokenizer tokenizer;
+  // the tokenizer and the lemmatizer are confined to each thread, and the models of the tagger and
+  // the parser are read-only and shared by the threads
+  private ThreadLocal<EnglishTokenizer> tokenizer;
 
   private EnglishPOSTagger tagger;
 
-  private EnglishMPAnalyzer mpAnalyzer;
+  private ClearLemmatizer lemmatizer;
 
   private EnglishDEPParser parser;
 
@@ -64,88 +63,110 @@ public class ClearParserProvider extends ConfigurableProvider implements ParserP
           throws ResourceInitializationException {
     boolean ret = super.initialize(aSpecifier, aAdditionalParams);
     // tokenizer
-    tokenizer = new EnglishTokenizer();
-    // pos
-    String posModelPath = String.class.cast(getParameterValue("pos-model"));
-    try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(
-            new XZInputStream(getClass().getResourceAsStream(posModelPath))))) {
-      tagger = new EnglishPOSTagger(ois);
-    } catch (IOException e) {
-      new ResourceInitializationException(e);
-    }
+    tokenizer = ThreadLocal.withInitial(EnglishTokenizer::new);
     // lemmatizer
-    mpAnalyzer = new EnglishMPAnalyzer();
-    // dependency parser
+    Integer lemmaCacheSize = Integer.class.cast(getParameterValue("lemma-cache-size"));
+    lemmatizer = new ClearLemmatizer(lemmaCacheSize == null ? 100000 : lemmaCacheSize);
+    // the pos and dependency models are shared across the providers, and loaded in parallel
+    String posModelPath = String.class.cast(getParameterValue("pos-model"));
     String depModelPath = String.class.cast(getParameterValue("dep-model"));
-    try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(
-            new XZInputStream(getClass().getResourceAsStream(depModelPath))))) {
-      parser = new EnglishDEPParser(new DEPConfiguration("root"), ois);
-    } catch (IOException e) {
-      new ResourceInitializationException(e);
-    }
+    String modelCacheDir = String.class.cast(getParameterValue("model-cache-dir"));
+    File cacheDir = modelCacheDir == null ? null : new File(modelCacheDir);
+    ClearNlpModels.preloadPosTagger(posModelPath, cacheDir);
+    ClearNlpModels.preloadDepParser(depModelPath, cacheDir);
+    tagger = ClearNlpModels.getPosTagger(posModelPath, cacheDir);
+    parser = ClearNlpModels.getDepParser(depModelPath, cacheDir);
     return ret;
   }
 
   @Override
   public List<Token> tokenize(JCas jcas) {
     String text = jcas.getDocumentText();
-    List<String> tokenTexts = tokenizer.tokenize(text);
-    int offset = 0;
-    List<Token> tokens = new ArrayList<>();
-    for (String tokenText : tokenTexts) {
-      offset = text.indexOf(tokenText, offset);
-      Token tok = TypeFactory.createToken(jcas, offset, offset + tokenText.length());
-      tokens.add(tok);
-      offset += tokenText.length();
+    List<String> tokenTexts = tokenizer.get().tokenize(text);
+    int[] begins = ClearLemmatizer.alignTokens(text, tokenTexts);
+    List<Token> tokens = new ArrayList<>(tokenTexts.size());
+    for (int i = 0; i < tokenTexts.size(); i++) {
+      tokens.add(TypeFactory.createToken(jcas, begins[i], begins[i] + tokenTexts.get(i).length()));
     }
     return tokens;
   }
 
   @Override
   public void tagPartOfSpeech(JCas jcas, List<Token> tokens) {
-    List<String> tokenTexts = tokens.stream().map(Token::getCoveredText).collect(toList());
-    DEPTree tree = new DEPTree(tokenTexts);
+    List<DEPNode> nodes = new ArrayList<>(tokens.size());
+    for (int i = 0; i < tokens.size(); i++) {
+      nodes.add(new DEPNode(i + 1, tokens.get(i).getCoveredText()));
+    }
+    DEPTree tree = new DEPTree(nodes);
     tagger.process(tree);
-    IntStream.range(0, tokens.size())
-            .forEach(i -> tokens.get(i).setPartOfSpeech(tree.get(i + 1).getPOSTag()));
+    for (int i = 0; i < tokens.size(); i++) {
+      tokens.get(i).setPartOfSpeech(tree.get(i + 1).getPOSTag());
+    }
   }
 
-  private static CharMatcher DIGIT_MATCHER = CharMatcher.DIGIT;
-
   @Override
   public void lemmatize(JCas jcas, List<Token> tokens) {
-    tokens.stream().forEach(token -> {
-      String text = token.getCoveredText();
-      String pos = token.getPartOfSpeech();
-      if (DIGIT_MATCHER.matchesAnyOf(text)) {
-        token.setLemmaForm(text);
-      } else {
-        DEPNode node = new DEPNode(-1, text, null, pos, new DEPFeat());
-        mpAnalyzer.analyze(node);
-        token.setLemmaForm(node.getLemma());
-      }
-    } );
+    for (Token token : tokens) {
+      token.setLemmaForm(lemmatizer.lemmatize(token.getCoveredText(), token.getPartOfSpeech()));
+    }
   }
 
   @Override
   public void parseDependency(JCas jcas, List<Token> tokens) {
-    List<DEPNode> nodes = IntStream.range(0, tokens.size()).mapToObj(i -> {
+    List<DEPNode> nodes = new ArrayList<>(tokens.size());
+    for (int i = 0; i < tokens.size(); i++) {
       Token token = tokens.get(i);
-      String word = token.getCoveredText();
-      String lemma = token.getLemmaForm();
-      String pos = token.getPartOfSpeech();
-      return new DEPNode(i + 1, word, lemma, pos, null);
-    } ).collect(toList());
-    DEPTree tree = new DEPTree(nodes);
-    parser.process(tree);
-    IntStream.range(0, tokens.size()).forEach(i -> {
+      nodes.add(new DEPNode(i + 1, token.getCoveredText(), token.getLemmaForm(),
+              token.getPartOfSpeech(), null));
+    }
+    DEPTree tree = parseDependency(nodes);
+    for (int i = 0; i < tokens.size(); i++) {
       DEPNode node = tree.get(i + 1);
       Token token = tokens.get(i);
       token.setDepLabel(node.getLabel());
       if (!node.isLabel("root") && node.getHead().getID() != 0) {
         token.setHead(tokens.get(node.getHead().getID() - 1));
       }
-    } );
+    }
+  }
+
+  private DEPTree parseDependency(List<DEPNode> nodes) {
+    DEPTree tree = new DEPTree(nodes);
+    parser.process(tree);
+    return tree;
+  }
+
+  /**
+   * Parses the text without creating any CAS, which gives the same result as
+   * {@link #parseDependency(JCas)}, and can be called concurrently.
+   */
+  @Override
+  public List<ParsedToken> parse(String text) {
+    List<String> words = tokenizer.get().tokenize(text);
+    int[] begins = ClearLemmatizer.alignTokens(text, words);
+    List<DEPNode> posNodes = new ArrayList<>(words.size());
+    for (int i = 0; i < words.size(); i++) {
+      posNodes.add(new DEPNode(i + 1, words.get(i)));
+    }
+    DEPTree posTree = new DEPTree(posNodes);
+    tagger.process(posTree);
+    // the parser takes fresh nodes with the tags and the lemmas, as parseDependency(JCas) does
+    List<DEPNode> nodes = new ArrayList<>(words.size());
+    for (int i = 0; i < words.size(); i++) {
+      String word = words.get(i);
+      String pos = posTree.get(i + 1).getPOSTag();
+      nodes.add(new DEPNode(i + 1, word, lemmatizer.lemmatize(word, pos), pos, null));
+    }
+    DEPTree tree = parseDependency(nodes);
+    List<ParsedToken> parsedTokens = new ArrayList<>(words.size());
+    for (int i = 0; i < words.size(); i++) {
+      DEPNode node = tree.get(i + 1);
+      int head = !node.isLabel("root") && node.getHead().getID() != 0 ?
+              node.getHead().getID() - 1 : -1;
+      parsedTokens.add(new ParsedToken(begins[i], begins[i] + words.get(i).length(),
+              node.getPOSTag(), node.getLemma(), node.getLabel(), head));
+    }
+    return parsedTokens;
   }
 
 }
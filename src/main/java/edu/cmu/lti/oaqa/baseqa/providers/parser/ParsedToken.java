@@ -0,0 +1,124 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.baseqa.providers.parser;
+
+import edu.cmu.lti.oaqa.type.nlp.Token;
+import edu.cmu.lti.oaqa.util.TypeFactory;
+import org.apache.uima.jcas.JCas;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ *   A parsed token that does not depend on any CAS, i.e. the offsets, the part of speech, the
+ *   lemma, the dependency label, and the index of the head token (or <tt>-1</tt> if the token has
+ *   no head) in the same sentence or passage.
+ *   It is returned by {@link ParserProvider#parse(String)}, which can be called on a worker thread,
+ *   and converted to the {@link Token}s by {@link #createTokens(JCas, List)} on the thread that
+ *   owns the CAS.
+ * </p>
+ *
+ * @see ParserProvider#parse(String)
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public final class ParsedToken {
+
+  private final int begin;
+
+  private final int end;
+
+  private final String partOfSpeech;
+
+  private final String lemmaForm;
+
+  private final String depLabel;
+
+  private final int head;
+
+  public ParsedToken(int begin, int end, String partOfSpeech, String lemmaForm, String depLabel,
+          int head) {
+    this.begin = begin;
+    this.end = end;
+    this.partOfSpeech = partOfSpeech;
+    this.lemmaForm = lemmaForm;
+    this.depLabel = depLabel;
+    this.head = head;
+  }
+
+  public int getBegin() {
+    return begin;
+  }
+
+  public int getEnd() {
+    return end;
+  }
+
+  public String getPartOfSpeech() {
+    return partOfSpeech;
+  }
+
+  public String getLemmaForm() {
+    return lemmaForm;
+  }
+
+  public String getDepLabel() {
+    return depLabel;
+  }
+
+  public int getHead() {
+    return head;
+  }
+
+  public static List<ParsedToken> fromTokens(List<Token> tokens) {
+    Map<Token, Integer> token2index = new HashMap<>();
+    for (int i = 0; i < tokens.size(); i++) {
+      token2index.put(tokens.get(i), i);
+    }
+    List<ParsedToken> parsedTokens = new ArrayList<>(tokens.size());
+    for (Token token : tokens) {
+      Integer head = token.getHead() == null ? null : token2index.get(token.getHead());
+      parsedTokens.add(new ParsedToken(token.getBegin(), token.getEnd(), token.getPartOfSpeech(),
+              token.getLemmaForm(), token.getDepLabel(), head == null ? -1 : head));
+    }
+    return parsedTokens;
+  }
+
+  /**
+   * Creates the {@link Token}s, which are not added to the indexes, and should be called on the
+   * thread that owns the {@link JCas}.
+   */
+  public static List<Token> createTokens(JCas jcas, List<ParsedToken> parsedTokens) {
+    List<Token> tokens = new ArrayList<>(parsedTokens.size());
+    for (ParsedToken parsedToken : parsedTokens) {
+      Token token = TypeFactory.createToken(jcas, parsedToken.begin, parsedToken.end);
+      token.setPartOfSpeech(parsedToken.partOfSpeech);
+      token.setLemmaForm(parsedToken.lemmaForm);
+      token.setDepLabel(parsedToken.depLabel);
+      tokens.add(token);
+    }
+    for (int i = 0; i < parsedTokens.size(); i++) {
+      int head = parsedTokens.get(i).head;
+      if (head >= 0) {
+        tokens.get(i).setHead(tokens.get(head));
+      }
+    }
+    return tokens;
+  }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.cmu.lti.oaqa.baseqa.providers.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ *   The compact encoding of the {@link ParsedToken}s of a text, which is used as the value of the
+ *   {@link CachedParserProvider} cache.
+ *   The encoding starts with a version byte, followed by the number of tokens, and for each token,
+ *   the begin offset, the length, the index of the head token plus one (<tt>0</tt> if the token has
+ *   no head), all as variable-length integers, and the part of speech, the lemma and the
+ *   dependency label, each as a presence flag and a modified UTF-8 string.
+ * </p>
+ * <p>
+ *   Version 1 wrote the length and the head as shorts, which overflowed for tokens longer than
+ *   32767 characters or passages of more than 32767 tokens, and started with the number of tokens
+ *   as an int, whose first byte is <tt>0</tt>.
+ *   {@link #decode(byte[])} returns <tt>null</tt> for an entry of any other version, which is then
+ *   parsed again and overwritten, like a miss.
+ * </p>
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+final class ParsedTokenCodec {
+
+  static final byte VERSION = 2;
+
+  private ParsedTokenCodec() {
+  }
+
+  static byte[] encode(List<ParsedToken> parsedTokens) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(VERSION);
+      writeVarInt(out, parsedTokens.size());
+      for (ParsedToken parsedToken : parsedTokens) {
+        writeVarInt(out, parsedToken.getBegin());
+        writeVarInt(out, parsedToken.getEnd() - parsedToken.getBegin());
+        writeVarInt(out, parsedToken.getHead() + 1);
+        writeString(out, parsedToken.getPartOfSpeech());
+        writeString(out, parsedToken.getLemmaForm());
+        writeString(out, parsedToken.getDepLabel());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @return the parsed tokens, or <tt>null</tt> if the bytes are of another version
+   */
+  static List<ParsedToken> decode(byte[] bytes) {
+    if (bytes.length == 0 || bytes[0] != VERSION) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1,
+            bytes.length - 1))) {
+      int size = readVarInt(in);
+      List<ParsedToken> parsedTokens = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        int begin = readVarInt(in);
+        int end = begin + readVarInt(in);
+        int head = readVarInt(in) - 1;
+        parsedTokens.add(new ParsedToken(begin, end, readString(in), readString(in),
+                readString(in), head));
+      }
+      return parsedTokens;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void writeString(DataOutput out, String string) throws IOException {
+    out.writeBoolean(string != null);
+    if (string != null) out.writeUTF(string);
+  }
+
+  private static String readString(DataInput in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static void writeVarInt(DataOutput out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static int readVarInt(DataInput in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable-length integer.");
+  }
+
+}
@@ -15,6 +15,9 @@
 package edu.cmu.lti.oaqa.baseqa.providers.parser;
 
 import edu.cmu.lti.oaqa.type.nlp.Token;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.Resource;
 
@@ -24,6 +27,8 @@ import java.util.List;
  * An implementation of this interface should wrap a parser to {@link #tokenize(JCas)},
  * {@link #tagPartOfSpeech(JCas)}, {@link #lemmatize(JCas)}, and {@link #parseDependency(JCas)} of
  * the document text in a input {@link JCas}.
+ * {@link #parse(String)} parses a text without any CAS, which can be called concurrently, e.g. by
+ * {@link edu.cmu.lti.oaqa.baseqa.evidence.parse.PassageParser} on a worker pool.
  *
  * @author <a href="mailto:ziy@cs.cmu.edu">Zi Yang</a> created on 3/12/16
  */
@@ -58,4 +63,21 @@ public interface ParserProvider extends Resource {
     return tokens;
   }
 
+  /**
+   * Tokenizes, tags, lemmatizes, and parses the text into {@link ParsedToken}s, which do not depend
+   * on any CAS.
+   * This default implementation parses the text in a temporary {@link JCas}, and an
+   * implementation should override it with a cheaper one if the parser does not need a CAS.
+   */
+  default List<ParsedToken> parse(String text) throws AnalysisEngineProcessException {
+    JCas jcas;
+    try {
+      jcas = JCasFactory.createJCas();
+    } catch (UIMAException e) {
+      throw new AnalysisEngineProcessException(e);
+    }
+    jcas.setDocumentText(text);
+    return ParsedToken.fromTokens(parseDependency(jcas));
+  }
+
 }
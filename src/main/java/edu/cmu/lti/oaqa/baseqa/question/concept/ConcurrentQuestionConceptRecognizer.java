@@ -0,0 +1,222 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.baseqa.question.concept;
+
+import edu.cmu.lti.oaqa.baseqa.providers.kb.ConceptProvider;
+import edu.cmu.lti.oaqa.baseqa.util.ProviderCache;
+import edu.cmu.lti.oaqa.baseqa.util.UimaContextHelper;
+import edu.cmu.lti.oaqa.type.kb.Concept;
+import edu.cmu.lti.oaqa.type.kb.ConceptMention;
+import edu.cmu.lti.oaqa.type.nlp.Token;
+import edu.cmu.lti.oaqa.util.TypeUtil;
+import org.apache.uima.UIMAException;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.CASException;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.CasCopier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>
+ *   This class uses a list of {@link ConceptProvider}s (<tt>concept-providers</tt>) to identify
+ *   and annotate the {@link Concept}s in the question concurrently, which has the same effect as a
+ *   sequence of {@link QuestionConceptRecognizer}s, one for each provider, but takes as long as
+ *   the slowest provider rather than all of them.
+ * </p>
+ * <p>
+ *   Since a {@link JCas} cannot be modified by multiple threads, each provider works on its own
+ *   scratch {@link JCas}, which is created once, and reset for each question with only the
+ *   question text and the {@link Token}s, which are all that the providers read.
+ *   The identified concepts are copied back to the input view on the calling thread, in the order
+ *   of the providers, regardless of the order in which they complete.
+ * </p>
+ * <p>
+ *   Each provider has its own timeout in milliseconds, given by <tt>timeouts</tt> in the order of
+ *   the providers, or <tt>timeout</tt> (60000 by default) if not given, after which its concepts
+ *   are dropped with a warning.
+ *   Since a provider cannot be interrupted, a provider that has timed out keeps running, and it is
+ *   skipped for the following questions until it completes, so that no provider is ever called
+ *   concurrently by this annotator, e.g. a provider that keeps state in a shared configuration.
+ *   A failure of any provider fails the annotator, as {@link QuestionConceptRecognizer} does.
+ * </p>
+ *
+ * @see QuestionConceptRecognizer
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class ConcurrentQuestionConceptRecognizer extends JCasAnnotator_ImplBase {
+
+  private static final class ProviderSlot {
+
+    final ConceptProvider conceptProvider;
+
+    final String name;
+
+    final long timeout;
+
+    final JCas scratch;
+
+    // the last call, which may still be running after a timeout
+    CompletableFuture<List<Concept>> future;
+
+    ProviderSlot(ConceptProvider conceptProvider, long timeout, JCas scratch) {
+      this.conceptProvider = conceptProvider;
+      this.name = conceptProvider.getClass().getSimpleName();
+      this.timeout = timeout;
+      this.scratch = scratch;
+    }
+
+    boolean isBusy() {
+      return future != null && !future.isDone();
+    }
+
+  }
+
+  private List<ProviderSlot> slots;
+
+  private ExecutorService es;
+
+  private static final Logger LOG = LoggerFactory
+          .getLogger(ConcurrentQuestionConceptRecognizer.class);
+
+  @Override
+  public void initialize(UimaContext context) throws ResourceInitializationException {
+    super.initialize(context);
+    String conceptProviderNames = UimaContextHelper.getConfigParameterStringValue(context,
+            "concept-providers");
+    List<ConceptProvider> conceptProviders = ProviderCache.getProviders(conceptProviderNames,
+            ConceptProvider.class);
+    long timeout = UimaContextHelper.getConfigParameterIntValue(context, "timeout", 60000);
+    Object[] timeouts = (Object[]) Optional.ofNullable(context.getConfigParameterValue("timeouts"))
+            .orElse(new Object[0]);
+    slots = new ArrayList<>();
+    try {
+      for (int i = 0; i < conceptProviders.size(); i++) {
+        long providerTimeout = i < timeouts.length ? Long.parseLong(timeouts[i].toString())
+                : timeout;
+        slots.add(new ProviderSlot(conceptProviders.get(i), providerTimeout,
+                JCasFactory.createJCas()));
+      }
+    } catch (UIMAException e) {
+      throw new ResourceInitializationException(e);
+    }
+    // a provider that times out keeps running on its own scratch CAS, and must not block the others
+    es = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "question-concept-recognizer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Override
+  public void process(JCas jcas) throws AnalysisEngineProcessException {
+    List<Token> tokens = TypeUtil.getOrderedTokens(jcas);
+    // prepare the scratch CAS of each idle provider on the calling thread
+    List<ProviderSlot> calledSlots = new ArrayList<>();
+    List<JCas> views = new ArrayList<>();
+    for (ProviderSlot slot : slots) {
+      if (slot.isBusy()) {
+        LOG.warn("Skip {}, which is still running after a timeout.", slot.name);
+        continue;
+      }
+      JCas view = prepareView(slot.scratch, jcas, tokens);
+      slot.future = CompletableFuture.supplyAsync(() -> {
+        try {
+          return slot.conceptProvider.getConcepts(view);
+        } catch (AnalysisEngineProcessException e) {
+          throw new CompletionException(e);
+        }
+      }, es);
+      calledSlots.add(slot);
+      views.add(view);
+    }
+    // apply the concepts in the order of the providers
+    long start = System.currentTimeMillis();
+    List<Concept> concepts = new ArrayList<>();
+    for (int i = 0; i < calledSlots.size(); i++) {
+      ProviderSlot slot = calledSlots.get(i);
+      List<Concept> providerConcepts;
+      try {
+        providerConcepts = slot.future.get(
+                Math.max(0, start + slot.timeout - System.currentTimeMillis()),
+                TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        LOG.warn("Timeout occurs for {} after {} ms.", slot.name, slot.timeout);
+        continue;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AnalysisEngineProcessException(e);
+      } catch (ExecutionException e) {
+        throw new AnalysisEngineProcessException(e.getCause());
+      }
+      CasCopier copier = new CasCopier(views.get(i).getCas(), jcas.getCas());
+      providerConcepts.stream().map(concept -> (Concept) copier.copyFs(concept))
+              .forEach(concepts::add);
+    }
+    concepts.forEach(Concept::addToIndexes);
+    concepts.stream().map(TypeUtil::getConceptMentions).flatMap(Collection::stream)
+            .forEach(ConceptMention::addToIndexes);
+    if (LOG.isInfoEnabled()) {
+      LOG.info("Identified concepts:");
+      concepts.forEach(c -> LOG.info(" - {}", TypeUtil.toString(c)));
+    }
+  }
+
+  /**
+   * Resets the scratch CAS, and fills the view of the same name as the input view with the text
+   * and the tokens of the input view.
+   */
+  private static JCas prepareView(JCas scratch, JCas jcas, List<Token> tokens)
+          throws AnalysisEngineProcessException {
+    scratch.reset();
+    JCas view;
+    try {
+      view = CAS.NAME_DEFAULT_SOFA.equals(jcas.getViewName()) ? scratch
+              : scratch.createView(jcas.getViewName());
+    } catch (CASException e) {
+      throw new AnalysisEngineProcessException(e);
+    }
+    view.setDocumentText(jcas.getDocumentText());
+    view.setDocumentLanguage(jcas.getDocumentLanguage());
+    CasCopier copier = new CasCopier(jcas.getCas(), view.getCas());
+    tokens.forEach(token -> ((Token) copier.copyFs(token)).addToIndexes());
+    return view;
+  }
+
+  @Override
+  public void destroy() {
+    super.destroy();
+    es.shutdownNow();
+  }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.baseqa.util;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ *   An open-addressing hash table from <tt>long</tt> keys to <tt>int</tt> values with linear
+ *   probing, kept in two primitive arrays and rehashed when half full, e.g. for the edges of a trie
+ *   or an automaton keyed by (node, token) pairs via {@link #key(int, int)}.
+ *   The key <tt>-1</tt> is reserved to mark the empty slots, and the entries cannot be removed.
+ * </p>
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class LongIntMap {
+
+  private static final long EMPTY = -1L;
+
+  private long[] keys;
+
+  private int[] values;
+
+  private int size;
+
+  /**
+   * @param capacity the initial number of slots, which must be a power of two
+   */
+  public LongIntMap(int capacity) {
+    keys = new long[capacity];
+    Arrays.fill(keys, EMPTY);
+    values = new int[capacity];
+  }
+
+  /**
+   * @return the key of the pair, with <tt>high</tt> in the high half and <tt>low</tt> in the low
+   *         half, which is never <tt>-1</tt> if <tt>high</tt> is not negative
+   */
+  public static long key(int high, int low) {
+    return ((long) high << 32) | (low & 0xffffffffL);
+  }
+
+  private static int hash(long key, int mask) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  /**
+   * @return the value of the key, or <tt>-1</tt> if absent
+   */
+  public int get(long key) {
+    int mask = keys.length - 1;
+    for (int i = hash(key, mask); ; i = (i + 1) & mask) {
+      if (keys[i] == key) return values[i];
+      if (keys[i] == EMPTY) return -1;
+    }
+  }
+
+  public void put(long key, int value) {
+    if ((size + 1) * 2 > keys.length) {
+      rehash(keys.length * 2);
+    }
+    int mask = keys.length - 1;
+    int i = hash(key, mask);
+    while (keys[i] != EMPTY && keys[i] != key) {
+      i = (i + 1) & mask;
+    }
+    if (keys[i] == EMPTY) size++;
+    keys[i] = key;
+    values[i] = value;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private void rehash(int capacity) {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    keys = new long[capacity];
+    Arrays.fill(keys, EMPTY);
+    values = new int[capacity];
+    int mask = capacity - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldKeys[j] == EMPTY) continue;
+      int i = hash(oldKeys[j], mask);
+      while (keys[i] != EMPTY) {
+        i = (i + 1) & mask;
+      }
+      keys[i] = oldKeys[j];
+      values[i] = oldValues[j];
+    }
+  }
+
+}
@@ -14,15 +14,20 @@
 
 package edu.cmu.lti.oaqa.bioasq.concept.rerank.scorers;
 
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Table;
 import com.google.common.io.Resources;
 import edu.cmu.lti.oaqa.baseqa.learning_base.AbstractScorer;
 import edu.cmu.lti.oaqa.baseqa.learning_base.Scorer;
 import edu.cmu.lti.oaqa.bio.bioasq.services.GoPubMedService;
+import edu.cmu.lti.oaqa.bio.bioasq.services.OntologyServiceResponse;
+import edu.cmu.lti.oaqa.bioasq.concept.retrieval.GoPubMedRequestScheduler;
 import edu.cmu.lti.oaqa.bioasq.util.BioASQUtil;
+import edu.cmu.lti.oaqa.bioasq.util.GoPubMedClient;
 import edu.cmu.lti.oaqa.ecd.config.ConfigurableProvider;
 import edu.cmu.lti.oaqa.type.kb.Concept;
 import edu.cmu.lti.oaqa.type.kb.ConceptMention;
@@ -40,8 +45,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -55,6 +59,11 @@ import static java.util.stream.Collectors.toSet;
  * Various different ways of constructing the queries, from only the tokens to a full combination of
  * tokens and concepts with all the synonyms contribute to the feature, and the retrieval scores are
  * used as the values.
+ * <p>
+ * The requests are sent through a {@link GoPubMedRequestScheduler}, which deduplicates identical
+ * requests, limits the request rate to <tt>requests-per-second</tt>, and caches the responses in
+ * <tt>cache-db-file</tt> if given.
+ * </p>
  *
  * @see edu.cmu.lti.oaqa.baseqa.concept.rerank.scorers.LuceneConceptScorer
  *
@@ -62,7 +71,7 @@ import static java.util.stream.Collectors.toSet;
  */
 public class GoPubMedConceptRetrievalScorer extends AbstractScorer<ConceptSearchResult> {
 
-  private GoPubMedService service;
+  private GoPubMedRequestScheduler scheduler;
 
   private int pages;
 
@@ -91,7 +100,13 @@ public class GoPubMedConceptRetrievalScorer extends AbstractScorer<ConceptSearch
     } catch (ConfigurationException e) {
       throw new ResourceInitializationException(e);
     }
-    service = new GoPubMedService(gopubmedProperties);
+    int nthreads = Optional.ofNullable((Integer) getParameterValue("nthreads")).orElse(16);
+    double requestsPerSecond = Optional.ofNullable(getParameterValue("requests-per-second"))
+            .map(Number.class::cast).map(Number::doubleValue).orElse(0.0);
+    scheduler = new GoPubMedRequestScheduler(new GoPubMedService(gopubmedProperties), nthreads,
+            requestsPerSecond, String.class.cast(getParameterValue("cache-db-file")),
+            Optional.ofNullable((String) getParameterValue("cache-map-name"))
+                    .orElse("gopubmed-ontology"));
     pages = Integer.class.cast(getParameterValue("pages"));
     hits = Integer.class.cast(getParameterValue("hits"));
     timeout = Integer.class.cast(getParameterValue("timeout"));
@@ -132,120 +147,69 @@ public class GoPubMedConceptRetrievalScorer extends AbstractScorer<ConceptSearch
     List<String> cmentionNames = TypeUtil.getConceptMentions(jcas).stream()
             .map(ConceptMention::getMatchedName)
             .map(GoPubMedConceptRetrievalScorer::normalizeQuoteName).collect(toList());
-    ExecutorService es = Executors.newCachedThreadPool();
+    // the query strings for each configuration
+    ListMultimap<String, String> conf2queryStrings = ArrayListMultimap.create();
     // execute against all tokens
-    String concatenatedTokens = String.join(" ", tokens);
-    LOG.debug("Query string: {}", concatenatedTokens);
-    for (BioASQUtil.Ontology ontology : BioASQUtil.Ontology.values()) {
-      es.execute(() -> {
-        try {
-          List<ConceptSearchResult> results = BioASQUtil
-                  .searchOntology(service, jcas, concatenatedTokens, pages, hits, ontology);
-          String conf = "tokens_concatenated@" + ontology.name();
-          updateFeatureTable(results, conf);
-        } catch (IOException e) {
-          throw new RuntimeException(e);
-        }
-      } );
-    }
+    conf2queryStrings.put("tokens_concatenated", String.join(" ", tokens));
     // execute against concatenated concept names
-    String concatenatedConceptNames = String
-            .join(" ", Iterables.concat(wIdConceptNames, woIdConceptNames));
-    LOG.debug("Query string: {}", concatenatedConceptNames);
-    for (BioASQUtil.Ontology ontology : BioASQUtil.Ontology.values()) {
-      es.execute(() -> {
-        try {
-          List<ConceptSearchResult> results = BioASQUtil
-                  .searchOntology(service, jcas, concatenatedConceptNames, pages, hits, ontology);
-          String conf = "concept_names_concatenated@" + ontology.name();
-          updateFeatureTable(results, conf);
-        } catch (IOException e) {
-          throw new RuntimeException(e);
-        }
-      } );
-    }
+    conf2queryStrings.put("concept_names_concatenated",
+            String.join(" ", Iterables.concat(wIdConceptNames, woIdConceptNames)));
     // execute against concatenated concept mentions
-    String concatenatedCmentions = String.join(" ", cmentionNames);
-    LOG.debug("Query string: {}", concatenatedCmentions);
-    for (BioASQUtil.Ontology ontology : BioASQUtil.Ontology.values()) {
-      es.execute(() -> {
-        try {
-          List<ConceptSearchResult> results = BioASQUtil
-                  .searchOntology(service, jcas, concatenatedCmentions, pages, hits, ontology);
-          String conf = "cmention_names_concatenated@" + ontology.name();
-          updateFeatureTable(results, conf);
-        } catch (IOException e) {
-          throw new RuntimeException(e);
-        }
-      } );
-    }
+    conf2queryStrings.put("cmention_names_concatenated", String.join(" ", cmentionNames));
     // execute against each concept name whose has an ID
-    for (String conceptName : wIdConceptNames) {
-      LOG.debug("Query string: {}", conceptName);
-      for (BioASQUtil.Ontology ontology : BioASQUtil.Ontology.values()) {
-        es.execute(() -> {
-          try {
-            List<ConceptSearchResult> results = BioASQUtil
-                    .searchOntology(service, jcas, conceptName, pages, hits, ontology);
-            String conf = "w_id_concept_names_individual@" + ontology.name();
-            updateFeatureTable(results, conf);
-          } catch (IOException e) {
-            throw new RuntimeException(e);
-          }
-        } );
-      }
-    }
+    conf2queryStrings.putAll("w_id_concept_names_individual", wIdConceptNames);
     // execute against each concept name whose has no ID
-    for (String conceptName : woIdConceptNames) {
-      LOG.debug("Query string: {}", conceptName);
-      for (BioASQUtil.Ontology ontology : BioASQUtil.Ontology.values()) {
-        es.execute(() -> {
-          try {
-            List<ConceptSearchResult> results = BioASQUtil
-                    .searchOntology(service, jcas, conceptName, pages, hits, ontology);
-            String conf = "wo_id_concept_names_individual@" + ontology.name();
-            updateFeatureTable(results, conf);
-          } catch (IOException e) {
-            throw new RuntimeException(e);
-          }
-        } );
-      }
-    }
+    conf2queryStrings.putAll("wo_id_concept_names_individual", woIdConceptNames);
     // execute against each concept mention
-    for (String cmentionName : cmentionNames) {
-      LOG.debug("Query string: {}", cmentionName);
+    conf2queryStrings.putAll("cmention_names_individual", cmentionNames);
+    // fetch the responses concurrently via the scheduler, which are shared by the identical query
+    // strings
+    Map<String, Map<BioASQUtil.Ontology, CompletableFuture<List<OntologyServiceResponse.Result>>>>
+            queryString2futures = new HashMap<>();
+    for (String queryString : conf2queryStrings.values()) {
+      if (queryString2futures.containsKey(queryString)) continue;
+      LOG.debug("Query string: {}", queryString);
+      Map<BioASQUtil.Ontology, CompletableFuture<List<OntologyServiceResponse.Result>>> futures =
+              new EnumMap<>(BioASQUtil.Ontology.class);
       for (BioASQUtil.Ontology ontology : BioASQUtil.Ontology.values()) {
-        es.execute(() -> {
-          try {
-            List<ConceptSearchResult> results = BioASQUtil
-                    .searchOntology(service, jcas, cmentionName, pages, hits, ontology);
-            String conf = "cmention_names_individual@" + ontology.name();
-            updateFeatureTable(results, conf);
-          } catch (IOException e) {
-            throw new RuntimeException(e);
-          }
-        } );
+        futures.put(ontology, scheduler.searchOntology(queryString, pages, hits, ontology));
       }
+      queryString2futures.put(queryString, futures);
     }
-    es.shutdown();
     try {
-      if (!es.awaitTermination(timeout, TimeUnit.MINUTES)) {
+      if (!GoPubMedClient.awaitAll(queryString2futures.values().stream()
+              .flatMap(futures -> futures.values().stream()).collect(toList()), timeout,
+              TimeUnit.MINUTES)) {
         LOG.warn("Timeout occurs for one or some concept retrieval services.");
       }
     } catch (InterruptedException e) {
       throw new AnalysisEngineProcessException(e);
     }
+    // update the feature tables on the calling thread
+    for (Map.Entry<String, String> entry : conf2queryStrings.entries()) {
+      String queryString = entry.getValue();
+      queryString2futures.get(queryString).forEach((ontology, future) -> GoPubMedClient
+              .getIfCompleted(future, ontology.name() + " for " + queryString)
+              .ifPresent(results -> updateFeatureTable(results,
+                      entry.getKey() + "@" + ontology.name())));
+    }
+    scheduler.commit();
     confs = uri2conf2score.columnKeySet();
   }
 
-  private void updateFeatureTable(List<ConceptSearchResult> results, String conf) {
-    for (int i = 0; i < results.size(); i++) {
-      ConceptSearchResult result = results.get(i);
-      String uri = result.getUri();
+  private void updateFeatureTable(List<OntologyServiceResponse.Result> results, String conf) {
+    // the uri and score of each finding, ranked across the pages
+    List<Map.Entry<String, Double>> uriScores = results.stream()
+            .flatMap(result -> result.getFindings().stream())
+            .<Map.Entry<String, Double>>map(finding -> new AbstractMap.SimpleImmutableEntry<>(
+                    finding.getConcept().getUri(), (double) finding.getScore()))
+            .collect(toList());
+    for (int i = 0; i < uriScores.size(); i++) {
+      String uri = uriScores.get(i).getKey();
       if (!uri2conf2rank.contains(uri, conf) || uri2conf2rank.get(uri, conf) > i) {
         uri2conf2rank.put(uri, conf, i);
       }
-      double score = result.getScore();
+      double score = uriScores.get(i).getValue();
       if (!uri2conf2score.contains(uri, conf) || uri2conf2score.get(uri, conf) < score) {
         uri2conf2score.put(uri, conf, score);
       }
@@ -269,4 +233,10 @@ public class GoPubMedConceptRetrievalScorer extends AbstractScorer<ConceptSearch
     return ret.build();
   }
 
+  @Override
+  public void destroy() {
+    super.destroy();
+    scheduler.close();
+  }
+
 }
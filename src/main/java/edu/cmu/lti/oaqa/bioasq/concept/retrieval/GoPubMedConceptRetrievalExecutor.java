@@ -18,7 +18,9 @@ import edu.cmu.lti.oaqa.baseqa.providers.query.BagOfPhraseQueryStringConstructor
 import edu.cmu.lti.oaqa.baseqa.providers.query.QueryStringConstructor;
 import edu.cmu.lti.oaqa.baseqa.util.UimaContextHelper;
 import edu.cmu.lti.oaqa.bio.bioasq.services.GoPubMedService;
+import edu.cmu.lti.oaqa.bio.bioasq.services.OntologyServiceResponse;
 import edu.cmu.lti.oaqa.bioasq.util.BioASQUtil;
+import edu.cmu.lti.oaqa.bioasq.util.GoPubMedClient;
 import edu.cmu.lti.oaqa.type.retrieval.AbstractQuery;
 import edu.cmu.lti.oaqa.type.retrieval.ConceptSearchResult;
 import edu.cmu.lti.oaqa.util.TypeUtil;
@@ -32,13 +34,11 @@ import org.apache.uima.resource.ResourceInitializationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import static java.util.stream.Collectors.groupingBy;
@@ -55,7 +55,7 @@ import static java.util.stream.Collectors.groupingBy;
  */
 public class GoPubMedConceptRetrievalExecutor extends JCasAnnotator_ImplBase {
 
-  private GoPubMedService service;
+  private GoPubMedClient client;
 
   private int pages;
 
@@ -79,7 +79,8 @@ public class GoPubMedConceptRetrievalExecutor extends JCasAnnotator_ImplBase {
     } catch (ConfigurationException e) {
       throw new ResourceInitializationException(e);
     }
-    service = new GoPubMedService(gopubmedProperties);
+    int nthreads = UimaContextHelper.getConfigParameterIntValue(context, "nthreads", 16);
+    client = new GoPubMedClient(new GoPubMedService(gopubmedProperties), nthreads);
     pages = UimaContextHelper.getConfigParameterIntValue(context, "pages", 1);
     hits = UimaContextHelper.getConfigParameterIntValue(context, "hits", 100);
     bopQueryStringConstructor = new BagOfPhraseQueryStringConstructor();
@@ -93,26 +94,24 @@ public class GoPubMedConceptRetrievalExecutor extends JCasAnnotator_ImplBase {
     String queryString = bopQueryStringConstructor.construct(aquery)
             .replaceAll("[^A-Za-z0-9_\\-\"]+", " ");
     LOG.info("Query string: {}", queryString);
-    List<ConceptSearchResult> concepts = Collections.synchronizedList(new ArrayList<>());
-    ExecutorService es = Executors.newCachedThreadPool();
+    // fetch the responses concurrently
+    Map<BioASQUtil.Ontology, CompletableFuture<List<OntologyServiceResponse.Result>>> futures =
+            new EnumMap<>(BioASQUtil.Ontology.class);
     for (BioASQUtil.Ontology ontology : BioASQUtil.Ontology.values()) {
-      es.execute(() -> {
-        try {
-          concepts.addAll(
-                  BioASQUtil.searchOntology(service, jcas, queryString, pages, hits, ontology));
-        } catch (IOException e) {
-          throw new RuntimeException(e);
-        }
-      } );
+      futures.put(ontology, client.searchOntology(queryString, pages, hits, ontology));
     }
-    es.shutdown();
     try {
-      if (!es.awaitTermination(timeout, TimeUnit.MINUTES)) {
+      if (!GoPubMedClient.awaitAll(futures.values(), timeout, TimeUnit.MINUTES)) {
         LOG.warn("Timeout occurs for one or some concept retrieval services.");
       }
     } catch (InterruptedException e) {
       throw new AnalysisEngineProcessException(e);
     }
+    // create the concept search results on the CAS thread
+    List<ConceptSearchResult> concepts = new ArrayList<>();
+    futures.forEach((ontology, future) -> GoPubMedClient.getIfCompleted(future, ontology.name())
+            .ifPresent(results -> concepts
+                    .addAll(BioASQUtil.createConceptSearchResults(jcas, results, ontology))));
     Map<String, List<ConceptSearchResult>> onto2concepts = concepts.stream()
             .collect(groupingBy(ConceptSearchResult::getSearchId));
     for (Map.Entry<String, List<ConceptSearchResult>> entry : onto2concepts.entrySet()) {
@@ -125,4 +124,10 @@ public class GoPubMedConceptRetrievalExecutor extends JCasAnnotator_ImplBase {
     TypeUtil.rankedSearchResultsByScore(concepts, limit).forEach(ConceptSearchResult::addToIndexes);
   }
 
+  @Override
+  public void destroy() {
+    super.destroy();
+    client.close();
+  }
+
 }
@@ -0,0 +1,289 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioasq.concept.retrieval;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.gson.Gson;
+import edu.cmu.lti.oaqa.bio.bioasq.services.GoPubMedService;
+import edu.cmu.lti.oaqa.bio.bioasq.services.OntologyServiceResponse;
+import edu.cmu.lti.oaqa.bioasq.util.BioASQUtil;
+import edu.cmu.lti.oaqa.bioasq.util.GoPubMedClient;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *   Schedules the ontology search requests to {@link GoPubMedService}, e.g. those sent by
+ *   {@link edu.cmu.lti.oaqa.bioasq.concept.rerank.scorers.GoPubMedConceptRetrievalScorer} for
+ *   many query strings and all the {@link BioASQUtil.Ontology}s at once.
+ *   <ul>
+ *     <li>
+ *       Identical (ontology, keywords, page, page size) requests that are in flight at the same
+ *       time are deduplicated, i.e. sent only once.
+ *     </li>
+ *     <li>
+ *       All the remote requests share a global budget of <tt>requests-per-second</tt>, which is
+ *       not enforced if not positive, and run on a bounded pool of <tt>nthreads</tt> threads.
+ *     </li>
+ *     <li>
+ *       If a MapDB <tt>cache-db-file</tt> is given, the responses are cached persistently, as JSON
+ *       strings, in the map <tt>cache-map-name</tt>. Failed requests are not cached.
+ *     </li>
+ *     <li>
+ *       Per-ontology counters of the requests, cache hits, deduplicated requests, remote calls,
+ *       errors, and total latency of the remote calls are kept, and reported by {@link #report()}.
+ *     </li>
+ *   </ul>
+ * </p>
+ * <p>
+ *   The remote call is made through an {@link OntologyPageFetcher}, which defaults to the
+ *   {@link GoPubMedService}, and can be replaced by a local stand-in for testing.
+ * </p>
+ *
+ * @see edu.cmu.lti.oaqa.bioasq.util.GoPubMedClient
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class GoPubMedRequestScheduler implements Closeable {
+
+  @FunctionalInterface
+  public interface OntologyPageFetcher {
+
+    OntologyServiceResponse.Result fetch(BioASQUtil.Ontology ontology, String keywords, int page,
+            int conceptsPerPage) throws IOException;
+
+  }
+
+  static class Counters {
+
+    final AtomicLong requests = new AtomicLong();
+
+    final AtomicLong cacheHits = new AtomicLong();
+
+    final AtomicLong deduplicated = new AtomicLong();
+
+    final AtomicLong remoteCalls = new AtomicLong();
+
+    final AtomicLong errors = new AtomicLong();
+
+    final AtomicLong latency = new AtomicLong();
+
+    @Override
+    public String toString() {
+      long calls = remoteCalls.get();
+      return String.format(
+              "%d requests, %d cache hits, %d deduplicated, %d remote calls (%d errors, "
+                      + "%.1f ms avg latency)", requests.get(), cacheHits.get(),
+              deduplicated.get(), calls, errors.get(),
+              calls == 0 ? 0.0 : (double) latency.get() / calls);
+    }
+
+  }
+
+  private final OntologyPageFetcher fetcher;
+
+  private final RateLimiter rateLimiter;
+
+  private final ExecutorService es;
+
+  private final Map<String, CompletableFuture<OntologyServiceResponse.Result>> key2inflight =
+          new ConcurrentHashMap<>();
+
+  private final Map<BioASQUtil.Ontology, Counters> ontology2counters =
+          new EnumMap<>(BioASQUtil.Ontology.class);
+
+  private final DB db;
+
+  private final Map<String, String> key2response;
+
+  private static final Gson gson = new Gson();
+
+  private static final Logger LOG = LoggerFactory.getLogger(GoPubMedRequestScheduler.class);
+
+  public GoPubMedRequestScheduler(GoPubMedService service, int nthreads,
+          double requestsPerSecond, String cacheDbFile, String cacheMapName) {
+    this((ontology, keywords, page, conceptsPerPage) -> BioASQUtil
+            .findOntologyEntitiesPaged(service, keywords, page, conceptsPerPage, ontology),
+            nthreads, requestsPerSecond, cacheDbFile, cacheMapName);
+  }
+
+  public GoPubMedRequestScheduler(OntologyPageFetcher fetcher, int nthreads,
+          double requestsPerSecond, String cacheDbFile, String cacheMapName) {
+    this.fetcher = fetcher;
+    this.rateLimiter = requestsPerSecond > 0 ? RateLimiter.create(requestsPerSecond) : null;
+    this.es = Executors.newFixedThreadPool(nthreads, r -> {
+      Thread thread = new Thread(r, "gopubmed-request-scheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    for (BioASQUtil.Ontology ontology : BioASQUtil.Ontology.values()) {
+      ontology2counters.put(ontology, new Counters());
+    }
+    if (cacheDbFile != null) {
+      db = DBMaker.newFileDB(new File(cacheDbFile)).compressionEnable().commitFileSyncDisable()
+              .cacheSize(128).closeOnJvmShutdown().make();
+      key2response = db.getHashMap(cacheMapName);
+    } else {
+      db = null;
+      key2response = null;
+    }
+  }
+
+  private static String getKey(BioASQUtil.Ontology ontology, String keywords, int page,
+          int conceptsPerPage) {
+    return ontology.name() + "\t" + conceptsPerPage + "\t" + page + "\t" + keywords;
+  }
+
+  /**
+   * Requests a page of the ontology search, from the cache, from an identical request in flight,
+   * or from the service.
+   */
+  public CompletableFuture<OntologyServiceResponse.Result> request(BioASQUtil.Ontology ontology,
+          String keywords, int page, int conceptsPerPage) {
+    Counters counters = ontology2counters.get(ontology);
+    counters.requests.incrementAndGet();
+    String key = getKey(ontology, keywords, page, conceptsPerPage);
+    if (key2response != null) {
+      String json = key2response.get(key);
+      if (json != null) {
+        counters.cacheHits.incrementAndGet();
+        return CompletableFuture
+                .completedFuture(gson.fromJson(json, OntologyServiceResponse.Result.class));
+      }
+    }
+    CompletableFuture<OntologyServiceResponse.Result> created = new CompletableFuture<>();
+    CompletableFuture<OntologyServiceResponse.Result> inflight = key2inflight
+            .putIfAbsent(key, created);
+    if (inflight != null) {
+      counters.deduplicated.incrementAndGet();
+      return inflight;
+    }
+    // the request may have been completed and released between the lookup and the claim
+    if (key2response != null) {
+      String json = key2response.get(key);
+      if (json != null) {
+        counters.cacheHits.incrementAndGet();
+        key2inflight.remove(key, created);
+        created.complete(gson.fromJson(json, OntologyServiceResponse.Result.class));
+        return created;
+      }
+    }
+    try {
+      es.execute(() -> fetch(ontology, keywords, page, conceptsPerPage, key, created, counters));
+    } catch (RejectedExecutionException e) {
+      key2inflight.remove(key, created);
+      created.completeExceptionally(e);
+    }
+    return created;
+  }
+
+  private void fetch(BioASQUtil.Ontology ontology, String keywords, int page, int conceptsPerPage,
+          String key, CompletableFuture<OntologyServiceResponse.Result> created,
+          Counters counters) {
+    if (rateLimiter != null) rateLimiter.acquire();
+    counters.remoteCalls.incrementAndGet();
+    long start = System.currentTimeMillis();
+    OntologyServiceResponse.Result result = null;
+    Throwable failure = null;
+    try {
+      result = fetcher.fetch(ontology, keywords, page, conceptsPerPage);
+      if (key2response != null) {
+        key2response.put(key, gson.toJson(result));
+      }
+    } catch (IOException e) {
+      failure = new UncheckedIOException(e);
+    } catch (RuntimeException | Error e) {
+      failure = e;
+    } finally {
+      counters.latency.addAndGet(System.currentTimeMillis() - start);
+      // released before it is completed, so that a request issued after the completion is sent
+      // again or hits the cache, instead of joining a failed request
+      key2inflight.remove(key, created);
+    }
+    if (failure == null) {
+      created.complete(result);
+    } else {
+      counters.errors.incrementAndGet();
+      created.completeExceptionally(failure);
+      if (failure instanceof Error) throw (Error) failure;
+    }
+  }
+
+  /**
+   * Requests all the pages of the ontology search concurrently, and drops the pages after the
+   * first page that is not full, as {@link BioASQUtil#searchOntology} does, so that only the
+   * failures of the kept pages fail the search.
+   * The dropped pages are not cancelled, since their futures may be shared with identical requests
+   * of other searches, and their responses are still cached.
+   */
+  public CompletableFuture<List<OntologyServiceResponse.Result>> searchOntology(String keywords,
+          int pages, int conceptsPerPage, BioASQUtil.Ontology ontology) {
+    List<CompletableFuture<OntologyServiceResponse.Result>> futures = new ArrayList<>();
+    for (int page = 0; page < pages; page++) {
+      futures.add(request(ontology, keywords, page, conceptsPerPage));
+    }
+    return GoPubMedClient.collectPages(futures, conceptsPerPage,
+            result -> result.getFindings().size());
+  }
+
+  Counters getCounters(BioASQUtil.Ontology ontology) {
+    return ontology2counters.get(ontology);
+  }
+
+  public void commit() {
+    if (db != null) {
+      db.commit();
+    }
+  }
+
+  public void report() {
+    ontology2counters.forEach((ontology, counters) -> LOG.info("{}: {}", ontology, counters));
+  }
+
+  @Override
+  public void close() {
+    es.shutdownNow();
+    try {
+      // wait for the interrupted requests before closing the cache
+      es.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    report();
+    if (db != null) {
+      db.commit();
+      db.close();
+    }
+  }
+
+}
@@ -15,11 +15,15 @@
 package edu.cmu.lti.oaqa.bioasq.concept.retrieval;
 
 import com.google.common.base.CharMatcher;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
 import edu.cmu.lti.oaqa.baseqa.providers.query.BagOfPhraseQueryStringConstructor;
 import edu.cmu.lti.oaqa.baseqa.providers.query.QueryStringConstructor;
 import edu.cmu.lti.oaqa.baseqa.util.UimaContextHelper;
 import edu.cmu.lti.oaqa.bio.bioasq.services.GoPubMedService;
+import edu.cmu.lti.oaqa.bio.bioasq.services.OntologyServiceResponse;
 import edu.cmu.lti.oaqa.bioasq.util.BioASQUtil;
+import edu.cmu.lti.oaqa.bioasq.util.GoPubMedClient;
 import edu.cmu.lti.oaqa.type.retrieval.AbstractQuery;
 import edu.cmu.lti.oaqa.type.retrieval.ConceptSearchResult;
 import edu.cmu.lti.oaqa.type.retrieval.QueryConcept;
@@ -34,10 +38,8 @@ import org.apache.uima.resource.ResourceInitializationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import static java.util.stream.Collectors.groupingBy;
@@ -63,7 +65,7 @@ import static java.util.stream.Collectors.groupingBy;
  */
 public class GoPubMedSeparateConceptRetrievalExecutor extends JCasAnnotator_ImplBase {
 
-  private GoPubMedService service;
+  private GoPubMedClient client;
 
   private int pages;
 
@@ -88,7 +90,8 @@ public class GoPubMedSeparateConceptRetrievalExecutor extends JCasAnnotator_Impl
     } catch (ConfigurationException e) {
       throw new ResourceInitializationException(e);
     }
-    service = new GoPubMedService(gopubmedProperties);
+    int nthreads = UimaContextHelper.getConfigParameterIntValue(context, "nthreads", 16);
+    client = new GoPubMedClient(new GoPubMedService(gopubmedProperties), nthreads);
     pages = UimaContextHelper.getConfigParameterIntValue(context, "pages", 1);
     hits = UimaContextHelper.getConfigParameterIntValue(context, "hits", 1);
     bopQueryStringConstructor = new BagOfPhraseQueryStringConstructor();
@@ -100,31 +103,37 @@ public class GoPubMedSeparateConceptRetrievalExecutor extends JCasAnnotator_Impl
   public void process(JCas jcas) throws AnalysisEngineProcessException {
     AbstractQuery aquery = TypeUtil.getAbstractQueries(jcas).stream().findFirst().get();
     Collection<QueryConcept> qconcepts = TypeUtil.getQueryConcepts(aquery);
-    List<ConceptSearchResult> concepts = Collections.synchronizedList(new ArrayList<>());
-    ExecutorService es = Executors.newCachedThreadPool();
+    List<String> queryStrings = new ArrayList<>();
     for (QueryConcept qconcept : qconcepts) {
       String queryString = bopQueryStringConstructor.formatQueryConcept(qconcept)
               .replaceAll("[^A-Za-z0-9_\\-\"]+", " ");
       LOG.info("Query string: {}", queryString);
+      queryStrings.add(queryString);
+    }
+    // fetch the responses concurrently
+    Table<String, BioASQUtil.Ontology, CompletableFuture<List<OntologyServiceResponse.Result>>>
+            futures = HashBasedTable.create();
+    for (String queryString : queryStrings) {
       for (BioASQUtil.Ontology ontology : BioASQUtil.Ontology.values()) {
-        es.execute(() -> {
-          try {
-            concepts.addAll(
-                    BioASQUtil.searchOntology(service, jcas, queryString, pages, hits, ontology));
-          } catch (IOException e) {
-            throw new RuntimeException(e);
-          }
-        });
+        futures.put(queryString, ontology,
+                client.searchOntology(queryString, pages, hits, ontology));
       }
     }
-    es.shutdown();
     try {
-      if (!es.awaitTermination(timeout, TimeUnit.MINUTES)) {
+      if (!GoPubMedClient.awaitAll(futures.values(), timeout, TimeUnit.MINUTES)) {
         LOG.warn("Timeout occurs for one or some concept retrieval services.");
       }
     } catch (InterruptedException e) {
       throw new AnalysisEngineProcessException(e);
     }
+    // create the concept search results on the CAS thread
+    List<ConceptSearchResult> concepts = new ArrayList<>();
+    for (String queryString : futures.rowKeySet()) {
+      futures.row(queryString).forEach((ontology, future) -> GoPubMedClient
+              .getIfCompleted(future, ontology.name() + " for " + queryString)
+              .ifPresent(results -> concepts
+                      .addAll(BioASQUtil.createConceptSearchResults(jcas, results, ontology))));
+    }
     Map<String, List<ConceptSearchResult>> onto2concepts = concepts.stream()
             .collect(groupingBy(ConceptSearchResult::getSearchId));
     for (Map.Entry<String, List<ConceptSearchResult>> entry : onto2concepts.entrySet()) {
@@ -137,4 +146,10 @@ public class GoPubMedSeparateConceptRetrievalExecutor extends JCasAnnotator_Impl
     TypeUtil.rankedSearchResultsByScore(concepts, limit).forEach(ConceptSearchResult::addToIndexes);
   }
 
+  @Override
+  public void destroy() {
+    super.destroy();
+    client.close();
+  }
+
 }
@@ -23,20 +23,18 @@ import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * A relevant {@link Document} retrieval service client that is used in BioASQ 3B.
+ * The connections to the service are kept open and reused via a
+ * {@link DiXuProprietaryDocumentRetrievalTransport}, which can also send a batch of questions in a
+ * pipeline.
  *
  * @see edu.cmu.lti.oaqa.baseqa.document.retrieval.LuceneDocumentRetrievalExecutor
  *
@@ -44,9 +42,7 @@ import java.util.List;
  */
 public class DiXuProprietaryDocumentRetrievalClient extends JCasAnnotator_ImplBase {
 
-  private String host;
-
-  private int port;
+  private DiXuProprietaryDocumentRetrievalTransport transport;
 
   private String uriPrefix;
 
@@ -56,46 +52,48 @@ public class DiXuProprietaryDocumentRetrievalClient extends JCasAnnotator_ImplBa
   @Override
   public void initialize(UimaContext context) throws ResourceInitializationException {
     super.initialize(context);
-    host = UimaContextHelper.getConfigParameterStringValue(context, "host");
-    port = UimaContextHelper.getConfigParameterIntValue(context, "port", 10080);
+    String host = UimaContextHelper.getConfigParameterStringValue(context, "host");
+    int port = UimaContextHelper.getConfigParameterIntValue(context, "port", 10080);
     uriPrefix = UimaContextHelper.getConfigParameterStringValue(context, "uri-prefix");
+    int maxConnections = UimaContextHelper.getConfigParameterIntValue(context, "max-connections",
+            4);
+    int connectTimeout = UimaContextHelper.getConfigParameterIntValue(context, "connect-timeout",
+            10000);
+    int readTimeout = UimaContextHelper.getConfigParameterIntValue(context, "read-timeout",
+            300000);
+    int maxReconnects = UimaContextHelper.getConfigParameterIntValue(context, "max-reconnects",
+            2);
+    int window = UimaContextHelper.getConfigParameterIntValue(context, "pipeline-window", 16);
+    transport = new DiXuProprietaryDocumentRetrievalTransport(host, port, maxConnections,
+            connectTimeout, readTimeout, maxReconnects, window, 10);
   }
 
   @Override
   public void process(JCas jcas) throws AnalysisEngineProcessException {
     String query = TypeUtil.getQuestion(jcas).getText();
-    List<Document> documents = new ArrayList<>();
-    LOG.info("Attempting to connect to host {} on port {}.", host, port);
+    DiXuProprietaryDocumentRetrievalTransport.Response response;
     try {
-      Socket echoSocket = new Socket(host, port);
-      PrintWriter out = new PrintWriter(echoSocket.getOutputStream(), true);
-      BufferedReader in = new BufferedReader(new InputStreamReader(echoSocket.getInputStream()));
-      out.println(query);
-      String lineFromSever = in.readLine();
-      JSONObject jsobj = new JSONObject(lineFromSever);
-      JSONArray docnoList = (JSONArray) jsobj.get("docno_list");
-      JSONArray scoreList = (JSONArray) jsobj.get("score_list");
-      JSONArray titleList = (JSONArray) jsobj.get("title_list");
-      JSONArray abstractList = (JSONArray) jsobj.get("abstract_list");
-      int rank = 1;
-      for (int i = 0; i < docnoList.length(); i++) {
-        Document doc = TypeFactory.createDocument(jcas, uriPrefix + docnoList.get(i));
-        doc.setScore((double) scoreList.get(i));
-        doc.setRank(rank++);
-        doc.setTitle((String) titleList.get(i));
-        doc.setText((String) abstractList.get(i));
-        documents.add(doc);
-        if (rank > 10)
-          break;
-      }
-      out.close();
-      in.close();
-      echoSocket.close();
-    } catch (Exception e) {
-      System.err.println("Don't know about host: " + host);
+      response = transport.search(query);
+    } catch (IOException e) {
       throw new AnalysisEngineProcessException(e);
     }
+    List<Document> documents = new ArrayList<>();
+    for (int i = 0; i < response.size(); i++) {
+      Document doc = TypeFactory.createDocument(jcas, uriPrefix + response.docnos.get(i));
+      doc.setScore(response.scores.get(i));
+      doc.setRank(i + 1);
+      doc.setTitle(response.titles.get(i));
+      doc.setText(response.abstracts.get(i));
+      documents.add(doc);
+    }
+    LOG.info("Retrieved {} documents.", documents.size());
     documents.forEach(Document::addToIndexes);
   }
 
+  @Override
+  public void destroy() {
+    super.destroy();
+    transport.close();
+  }
+
 }
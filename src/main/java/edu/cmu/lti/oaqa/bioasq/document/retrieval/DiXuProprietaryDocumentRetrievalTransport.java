@@ -0,0 +1,327 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioasq.document.retrieval;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>
+ *   A pooled, persistent-connection transport for the line-based protocol used by
+ *   {@link DiXuProprietaryDocumentRetrievalClient}, where each request is a question in a line,
+ *   and each response is a JSON object in a line, with the fields <tt>docno_list</tt>,
+ *   <tt>score_list</tt>, <tt>title_list</tt>, and <tt>abstract_list</tt>.
+ * </p>
+ * <p>
+ *   At most <tt>max-connections</tt> connections are kept open and reused across requests.
+ *   {@link #search(List)} pipelines a batch of questions over one connection, i.e. it writes up to
+ *   <tt>pipeline-window</tt> questions ahead of the responses it has read, and sends the next
+ *   question after each response.
+ *   Since the window bounds the unanswered questions in flight, the server never blocks writing
+ *   responses that the client is not reading while the client blocks writing questions that the
+ *   server is not reading, whatever the size of the batch, as long as a window of questions fits
+ *   in the socket buffers.
+ *   If the server closes or resets a pooled connection (e.g. one that has been idle for too long),
+ *   or a connection after answering some of the questions (e.g. a server that only answers one
+ *   question per connection), the unanswered questions are resent over a new connection, so the
+ *   transport still works, though without the benefit of pipelining.
+ *   At most <tt>max-reconnects</tt> consecutive reconnections are made without receiving a
+ *   response.
+ *   Any other error, e.g. a read timeout or a malformed response, closes the connection and is
+ *   thrown to the caller, without resending any question.
+ *   The responses are decoded with a streaming {@link JsonReader}, and only the first
+ *   <tt>limit</tt> documents of each response are kept.
+ * </p>
+ *
+ * @see DiXuProprietaryDocumentRetrievalClient
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class DiXuProprietaryDocumentRetrievalTransport implements Closeable {
+
+  public static class Response {
+
+    public final List<String> docnos = new ArrayList<>();
+
+    public final List<Double> scores = new ArrayList<>();
+
+    public final List<String> titles = new ArrayList<>();
+
+    public final List<String> abstracts = new ArrayList<>();
+
+    public int size() {
+      return docnos.size();
+    }
+
+  }
+
+  private static class Connection {
+
+    final Socket socket;
+
+    final Writer out;
+
+    final BufferedReader in;
+
+    // whether the connection has been returned to the pool, and may have been closed by the server
+    boolean reused;
+
+    Connection(Socket socket) throws IOException {
+      this.socket = socket;
+      this.out = new OutputStreamWriter(socket.getOutputStream(), UTF_8);
+      this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+    }
+
+    void close() {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        LOG.debug("Failed to close the connection.", e);
+      }
+    }
+
+  }
+
+  /**
+   * Thrown if the server has closed the connection before all the responses are read.
+   */
+  private static class ConnectionClosedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    ConnectionClosedException(String message) {
+      super(message);
+    }
+
+  }
+
+  private final String host;
+
+  private final int port;
+
+  private final int connectTimeout;
+
+  private final int readTimeout;
+
+  private final int limit;
+
+  private final int maxReconnects;
+
+  private final int window;
+
+  private final BlockingQueue<Connection> idleConnections;
+
+  private static final Logger LOG = LoggerFactory
+          .getLogger(DiXuProprietaryDocumentRetrievalTransport.class);
+
+  public DiXuProprietaryDocumentRetrievalTransport(String host, int port, int maxConnections,
+          int connectTimeout, int readTimeout, int maxReconnects, int window, int limit) {
+    this.host = host;
+    this.port = port;
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+    this.limit = limit;
+    this.maxReconnects = maxReconnects;
+    this.window = window;
+    this.idleConnections = new ArrayBlockingQueue<>(maxConnections);
+  }
+
+  public Response search(String question) throws IOException {
+    return search(Collections.singletonList(question)).get(0);
+  }
+
+  /**
+   * Sends the questions over one connection in a pipeline of at most <tt>window</tt> unanswered
+   * questions, and returns the responses in the same order.
+   */
+  public List<Response> search(List<String> questions) throws IOException {
+    List<Response> responses = new ArrayList<>();
+    // the number of reconnections since the last response
+    int reconnects = 0;
+    Connection connection = acquire();
+    while (responses.size() < questions.size()) {
+      int answered = responses.size();
+      // the unanswered questions are resent over a new connection
+      int sent = answered;
+      try {
+        while (responses.size() < questions.size()) {
+          int flushed = sent;
+          while (sent < questions.size() && sent - responses.size() < window) {
+            // a question must fit in a line
+            connection.out.write(questions.get(sent++).replaceAll("[\\r\\n]+", " "));
+            connection.out.write('\n');
+          }
+          if (sent > flushed) {
+            connection.out.flush();
+          }
+          String line = connection.in.readLine();
+          if (line == null) {
+            throw new ConnectionClosedException("Connection closed by " + host + ":" + port);
+          }
+          responses.add(parse(line));
+          reconnects = 0;
+        }
+      } catch (ConnectionClosedException | SocketException e) {
+        // the server has closed or reset the connection, e.g. a stale pooled connection
+        connection.close();
+        // a new connection closed before any response is not retried
+        if (!connection.reused && responses.size() == answered || reconnects >= maxReconnects) {
+          throw e;
+        }
+        LOG.debug("Reconnecting to {}:{} for {} questions.", host, port,
+                questions.size() - responses.size(), e);
+        connection = connect();
+        reconnects++;
+      } catch (IOException | RuntimeException e) {
+        // e.g. a read timeout or a malformed response, after which the connection is out of sync
+        connection.close();
+        throw e;
+      }
+    }
+    release(connection);
+    return responses;
+  }
+
+  private Connection acquire() throws IOException {
+    Connection connection = idleConnections.poll();
+    return connection != null ? connection : connect();
+  }
+
+  private Connection connect() throws IOException {
+    LOG.info("Connecting to host {} on port {}.", host, port);
+    Socket socket = new Socket();
+    socket.setTcpNoDelay(true);
+    socket.setKeepAlive(true);
+    socket.setSoTimeout(readTimeout);
+    try {
+      socket.connect(new InetSocketAddress(host, port), connectTimeout);
+      return new Connection(socket);
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  private void release(Connection connection) {
+    connection.reused = true;
+    if (!idleConnections.offer(connection)) {
+      connection.close();
+    }
+  }
+
+  private Response parse(String line) throws IOException {
+    Response response = new Response();
+    try (JsonReader reader = new JsonReader(new StringReader(line))) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "docno_list": readStrings(reader, response.docnos); break;
+          case "title_list": readStrings(reader, response.titles); break;
+          case "abstract_list": readStrings(reader, response.abstracts); break;
+          case "score_list":
+            reader.beginArray();
+            while (reader.hasNext()) {
+              if (response.scores.size() < limit) {
+                response.scores.add(reader.nextDouble());
+              } else {
+                reader.skipValue();
+              }
+            }
+            reader.endArray();
+            break;
+          default: reader.skipValue();
+        }
+      }
+      reader.endObject();
+    } catch (IOException | IllegalStateException | NumberFormatException e) {
+      // e.g. an EOFException of a truncated line, which is not related to the connection
+      throw new IOException("Malformed response: " + line, e);
+    }
+    return response;
+  }
+
+  private void readStrings(JsonReader reader, List<String> values) throws IOException {
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (values.size() < limit) {
+        if (reader.peek() == JsonToken.NULL) {
+          reader.nextNull();
+          values.add(null);
+        } else {
+          values.add(reader.nextString());
+        }
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endArray();
+  }
+
+  @Override
+  public void close() {
+    Connection connection;
+    while ((connection = idleConnections.poll()) != null) {
+      connection.close();
+    }
+  }
+
+  /**
+   * Sends the questions read from the standard input, one per line, in a batch, and prints the
+   * document numbers of each response.
+   *
+   * @param args the host and the port of the service, e.g. <tt>DiXuEchoServer</tt> in the test
+   *             sources
+   */
+  public static void main(String[] args) throws IOException {
+    BufferedReader stdin = new BufferedReader(new InputStreamReader(System.in, UTF_8));
+    List<String> questions = new ArrayList<>();
+    String line;
+    while ((line = stdin.readLine()) != null) {
+      if (!line.trim().isEmpty()) questions.add(line);
+    }
+    try (DiXuProprietaryDocumentRetrievalTransport transport =
+                 new DiXuProprietaryDocumentRetrievalTransport(args[0], Integer.parseInt(args[1]),
+                         1, 10000, 300000, 2, 16, 10)) {
+      long start = System.currentTimeMillis();
+      List<Response> responses = transport.search(questions);
+      for (int i = 0; i < questions.size(); i++) {
+        System.out.println(questions.get(i) + "\t" + responses.get(i).docnos);
+      }
+      System.err.println(questions.size() + " questions in "
+              + (System.currentTimeMillis() - start) + " ms");
+    }
+  }
+
+}
@@ -14,12 +14,13 @@
 
 package edu.cmu.lti.oaqa.bioasq.document.retrieval;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
@@ -30,9 +31,14 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 
 import edu.cmu.lti.oaqa.baseqa.providers.query.QueryStringConstructor;
+import edu.cmu.lti.oaqa.baseqa.util.ProviderCache;
 import edu.cmu.lti.oaqa.baseqa.util.UimaContextHelper;
 import edu.cmu.lti.oaqa.bio.bioasq.services.GoPubMedService;
+import edu.cmu.lti.oaqa.bio.bioasq.services.PubMedSearchServiceResponse;
 import edu.cmu.lti.oaqa.bioasq.util.BioASQUtil;
+import edu.cmu.lti.oaqa.bioasq.util.GoPubMedClient;
+import edu.cmu.lti.oaqa.bioqa.providers.document.DocumentStoreProvider;
+import edu.cmu.lti.oaqa.bioqa.providers.document.StoredDocument;
 import edu.cmu.lti.oaqa.bioqa.providers.query.PubMedQueryStringConstructor;
 import edu.cmu.lti.oaqa.type.retrieval.AbstractQuery;
 import edu.cmu.lti.oaqa.type.retrieval.Document;
@@ -40,10 +46,16 @@ import edu.cmu.lti.oaqa.util.TypeUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static java.util.stream.Collectors.toList;
+
 /**
  * A {@link JCasAnnotator_ImplBase} that performs search using a query string, transformed from a
  * {@link AbstractQuery} by a {@link QueryStringConstructor} to retrieve relevant
  * {@link Document}s from {@link GoPubMedService}.
+ * If a <tt>document-store</tt> provider is given, e.g. a
+ * {@link edu.cmu.lti.oaqa.bioqa.providers.document.MappedDocumentStoreProvider}, the titles and
+ * the abstracts that are missing from the {@link GoPubMedService} response are read from the local
+ * store in a batch.
  *
  * @see edu.cmu.lti.oaqa.baseqa.document.retrieval.LuceneDocumentRetrievalExecutor
  *
@@ -51,7 +63,7 @@ import org.slf4j.LoggerFactory;
  */
 public class GoPubMedDocumentRetrievalExecutor extends JCasAnnotator_ImplBase {
 
-  private GoPubMedService service;
+  private GoPubMedClient client;
 
   private int pages;
 
@@ -59,6 +71,8 @@ public class GoPubMedDocumentRetrievalExecutor extends JCasAnnotator_ImplBase {
 
   private QueryStringConstructor queryStringConstructor;
 
+  private DocumentStoreProvider documentStore;
+
   private static final Logger LOG = LoggerFactory
           .getLogger(GoPubMedDocumentRetrievalExecutor.class);
 
@@ -72,10 +86,16 @@ public class GoPubMedDocumentRetrievalExecutor extends JCasAnnotator_ImplBase {
     } catch (ConfigurationException e) {
       throw new ResourceInitializationException(e);
     }
-    service = new GoPubMedService(gopubmedProperties);
+    int nthreads = UimaContextHelper.getConfigParameterIntValue(context, "nthreads", 4);
+    client = new GoPubMedClient(new GoPubMedService(gopubmedProperties), nthreads);
     pages = UimaContextHelper.getConfigParameterIntValue(context, "pages", 1);
     hits = UimaContextHelper.getConfigParameterIntValue(context, "hits", 100);
     queryStringConstructor = new PubMedQueryStringConstructor();
+    String documentStoreName = UimaContextHelper.getConfigParameterStringValue(context,
+            "document-store", null);
+    if (documentStoreName != null) {
+      documentStore = ProviderCache.getProvider(documentStoreName, DocumentStoreProvider.class);
+    }
   }
 
   @Override
@@ -87,7 +107,10 @@ public class GoPubMedDocumentRetrievalExecutor extends JCasAnnotator_ImplBase {
       try {
         String queryString = queryStringConstructor.construct(aquery);
         LOG.info("Search for query: {}", queryString);
-        BioASQUtil.searchPubMed(service, jcas, queryString, pages, hits).stream()
+        // the pages are fetched concurrently, and the documents are created on the CAS thread
+        List<PubMedSearchServiceResponse.Result> results = client
+                .searchPubMed(queryString, pages, hits).get();
+        BioASQUtil.createDocuments(jcas, results).stream()
                 .filter(doc -> !docIds.contains(doc.getDocId())).forEach(doc -> {
           documents.add(doc);
           docIds.add(doc.getDocId());
@@ -96,10 +119,50 @@ public class GoPubMedDocumentRetrievalExecutor extends JCasAnnotator_ImplBase {
         if (documents.size() > 10) {
           break;
         }
-      } catch (IOException e) {
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
         throw new AnalysisEngineProcessException(e);
+      } catch (ExecutionException e) {
+        throw new AnalysisEngineProcessException(e.getCause());
       }
     }
+    if (documentStore != null) {
+      setMissingText(documents);
+    }
     documents.forEach(Document::addToIndexes);
   }
+
+  private void setMissingText(List<Document> documents) throws AnalysisEngineProcessException {
+    List<String> missingDocIds = documents.stream()
+            .filter(doc -> isEmpty(doc.getTitle()) || isEmpty(doc.getText()))
+            .map(Document::getDocId).collect(toList());
+    if (missingDocIds.isEmpty()) {
+      return;
+    }
+    Map<String, StoredDocument> pmid2doc = documentStore.get(missingDocIds);
+    for (Document doc : documents) {
+      StoredDocument storedDoc = pmid2doc.get(doc.getDocId());
+      if (storedDoc == null) {
+        continue;
+      }
+      if (isEmpty(doc.getTitle()) && storedDoc.getTitle() != null) {
+        doc.setTitle(storedDoc.getTitle());
+      }
+      if (isEmpty(doc.getText()) && storedDoc.getAbstractText() != null) {
+        doc.setText(storedDoc.getAbstractText());
+      }
+    }
+    LOG.info("Documents with missing text: {} ({} from document store)", missingDocIds.size(),
+            pmid2doc.size());
+  }
+
+  private static boolean isEmpty(String text) {
+    return text == null || text.isEmpty();
+  }
+
+  @Override
+  public void destroy() {
+    super.destroy();
+    client.close();
+  }
 }
@@ -14,11 +14,16 @@
 
 package edu.cmu.lti.oaqa.bioasq.passage;
 
-import com.google.common.io.CharStreams;
 import com.google.gson.Gson;
 import com.google.gson.JsonIOException;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import edu.cmu.lti.oaqa.baseqa.util.ProviderCache;
 import edu.cmu.lti.oaqa.baseqa.util.UimaContextHelper;
+import edu.cmu.lti.oaqa.bioqa.providers.document.DocumentStoreProvider;
+import edu.cmu.lti.oaqa.bioqa.providers.document.StoredDocument;
+import edu.cmu.lti.oaqa.bioqa.util.RecordReplay;
 import edu.cmu.lti.oaqa.type.retrieval.Document;
 import edu.cmu.lti.oaqa.util.TypeUtil;
 import org.apache.uima.UimaContext;
@@ -28,16 +33,30 @@ import org.apache.uima.fit.util.FSCollectionFactory;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.StringArray;
 import org.apache.uima.resource.ResourceInitializationException;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.net.MalformedURLException;
+import java.lang.reflect.Type;
 import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.IntStream;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.stream.Collectors.toList;
 
 /**
@@ -51,56 +70,186 @@ import static java.util.stream.Collectors.toList;
  * processing tool from <a href="http://bioasq.org/">http://bioasq.org/</a>, and then split into
  * individual JSON objects.
  *
+ * The documents are fetched concurrently (up to <tt>nthreads</tt>, with <tt>connect-timeout</tt>
+ * and <tt>read-timeout</tt> per request) and decoded from the response stream.
+ * If <tt>store-db-file</tt> is given, the sections are kept in a local MapDB store keyed by PMID,
+ * which is consulted first and filled on miss, and the numbers of documents served from the store
+ * and fetched are reported.
+ * If a <tt>document-store</tt> provider is given, e.g. a
+ * {@link edu.cmu.lti.oaqa.bioqa.providers.document.MappedDocumentStoreProvider}, it is read before
+ * the other sources, in a batch.
+ *
  * @author <a href="mailto:ziy@cs.cmu.edu">Zi Yang</a> created on 10/19/14
  */
 public class PmcContentSetter extends JCasAnnotator_ImplBase {
 
   private static Gson gson = new Gson();
 
+  private static final Type SECTIONS_TYPE = new TypeToken<List<String>>() {}.getType();
+
   private String urlFormat;
 
+  private int connectTimeout;
+
+  private int readTimeout;
+
+  private ExecutorService es;
+
+  private DB db;
+
+  private Map<String, List<String>> pmid2sections;
+
+  private DocumentStoreProvider documentStore;
+
+  private AtomicLong documentStoreCount = new AtomicLong();
+
+  private AtomicLong storeCount = new AtomicLong();
+
+  private AtomicLong fetchCount = new AtomicLong();
+
   private static final Logger LOG = LoggerFactory.getLogger(PmcContentSetter.class);
 
   @Override
   public void initialize(UimaContext context) throws ResourceInitializationException {
     super.initialize(context);
     urlFormat = UimaContextHelper.getConfigParameterStringValue(context, "url-format");
+    int nthreads = UimaContextHelper.getConfigParameterIntValue(context, "nthreads", 16);
+    connectTimeout = UimaContextHelper.getConfigParameterIntValue(context, "connect-timeout",
+            10000);
+    readTimeout = UimaContextHelper.getConfigParameterIntValue(context, "read-timeout", 60000);
+    es = Executors.newFixedThreadPool(nthreads, r -> {
+      Thread thread = new Thread(r, "pmc-content-setter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    String storeDbFile = UimaContextHelper.getConfigParameterStringValue(context, "store-db-file",
+            null);
+    if (storeDbFile != null) {
+      db = DBMaker.newFileDB(new File(storeDbFile)).compressionEnable().commitFileSyncDisable()
+              .cacheSize(128).closeOnJvmShutdown().make();
+      pmid2sections = db.getHashMap(UimaContextHelper
+              .getConfigParameterStringValue(context, "store-map-name", "pmc-sections"));
+    }
+    String documentStoreName = UimaContextHelper.getConfigParameterStringValue(context,
+            "document-store", null);
+    if (documentStoreName != null) {
+      documentStore = ProviderCache.getProvider(documentStoreName, DocumentStoreProvider.class);
+    }
   }
 
   @Override
   public void process(JCas jcas) throws AnalysisEngineProcessException {
-    int count = 0;
-    for (Document doc : TypeUtil.getRankedDocuments(jcas)) {
-      URL url;
-      try {
-        url = new URL(String.format(urlFormat, doc.getDocId()));
-      } catch (MalformedURLException e) {
-        throw new AnalysisEngineProcessException(e);
+    List<Document> docs = TypeUtil.getRankedDocuments(jcas).stream().collect(toList());
+    long storeCountBefore = storeCount.get();
+    long fetchCountBefore = fetchCount.get();
+    // read the sections from the local document store in a batch, if any
+    Map<String, StoredDocument> pmid2doc = documentStore == null ? Collections.emptyMap() :
+            documentStore.get(docs.stream().map(Document::getDocId).collect(toList()));
+    int documentStoreCountInCas = 0;
+    // fetch the other sections concurrently, from the local store first
+    List<CompletableFuture<List<String>>> futures = new ArrayList<>();
+    for (Document doc : docs) {
+      String pmid = doc.getDocId();
+      StoredDocument storedDoc = pmid2doc.get(pmid);
+      if (storedDoc != null && !storedDoc.getSections().isEmpty()) {
+        futures.add(CompletableFuture.completedFuture(storedDoc.getSections()));
+        documentStoreCountInCas++;
+      } else {
+        futures.add(CompletableFuture.supplyAsync(() -> getSections(pmid), es));
       }
-      String json;
+    }
+    documentStoreCount.addAndGet(documentStoreCountInCas);
+    // set the sections on the CAS thread
+    int count = 0;
+    for (int i = 0; i < docs.size(); i++) {
+      List<String> sections;
       try {
-        json = CharStreams.toString(new InputStreamReader(url.openStream()));
-      } catch (IOException e) {
-        LOG.error("Error access {}", url.toString());
+        sections = futures.get(i).get();
+      } catch (InterruptedException e) {
+        futures.forEach(future -> future.cancel(true));
+        Thread.currentThread().interrupt();
         throw new AnalysisEngineProcessException(e);
+      } catch (ExecutionException e) {
+        futures.forEach(future -> future.cancel(true));
+        throw new AnalysisEngineProcessException(e.getCause());
       }
-      if (json.isEmpty()) {
+      if (sections.isEmpty()) {
         continue;
       }
-      List<String> sections;
-      try {
-        sections = gson.fromJson(json, PmcDocument.class).getSections();
-      } catch (JsonSyntaxException | JsonIOException e) {
-        throw new AnalysisEngineProcessException(e);
-      }
+      Document doc = docs.get(i);
       doc.setSections((StringArray) FSCollectionFactory.createStringArray(jcas, sections));
       List<String> sectionLabels = IntStream.range(0, sections.size())
-              .mapToObj(i -> "sections." + i).collect(toList());
+              .mapToObj(j -> "sections." + j).collect(toList());
       doc.setSectionLabels(
               (StringArray) FSCollectionFactory.createStringArray(jcas, sectionLabels));
       count++;
     }
-    LOG.info("Total pmc documents with content: {}", count);
+    if (db != null) {
+      db.commit();
+    }
+    LOG.info("Total pmc documents with content: {} ({} from document store, {} from store, {} "
+            + "fetched)", count, documentStoreCountInCas, storeCount.get() - storeCountBefore,
+            fetchCount.get() - fetchCountBefore);
+  }
+
+  /**
+   * @return the sections of the document, or an empty list if the document has no content
+   */
+  private List<String> getSections(String pmid) {
+    if (pmid2sections != null) {
+      List<String> sections = pmid2sections.get(pmid);
+      if (sections != null) {
+        storeCount.incrementAndGet();
+        return sections;
+      }
+    }
+    List<String> sections = fetchSections(pmid);
+    fetchCount.incrementAndGet();
+    if (pmid2sections != null) {
+      pmid2sections.put(pmid, sections);
+    }
+    return sections;
+  }
+
+  private List<String> fetchSections(String pmid) {
+    return RecordReplay.getInstance().call("pmc", pmid, SECTIONS_TYPE,
+            () -> fetchRemoteSections(pmid));
+  }
+
+  private List<String> fetchRemoteSections(String pmid) {
+    String url = String.format(urlFormat, pmid);
+    try {
+      URLConnection connection = new URL(url).openConnection();
+      connection.setConnectTimeout(connectTimeout);
+      connection.setReadTimeout(readTimeout);
+      try (JsonReader reader = new JsonReader(
+              new InputStreamReader(connection.getInputStream(), UTF_8))) {
+        // an empty response is decoded as null
+        PmcDocument document = gson.fromJson(reader, PmcDocument.class);
+        return document == null || document.getSections() == null ? new ArrayList<>() :
+                new ArrayList<>(document.getSections());
+      }
+    } catch (IOException | JsonSyntaxException | JsonIOException e) {
+      LOG.error("Error access {}", url);
+      throw new CompletionException(e);
+    }
+  }
+
+  @Override
+  public void collectionProcessComplete() throws AnalysisEngineProcessException {
+    super.collectionProcessComplete();
+    LOG.info("Total pmc documents: {} from document store, {} from store, {} fetched",
+            documentStoreCount.get(), storeCount.get(), fetchCount.get());
+  }
+
+  @Override
+  public void destroy() {
+    super.destroy();
+    es.shutdownNow();
+    if (db != null) {
+      db.commit();
+      db.close();
+    }
   }
 
   public static final class PmcDocument {
@@ -14,11 +14,12 @@
 
 package edu.cmu.lti.oaqa.bioasq.util;
 
-import com.google.common.collect.ImmutableList;
 import edu.cmu.lti.oaqa.bio.bioasq.services.GoPubMedService;
 import edu.cmu.lti.oaqa.bio.bioasq.services.LinkedLifeDataServiceResponse;
 import edu.cmu.lti.oaqa.bio.bioasq.services.OntologyServiceResponse;
 import edu.cmu.lti.oaqa.bio.bioasq.services.PubMedSearchServiceResponse;
+import edu.cmu.lti.oaqa.bioqa.util.RecordReplay;
+import edu.cmu.lti.oaqa.bioqa.util.StringPool;
 import edu.cmu.lti.oaqa.type.kb.Concept;
 import edu.cmu.lti.oaqa.type.kb.Triple;
 import edu.cmu.lti.oaqa.type.retrieval.ConceptSearchResult;
@@ -37,6 +38,9 @@ import static java.util.stream.Collectors.toList;
 
 /**
  * A utility class to convert GoPubMed services ({@link GoPubMedService} I/O objects to the types.
+ * The <tt>search*</tt> methods fetch the pages sequentially and create the feature structures on
+ * the calling thread; concurrent callers should fetch the responses via {@link GoPubMedClient}
+ * and call the <tt>create*</tt> methods on the thread that owns the CAS instead.
  *
  * @see GoPubMedService
  *
@@ -52,102 +56,109 @@ public class BioASQUtil {
     return PUMMED_URI_PREFIX + pmid;
   }
 
-  private synchronized static List<ConceptSearchResult> createConceptSearchResults(JCas jcas,
+  /**
+   * Creates the {@link ConceptSearchResult}s from the responses fetched by
+   * {@link GoPubMedClient#searchOntology(String, int, int, Ontology)}, which should be called on
+   * the thread that owns the {@link JCas}.
+   */
+  public static List<ConceptSearchResult> createConceptSearchResults(JCas jcas,
+          List<OntologyServiceResponse.Result> results, Ontology ontology) {
+    return results.stream()
+            .flatMap(result -> createConceptSearchResults(jcas, result, ontology.name()).stream())
+            .collect(toList());
+  }
+
+  private static List<ConceptSearchResult> createConceptSearchResults(JCas jcas,
           OntologyServiceResponse.Result result, String searchId) {
     String queryString = result.getKeywords();
     return result.getFindings().stream().map(finding -> {
-      String uri = finding.getConcept().getUri();
+      String uri = StringPool.of(finding.getConcept().getUri());
       double score = finding.getScore();
-      String text = finding.getConcept().getLabel();
+      String text = StringPool.of(finding.getConcept().getLabel());
       Concept concept = TypeFactory.createConcept(jcas, text, uri);
       return TypeFactory
               .createConceptSearchResult(jcas, concept, uri, score, text, queryString, searchId);
     } ).collect(toList());
   }
 
-  public static List<ConceptSearchResult> searchOntology(GoPubMedService service, JCas jcas,
-          String keywords, int pages, int conceptsPerPage, Ontology ontology) throws IOException {
+  /**
+   * Requests a page of the ontology search, which is recorded or replayed by {@link RecordReplay}.
+   */
+  public static OntologyServiceResponse.Result findOntologyEntitiesPaged(GoPubMedService service,
+          String keywords, int page, int conceptsPerPage, Ontology ontology) throws IOException {
+    return RecordReplay.getInstance().call("gopubmed/" + ontology.name().toLowerCase(),
+            getRequest(keywords, page, conceptsPerPage), OntologyServiceResponse.Result.class,
+            () -> findRemoteOntologyEntitiesPaged(service, keywords, page, conceptsPerPage,
+                    ontology));
+  }
+
+  private static OntologyServiceResponse.Result findRemoteOntologyEntitiesPaged(
+          GoPubMedService service, String keywords, int page, int conceptsPerPage,
+          Ontology ontology) throws IOException {
     switch (ontology) {
-      case DISEASE: return searchDiseaseOntology(service, jcas, keywords, pages, conceptsPerPage);
-      case GENE: return searchGeneOntology(service, jcas, keywords, pages, conceptsPerPage);
-      case JOCHEM: return searchJochem(service, jcas, keywords, pages, conceptsPerPage);
-      case MESH: return searchMesh(service, jcas, keywords, pages, conceptsPerPage);
-      case UNIPROT: return searchUniprot(service, jcas, keywords, pages, conceptsPerPage);
+      case DISEASE:
+        return service.findDiseaseOntologyEntitiesPaged(keywords, page, conceptsPerPage);
+      case GENE: return service.findGeneOntologyEntitiesPaged(keywords, page, conceptsPerPage);
+      case JOCHEM: return service.findJochemEntitiesPaged(keywords, page, conceptsPerPage);
+      case MESH: return service.findMeshEntitiesPaged(keywords, page, conceptsPerPage);
+      case UNIPROT: return service.findUniprotEntitiesPaged(keywords, page, conceptsPerPage);
     }
-    return ImmutableList.of();
+    throw new IllegalArgumentException("Unknown ontology: " + ontology);
   }
 
-  private static List<ConceptSearchResult> searchDiseaseOntology(GoPubMedService service, JCas jcas,
-          String keywords, int pages, int conceptsPerPage) throws IOException {
-    List<ConceptSearchResult> ret = new ArrayList<>();
-    for (int page = 0; page < pages; page++) {
-      OntologyServiceResponse.Result result = service.findDiseaseOntologyEntitiesPaged(keywords,
-              page, conceptsPerPage);
-      ret.addAll(createConceptSearchResults(jcas, result, Ontology.DISEASE.name()));
-      if (result.getFindings().size() < conceptsPerPage) {
-        break;
-      }
-    }
-    return ret;
+  /**
+   * Requests a page of the PubMed search, which is recorded or replayed by {@link RecordReplay}.
+   */
+  public static PubMedSearchServiceResponse.Result findPubMedCitations(GoPubMedService service,
+          String keywords, int page, int articlesPerPage) throws IOException {
+    return RecordReplay.getInstance().call("gopubmed/pubmed",
+            getRequest(keywords, page, articlesPerPage), PubMedSearchServiceResponse.Result.class,
+            () -> service.findPubMedCitations(keywords, page, articlesPerPage));
   }
 
-  private static List<ConceptSearchResult> searchGeneOntology(GoPubMedService service, JCas jcas,
-          String keywords, int pages, int conceptsPerPage) throws IOException {
-    List<ConceptSearchResult> ret = new ArrayList<>();
-    for (int page = 0; page < pages; page++) {
-      OntologyServiceResponse.Result result = service.findGeneOntologyEntitiesPaged(keywords, page,
-              conceptsPerPage);
-      ret.addAll(createConceptSearchResults(jcas, result, Ontology.GENE.name()));
-      if (result.getFindings().size() < conceptsPerPage) {
-        break;
-      }
-    }
-    return ret;
+  /**
+   * Requests a page of the Linked Life Data search, which is recorded or replayed by
+   * {@link RecordReplay}.
+   */
+  public static LinkedLifeDataServiceResponse.Result findLinkedLifeDataEntitiesPaged(
+          GoPubMedService service, String keywords, int page, int entitiesPerPage)
+          throws IOException {
+    return RecordReplay.getInstance().call("gopubmed/linkedlifedata",
+            getRequest(keywords, page, entitiesPerPage),
+            LinkedLifeDataServiceResponse.Result.class,
+            () -> service.findLinkedLifeDataEntitiesPaged(keywords, page, entitiesPerPage));
   }
 
-  private static List<ConceptSearchResult> searchJochem(GoPubMedService service, JCas jcas,
-          String keywords, int pages, int conceptsPerPage) throws IOException {
-    List<ConceptSearchResult> ret = new ArrayList<>();
-    for (int page = 0; page < pages; page++) {
-      OntologyServiceResponse.Result result = service.findJochemEntitiesPaged(keywords, page,
-              conceptsPerPage);
-      ret.addAll(createConceptSearchResults(jcas, result, Ontology.JOCHEM.name()));
-      if (result.getFindings().size() < conceptsPerPage) {
-        break;
-      }
-    }
-    return ret;
+  private static String getRequest(String keywords, int page, int perPage) {
+    return perPage + "\t" + page + "\t" + keywords;
   }
 
-  private static List<ConceptSearchResult> searchMesh(GoPubMedService service, JCas jcas,
-          String keywords, int pages, int conceptsPerPage) throws IOException {
-    List<ConceptSearchResult> ret = new ArrayList<>();
+  public static List<ConceptSearchResult> searchOntology(GoPubMedService service, JCas jcas,
+          String keywords, int pages, int conceptsPerPage, Ontology ontology) throws IOException {
+    List<OntologyServiceResponse.Result> results = new ArrayList<>();
     for (int page = 0; page < pages; page++) {
-      OntologyServiceResponse.Result result = service.findMeshEntitiesPaged(keywords, page,
-              conceptsPerPage);
-      ret.addAll(createConceptSearchResults(jcas, result, Ontology.MESH.name()));
+      OntologyServiceResponse.Result result = findOntologyEntitiesPaged(service, keywords, page,
+              conceptsPerPage, ontology);
+      results.add(result);
       if (result.getFindings().size() < conceptsPerPage) {
         break;
       }
     }
-    return ret;
+    return createConceptSearchResults(jcas, results, ontology);
   }
 
-  private static List<ConceptSearchResult> searchUniprot(GoPubMedService service, JCas jcas,
-          String keywords, int pages, int conceptsPerPage) throws IOException {
-    List<ConceptSearchResult> ret = new ArrayList<>();
-    for (int page = 0; page < pages; page++) {
-      OntologyServiceResponse.Result result = service.findUniprotEntitiesPaged(keywords, page,
-              conceptsPerPage);
-      ret.addAll(createConceptSearchResults(jcas, result, Ontology.UNIPROT.name()));
-      if (result.getFindings().size() < conceptsPerPage) {
-        break;
-      }
-    }
-    return ret;
+  /**
+   * Creates the {@link Document}s from the responses fetched by
+   * {@link GoPubMedClient#searchPubMed(String, int, int)}, which should be called on the thread
+   * that owns the {@link JCas}.
+   */
+  public static List<Document> createDocuments(JCas jcas,
+          List<PubMedSearchServiceResponse.Result> results) {
+    return results.stream().flatMap(result -> createDocuments(jcas, result).stream())
+            .collect(toList());
   }
 
-  private synchronized static List<Document> createDocuments(JCas jcas,
+  private static List<Document> createDocuments(JCas jcas,
           PubMedSearchServiceResponse.Result result) {
     String queryString = result.getKeywords();
     int startRank = result.getArticlesPerPage() * result.getPage();
@@ -157,27 +168,38 @@ public class BioASQUtil {
       String text = document.getDocumentAbstract();
       int rank = startRank + i;
       String title = document.getTitle();
-      String docId = document.getPmid();
-      String uri = getPubMedUri(docId);
+      String docId = StringPool.of(document.getPmid());
+      String uri = StringPool.of(getPubMedUri(docId));
       return TypeFactory.createDocument(jcas, uri, text, rank, queryString, title, docId);
     } ).collect(toList());
   }
 
   public static List<Document> searchPubMed(GoPubMedService service, JCas jcas, String keywords,
           int pages, int articlesPerPage) throws IOException {
-    List<Document> ret = new ArrayList<>();
+    List<PubMedSearchServiceResponse.Result> results = new ArrayList<>();
     for (int page = 0; page < pages; page++) {
-      PubMedSearchServiceResponse.Result result = service.findPubMedCitations(keywords, page,
+      PubMedSearchServiceResponse.Result result = findPubMedCitations(service, keywords, page,
               articlesPerPage);
-      ret.addAll(createDocuments(jcas, result));
+      results.add(result);
       if (result.getDocuments().size() < articlesPerPage) {
         break;
       }
     }
-    return ret;
+    return createDocuments(jcas, results);
+  }
+
+  /**
+   * Creates the {@link TripleSearchResult}s from the responses fetched by
+   * {@link GoPubMedClient#searchLinkedLifeData(String, int, int)}, which should be called on the
+   * thread that owns the {@link JCas}.
+   */
+  public static List<TripleSearchResult> createTripleSearchResults(JCas jcas,
+          List<LinkedLifeDataServiceResponse.Result> results) {
+    return results.stream().flatMap(result -> createTripleSearchResults(jcas, result).stream())
+            .collect(toList());
   }
 
-  private synchronized static List<TripleSearchResult> createTripleSearchResults(JCas jcas,
+  private static List<TripleSearchResult> createTripleSearchResults(JCas jcas,
           LinkedLifeDataServiceResponse.Result result) {
     String queryString = result.getQuery();
     return result.getEntities().stream().flatMap(entity ->
@@ -193,16 +215,16 @@ public class BioASQUtil {
 
   public static List<TripleSearchResult> searchLinkedLifeData(GoPubMedService service, JCas jcas,
           String keywords, int pages, int entitiesPerPage) throws IOException {
-    List<TripleSearchResult> ret = new ArrayList<>();
+    List<LinkedLifeDataServiceResponse.Result> results = new ArrayList<>();
     for (int page = 0; page < pages; page++) {
-      LinkedLifeDataServiceResponse.Result result = service
-              .findLinkedLifeDataEntitiesPaged(keywords, page, entitiesPerPage);
-      ret.addAll(createTripleSearchResults(jcas, result));
+      LinkedLifeDataServiceResponse.Result result = findLinkedLifeDataEntitiesPaged(service,
+              keywords, page, entitiesPerPage);
+      results.add(result);
       if (result.getEntities().size() < entitiesPerPage) {
         break;
       }
     }
-    return ret;
+    return createTripleSearchResults(jcas, results);
   }
 
 }
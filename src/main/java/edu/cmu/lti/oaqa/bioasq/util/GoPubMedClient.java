@@ -0,0 +1,192 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioasq.util;
+
+import edu.cmu.lti.oaqa.bio.bioasq.services.GoPubMedService;
+import edu.cmu.lti.oaqa.bio.bioasq.services.LinkedLifeDataServiceResponse;
+import edu.cmu.lti.oaqa.bio.bioasq.services.OntologyServiceResponse;
+import edu.cmu.lti.oaqa.bio.bioasq.services.PubMedSearchServiceResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ToIntFunction;
+
+/**
+ * <p>
+ *   A client of {@link GoPubMedService} that fetches the pages of a search concurrently on a
+ *   bounded thread pool (of <tt>nthreads</tt> threads), and returns the service response objects,
+ *   which do not depend on any CAS.
+ *   The feature structures should be created from the responses on the thread that owns the CAS,
+ *   using {@link BioASQUtil#createConceptSearchResults(org.apache.uima.jcas.JCas, List,
+ *   BioASQUtil.Ontology)}, {@link BioASQUtil#createDocuments(org.apache.uima.jcas.JCas, List)}, or
+ *   {@link BioASQUtil#createTripleSearchResults(org.apache.uima.jcas.JCas, List)}.
+ * </p>
+ * <p>
+ *   All the pages are requested at the same time, and the pages are consumed in order until the
+ *   first page that is not full, after which the remaining pages are cancelled (those not started
+ *   yet are never sent) and ignored, so the results are the same as those fetched sequentially.
+ *   An {@link IOException} of a consumed page is propagated as the cause of an
+ *   {@link UncheckedIOException} that completes the returned future exceptionally, whereas the
+ *   failure of an ignored page is not.
+ * </p>
+ *
+ * @see BioASQUtil
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class GoPubMedClient implements Closeable {
+
+  @FunctionalInterface
+  private interface PageFetcher<T> {
+
+    T fetch(int page) throws IOException;
+
+  }
+
+  private final GoPubMedService service;
+
+  private final ExecutorService es;
+
+  private static final Logger LOG = LoggerFactory.getLogger(GoPubMedClient.class);
+
+  public GoPubMedClient(GoPubMedService service, int nthreads) {
+    this.service = service;
+    this.es = Executors.newFixedThreadPool(nthreads, r -> {
+      Thread thread = new Thread(r, "gopubmed-client");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public CompletableFuture<List<OntologyServiceResponse.Result>> searchOntology(String keywords,
+          int pages, int conceptsPerPage, BioASQUtil.Ontology ontology) {
+    return fetchPages(pages, conceptsPerPage,
+            page -> BioASQUtil.findOntologyEntitiesPaged(service, keywords, page, conceptsPerPage,
+                    ontology),
+            result -> result.getFindings().size());
+  }
+
+  public CompletableFuture<List<PubMedSearchServiceResponse.Result>> searchPubMed(String keywords,
+          int pages, int articlesPerPage) {
+    return fetchPages(pages, articlesPerPage,
+            page -> BioASQUtil.findPubMedCitations(service, keywords, page, articlesPerPage),
+            result -> result.getDocuments().size());
+  }
+
+  public CompletableFuture<List<LinkedLifeDataServiceResponse.Result>> searchLinkedLifeData(
+          String keywords, int pages, int entitiesPerPage) {
+    return fetchPages(pages, entitiesPerPage,
+            page -> BioASQUtil.findLinkedLifeDataEntitiesPaged(service, keywords, page,
+                    entitiesPerPage),
+            result -> result.getEntities().size());
+  }
+
+  private <T> CompletableFuture<List<T>> fetchPages(int pages, int perPage,
+          PageFetcher<T> fetcher, ToIntFunction<T> sizer) {
+    List<CompletableFuture<T>> futures = new ArrayList<>();
+    for (int page = 0; page < pages; page++) {
+      int p = page;
+      futures.add(CompletableFuture.supplyAsync(() -> {
+        try {
+          return fetcher.fetch(p);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }, es));
+    }
+    CompletableFuture<List<T>> ret = collectPages(futures, perPage, sizer);
+    // the pages after the first page that is not full, or after a failed page, are not needed, and
+    // those that have not started yet are never sent
+    ret.whenComplete((r, t) -> futures.forEach(future -> future.cancel(false)));
+    return ret;
+  }
+
+  /**
+   * Collects the results of the pages in order, until the first page that is not full, so that only
+   * the failures of the collected pages fail the returned future, and the futures of the other
+   * pages are ignored.
+   */
+  public static <T> CompletableFuture<List<T>> collectPages(List<CompletableFuture<T>> futures,
+          int perPage, ToIntFunction<T> sizer) {
+    return collectPages(futures, 0, new ArrayList<>(), perPage, sizer);
+  }
+
+  private static <T> CompletableFuture<List<T>> collectPages(List<CompletableFuture<T>> futures,
+          int page, List<T> results, int perPage, ToIntFunction<T> sizer) {
+    if (page == futures.size()) {
+      return CompletableFuture.completedFuture(results);
+    }
+    return futures.get(page).thenCompose(result -> {
+      results.add(result);
+      return sizer.applyAsInt(result) < perPage ? CompletableFuture.completedFuture(results) :
+              collectPages(futures, page + 1, results, perPage, sizer);
+    });
+  }
+
+  /**
+   * Waits for all the futures until the timeout.
+   *
+   * @return <tt>true</tt> if all the futures have completed (normally or exceptionally)
+   */
+  public static boolean awaitAll(Collection<? extends CompletableFuture<?>> futures, long timeout,
+          TimeUnit unit) throws InterruptedException {
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(timeout, unit);
+    } catch (ExecutionException e) {
+      // the failed futures are handled individually by getIfCompleted
+    } catch (TimeoutException e) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * @return the result of the future if it has completed normally, or empty if it has failed or
+   *         not completed yet, in which case a warning is logged
+   */
+  public static <T> Optional<T> getIfCompleted(CompletableFuture<T> future, String name) {
+    if (!future.isDone()) {
+      LOG.warn("Timeout occurs for {}.", name);
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(future.join());
+    } catch (CompletionException | CancellationException e) {
+      LOG.warn("Failed to retrieve from {}.", name, e.getCause() == null ? e : e.getCause());
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public void close() {
+    es.shutdownNow();
+  }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.document;
+
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.resource.Resource;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * <p>
+ *   A local store of PubMed documents, which is used to hydrate the text of the retrieved
+ *   {@link edu.cmu.lti.oaqa.type.retrieval.Document}s without any remote request, e.g. by
+ *   {@link edu.cmu.lti.oaqa.bioasq.passage.PmcContentSetter} and
+ *   {@link edu.cmu.lti.oaqa.bioasq.document.retrieval.GoPubMedDocumentRetrievalExecutor}.
+ * </p>
+ *
+ * @see MappedDocumentStoreProvider
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public interface DocumentStoreProvider extends Resource {
+
+  Optional<StoredDocument> get(String pmid) throws AnalysisEngineProcessException;
+
+  /**
+   * @return the stored documents keyed by PMID, which exclude the PMIDs that are not in the store
+   */
+  Map<String, StoredDocument> get(Collection<String> pmids) throws AnalysisEngineProcessException;
+
+}
@@ -0,0 +1,288 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.document;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>
+ *   A read-only, memory-mapped store of {@link StoredDocument}s, built offline by
+ *   {@link MappedDocumentStoreBuilder}, which consists of the following files in a directory.
+ *   <ul>
+ *     <li>
+ *       <tt>segment-NNNNN.dat</tt>: a sequence of independently deflated blocks, each of which
+ *       contains the records of one or more documents.
+ *       A record is the PMID (long), the title and the abstract (each as the length of its UTF-8
+ *       bytes followed by the bytes, where <tt>-1</tt> stands for <tt>null</tt>), and the number of
+ *       sections followed by the sections.
+ *     </li>
+ *     <li>
+ *       <tt>index.dat</tt>: a header (magic, version, the numbers of segments, blocks and entries),
+ *       a block table (segment, offset, compressed and raw lengths), and the entries (PMID, block,
+ *       record offset in the raw block) sorted by PMID.
+ *     </li>
+ *   </ul>
+ * </p>
+ * <p>
+ *   A lookup is a binary search over the mapped index, which does not allocate, followed by the
+ *   inflation of one block into a reused per-thread buffer and the decoding of the record.
+ *   A batched lookup inflates each block once for all the requested documents in the block.
+ *   An instance is thread-safe.
+ * </p>
+ *
+ * @see MappedDocumentStoreBuilder
+ * @see MappedDocumentStoreProvider
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class MappedDocumentStore implements Closeable {
+
+  static final int MAGIC = 0x444f4353;
+
+  static final int VERSION = 1;
+
+  static final String INDEX_FILE = "index.dat";
+
+  static final String SEGMENT_FILE_FORMAT = "segment-%05d.dat";
+
+  static final int HEADER_SIZE = 20;
+
+  static final int BLOCK_ENTRY_SIZE = 20;
+
+  static final int INDEX_ENTRY_SIZE = 16;
+
+  private static class Scratch {
+
+    final Inflater inflater = new Inflater();
+
+    byte[] compressed = new byte[0];
+
+    byte[] raw = new byte[0];
+
+  }
+
+  private final MappedByteBuffer index;
+
+  private final MappedByteBuffer[] segments;
+
+  private final int numBlocks;
+
+  private final int numEntries;
+
+  private final int entriesStart;
+
+  private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+  public MappedDocumentStore(File dir) throws IOException {
+    index = map(new File(dir, INDEX_FILE));
+    if (index.getInt(0) != MAGIC || index.getInt(4) != VERSION) {
+      throw new IOException("Not a document store index: " + new File(dir, INDEX_FILE));
+    }
+    int numSegments = index.getInt(8);
+    numBlocks = index.getInt(12);
+    numEntries = index.getInt(16);
+    entriesStart = HEADER_SIZE + BLOCK_ENTRY_SIZE * numBlocks;
+    segments = new MappedByteBuffer[numSegments];
+    for (int i = 0; i < numSegments; i++) {
+      segments[i] = map(new File(dir, String.format(SEGMENT_FILE_FORMAT, i)));
+    }
+  }
+
+  private static MappedByteBuffer map(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+         FileChannel channel = raf.getChannel()) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  public int size() {
+    return numEntries;
+  }
+
+  /**
+   * @return the position of the entry of the PMID in the sorted entries, or <tt>-1</tt> if absent
+   */
+  private int find(long pmid) {
+    int low = 0;
+    int high = numEntries - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midPmid = index.getLong(entriesStart + INDEX_ENTRY_SIZE * mid);
+      if (midPmid < pmid) {
+        low = mid + 1;
+      } else if (midPmid > pmid) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  private int find(String pmid) {
+    long key = parsePmid(pmid);
+    return key < 0 ? -1 : find(key);
+  }
+
+  static long parsePmid(String pmid) {
+    if (pmid == null || pmid.isEmpty() || pmid.length() > 18) return -1;
+    long key = 0;
+    for (int i = 0; i < pmid.length(); i++) {
+      char c = pmid.charAt(i);
+      if (c < '0' || c > '9') return -1;
+      key = key * 10 + (c - '0');
+    }
+    return key;
+  }
+
+  private int getBlock(int entry) {
+    return index.getInt(entriesStart + INDEX_ENTRY_SIZE * entry + 8);
+  }
+
+  private int getRecordOffset(int entry) {
+    return index.getInt(entriesStart + INDEX_ENTRY_SIZE * entry + 12);
+  }
+
+  public boolean contains(String pmid) {
+    return find(pmid) >= 0;
+  }
+
+  public Optional<StoredDocument> get(String pmid) throws IOException {
+    int entry = find(pmid);
+    if (entry < 0) return Optional.empty();
+    byte[] raw = inflate(getBlock(entry));
+    return Optional.of(decode(raw, getRecordOffset(entry)));
+  }
+
+  /**
+   * Looks up the documents in the order of their blocks, so that each block is inflated once.
+   */
+  public Map<String, StoredDocument> get(Collection<String> pmids) throws IOException {
+    long[] keys = new long[pmids.size()];
+    int n = 0;
+    for (String pmid : pmids) {
+      int entry = find(pmid);
+      if (entry >= 0) {
+        // the block is the high half, so that the entries are sorted by block
+        keys[n++] = ((long) getBlock(entry) << 32) | entry;
+      }
+    }
+    Arrays.sort(keys, 0, n);
+    Map<String, StoredDocument> pmid2doc = new HashMap<>();
+    int inflatedBlock = -1;
+    byte[] raw = null;
+    for (int i = 0; i < n; i++) {
+      int block = (int) (keys[i] >>> 32);
+      int entry = (int) keys[i];
+      if (block != inflatedBlock) {
+        raw = inflate(block);
+        inflatedBlock = block;
+      }
+      StoredDocument doc = decode(raw, getRecordOffset(entry));
+      pmid2doc.put(doc.getPmid(), doc);
+    }
+    return pmid2doc;
+  }
+
+  /**
+   * @return the per-thread buffer that holds the raw bytes of the block, which is only valid until
+   *         the next inflation on the same thread
+   */
+  private byte[] inflate(int block) throws IOException {
+    int position = HEADER_SIZE + BLOCK_ENTRY_SIZE * block;
+    int segment = index.getInt(position);
+    long offset = index.getLong(position + 4);
+    int compressedLength = index.getInt(position + 12);
+    int rawLength = index.getInt(position + 16);
+    Scratch s = scratch.get();
+    if (s.compressed.length < compressedLength) s.compressed = new byte[compressedLength];
+    if (s.raw.length < rawLength) s.raw = new byte[rawLength];
+    ByteBuffer buffer = segments[segment].duplicate();
+    buffer.position((int) offset);
+    buffer.get(s.compressed, 0, compressedLength);
+    s.inflater.reset();
+    s.inflater.setInput(s.compressed, 0, compressedLength);
+    try {
+      int length = 0;
+      while (length < rawLength && !s.inflater.finished()) {
+        int inflated = s.inflater.inflate(s.raw, length, rawLength - length);
+        if (inflated == 0 && s.inflater.needsInput()) break;
+        length += inflated;
+      }
+      if (length != rawLength) {
+        throw new IOException("Truncated block " + block + " in segment " + segment);
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupted block " + block + " in segment " + segment, e);
+    }
+    return s.raw;
+  }
+
+  static StoredDocument decode(byte[] raw, int offset) {
+    int[] position = { offset + 8 };
+    String pmid = Long.toString(readLong(raw, offset));
+    String title = readString(raw, position);
+    String abstractText = readString(raw, position);
+    int numSections = readInt(raw, position[0]);
+    position[0] += 4;
+    List<String> sections = new ArrayList<>(numSections);
+    for (int i = 0; i < numSections; i++) {
+      sections.add(readString(raw, position));
+    }
+    return new StoredDocument(pmid, title, abstractText, sections);
+  }
+
+  private static String readString(byte[] raw, int[] position) {
+    int length = readInt(raw, position[0]);
+    position[0] += 4;
+    if (length < 0) return null;
+    String string = new String(raw, position[0], length, UTF_8);
+    position[0] += length;
+    return string;
+  }
+
+  static int readInt(byte[] raw, int offset) {
+    return (raw[offset] & 0xff) << 24 | (raw[offset + 1] & 0xff) << 16
+            | (raw[offset + 2] & 0xff) << 8 | (raw[offset + 3] & 0xff);
+  }
+
+  static long readLong(byte[] raw, int offset) {
+    return (long) readInt(raw, offset) << 32 | (readInt(raw, offset + 4) & 0xffffffffL);
+  }
+
+  @Override
+  public void close() {
+    // the mapped buffers are unmapped when they are garbage collected
+    scratch.remove();
+  }
+
+}
@@ -0,0 +1,462 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.document;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import static edu.cmu.lti.oaqa.bioqa.providers.document.MappedDocumentStore.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>
+ *   Builds a {@link MappedDocumentStore} offline from JSON files, e.g. the MEDLINE training set
+ *   from <a href="http://bioasq.org/">http://bioasq.org/</a> (an object whose <tt>articles</tt>
+ *   field is an array of articles) and the PMC documents generated by its document processing tool
+ *   (one object per file or per line).
+ *   A document is an object with the fields <tt>pmid</tt>, <tt>title</tt>, <tt>abstractText</tt>,
+ *   and <tt>sections</tt>, any of which except <tt>pmid</tt> may be absent, and the other fields
+ *   are ignored.
+ *   Documents whose PMIDs are not numeric are skipped, and if a PMID occurs more than once, the
+ *   occurrences are merged field by field when the store is finished: a title or an abstract is
+ *   taken from the last occurrence that has one, and so are the sections from the last occurrence
+ *   whose sections are not empty, e.g. a PMC document without an abstract keeps the MEDLINE
+ *   abstract, and the PMC files should be given after the MEDLINE files.
+ * </p>
+ * <p>
+ *   The records are buffered into blocks of about <tt>block-size</tt> bytes, which are deflated
+ *   and appended to segment files of at most <tt>segment-size</tt> bytes, and the index entries
+ *   are kept in memory (16 bytes per document) and sorted when the store is finished.
+ * </p>
+ * <p>
+ *   Usage:
+ *   <pre>
+ *     MappedDocumentStoreBuilder dir [-block-size bytes] [-segment-size bytes] file ...
+ *   </pre>
+ *   where a file with the suffix <tt>.gz</tt> is decompressed.
+ * </p>
+ *
+ * @see MappedDocumentStore
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class MappedDocumentStoreBuilder implements Closeable {
+
+  private final File dir;
+
+  private final int blockSize;
+
+  private final long segmentSize;
+
+  private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+
+  private final DataOutputStream record = new DataOutputStream(block);
+
+  private final Deflater deflater = new Deflater();
+
+  private byte[] compressed = new byte[0];
+
+  private OutputStream segment;
+
+  private int numSegments;
+
+  private long segmentOffset;
+
+  // the block table, as (segment, offset, compressed length, raw length)
+  private final ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+
+  private final DataOutputStream blockTable = new DataOutputStream(blocks);
+
+  private int numBlocks;
+
+  // the index entries, where a location is the block in the high half and the record offset in
+  // the low half, so that the later occurrence of a PMID has the larger location
+  private long[] pmids = new long[1 << 16];
+
+  private long[] locations = new long[1 << 16];
+
+  private int numEntries;
+
+  private long skipped;
+
+  private static final Logger LOG = LoggerFactory.getLogger(MappedDocumentStoreBuilder.class);
+
+  public MappedDocumentStoreBuilder(File dir, int blockSize, long segmentSize) throws IOException {
+    if (segmentSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("A segment cannot be mapped if larger than 2GB.");
+    }
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Cannot create the directory " + dir);
+    }
+    this.dir = dir;
+    this.blockSize = blockSize;
+    this.segmentSize = segmentSize;
+  }
+
+  public void add(StoredDocument doc) throws IOException {
+    long pmid = parsePmid(doc.getPmid());
+    if (pmid < 0) {
+      skipped++;
+      LOG.warn("Skipped a document with a non-numeric PMID: {}", doc.getPmid());
+      return;
+    }
+    if (numEntries == pmids.length) {
+      pmids = Arrays.copyOf(pmids, numEntries * 2);
+      locations = Arrays.copyOf(locations, numEntries * 2);
+    }
+    pmids[numEntries] = pmid;
+    locations[numEntries] = writeRecord(pmid, doc);
+    numEntries++;
+  }
+
+  /**
+   * @return the location of the record, i.e. the block in the high half and the record offset in
+   *         the low half
+   */
+  private long writeRecord(long pmid, StoredDocument doc) throws IOException {
+    long location = ((long) numBlocks << 32) | block.size();
+    record.writeLong(pmid);
+    writeString(doc.getTitle());
+    writeString(doc.getAbstractText());
+    record.writeInt(doc.getSections().size());
+    for (String section : doc.getSections()) {
+      writeString(section);
+    }
+    if (block.size() >= blockSize) {
+      flushBlock();
+    }
+    return location;
+  }
+
+  private void writeString(String string) throws IOException {
+    if (string == null) {
+      record.writeInt(-1);
+    } else {
+      byte[] bytes = string.getBytes(UTF_8);
+      record.writeInt(bytes.length);
+      record.write(bytes);
+    }
+  }
+
+  private void flushBlock() throws IOException {
+    if (block.size() == 0) return;
+    byte[] raw = block.toByteArray();
+    deflater.reset();
+    deflater.setInput(raw);
+    deflater.finish();
+    int length = 0;
+    while (!deflater.finished()) {
+      if (length == compressed.length) {
+        compressed = Arrays.copyOf(compressed, Math.max(length * 2, 1 << 16));
+      }
+      length += deflater.deflate(compressed, length, compressed.length - length);
+    }
+    if (segment == null || segmentOffset + length > segmentSize) {
+      if (segment != null) segment.close();
+      File file = new File(dir, String.format(SEGMENT_FILE_FORMAT, numSegments++));
+      segment = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+      segmentOffset = 0;
+    }
+    segment.write(compressed, 0, length);
+    blockTable.writeInt(numSegments - 1);
+    blockTable.writeLong(segmentOffset);
+    blockTable.writeInt(length);
+    blockTable.writeInt(raw.length);
+    segmentOffset += length;
+    numBlocks++;
+    block.reset();
+  }
+
+  /**
+   * Reads the documents from a JSON file, which may contain a document, an array of documents, an
+   * object with an <tt>articles</tt> array, or a sequence of any of them, e.g. one per line.
+   */
+  public void addJson(File file) throws IOException {
+    InputStreamReader reader = new InputStreamReader(file.getName().endsWith(".gz") ?
+            new GZIPInputStream(new FileInputStream(file), 1 << 16) : new FileInputStream(file),
+            UTF_8);
+    try (JsonReader json = new JsonReader(reader)) {
+      json.setLenient(true);
+      while (json.peek() != JsonToken.END_DOCUMENT) {
+        readValue(json);
+      }
+    } catch (IllegalStateException e) {
+      throw new IOException("Malformed JSON file " + file, e);
+    }
+  }
+
+  private void readValue(JsonReader json) throws IOException {
+    switch (json.peek()) {
+      case BEGIN_ARRAY:
+        json.beginArray();
+        while (json.hasNext()) {
+          readValue(json);
+        }
+        json.endArray();
+        break;
+      case BEGIN_OBJECT:
+        readObject(json);
+        break;
+      default:
+        json.skipValue();
+    }
+  }
+
+  private void readObject(JsonReader json) throws IOException {
+    String pmid = null;
+    String title = null;
+    String abstractText = null;
+    List<String> sections = new ArrayList<>();
+    json.beginObject();
+    while (json.hasNext()) {
+      String name = json.nextName();
+      if (json.peek() == JsonToken.NULL) {
+        json.nextNull();
+        continue;
+      }
+      switch (name) {
+        case "pmid": pmid = json.nextString(); break;
+        case "title": title = json.nextString(); break;
+        case "abstractText": abstractText = json.nextString(); break;
+        case "sections":
+          json.beginArray();
+          while (json.hasNext()) {
+            sections.add(json.nextString());
+          }
+          json.endArray();
+          break;
+        case "articles": readValue(json); break;
+        default: json.skipValue();
+      }
+    }
+    json.endObject();
+    if (pmid != null) {
+      add(new StoredDocument(pmid, title, abstractText, sections));
+    }
+  }
+
+  /**
+   * Merges the occurrences of each PMID into a new record, flushes the last block, and writes the
+   * index with the entries sorted by PMID.
+   */
+  @Override
+  public void close() throws IOException {
+    flushBlock();
+    sort(pmids, locations, 0, numEntries - 1);
+    int unique = 0;
+    BlockReader reader = null;
+    for (int i = 0; i < numEntries; ) {
+      int end = i + 1;
+      while (end < numEntries && pmids[end] == pmids[i]) end++;
+      pmids[unique] = pmids[i];
+      locations[unique] = locations[i];
+      if (end - i > 1) {
+        if (reader == null) reader = new BlockReader();
+        // the occurrences are sorted by location, i.e. in the order in which they were added
+        StoredDocument merged = reader.read(locations[i]);
+        for (int j = i + 1; j < end; j++) {
+          merged = merge(merged, reader.read(locations[j]));
+        }
+        locations[unique] = writeRecord(pmids[i], merged);
+      }
+      unique++;
+      i = end;
+    }
+    if (reader != null) reader.close();
+    flushBlock();
+    if (segment != null) segment.close();
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(new File(dir, INDEX_FILE)), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(numSegments);
+      out.writeInt(numBlocks);
+      out.writeInt(unique);
+      blocks.writeTo(out);
+      for (int i = 0; i < unique; i++) {
+        out.writeLong(pmids[i]);
+        out.writeInt((int) (locations[i] >>> 32));
+        out.writeInt((int) locations[i]);
+      }
+    }
+    deflater.end();
+    LOG.info("Stored {} documents ({} duplicates merged, {} skipped) in {} blocks and {} segments.",
+            unique, numEntries - unique, skipped, numBlocks, numSegments);
+  }
+
+  /**
+   * @return the later document, where a missing title, abstract, or empty sections are filled from
+   *         the earlier document
+   */
+  static StoredDocument merge(StoredDocument earlier, StoredDocument later) {
+    return new StoredDocument(later.getPmid(),
+            later.getTitle() != null ? later.getTitle() : earlier.getTitle(),
+            later.getAbstractText() != null ? later.getAbstractText() : earlier.getAbstractText(),
+            !later.getSections().isEmpty() ? later.getSections() : earlier.getSections());
+  }
+
+  /**
+   * Reads back the records of the blocks that have been flushed, from a snapshot of the block table
+   * taken when it is created, and keeps the last inflated block, since the occurrences of a PMID
+   * are often in the same block.
+   */
+  private class BlockReader implements Closeable {
+
+    private final byte[] table = blocks.toByteArray();
+
+    private final Inflater inflater = new Inflater();
+
+    private final RandomAccessFile[] files = new RandomAccessFile[numSegments];
+
+    private int inflatedBlock = -1;
+
+    private byte[] raw;
+
+    private BlockReader() throws IOException {
+      segment.flush();
+    }
+
+    StoredDocument read(long location) throws IOException {
+      int blockIndex = (int) (location >>> 32);
+      if (blockIndex != inflatedBlock) {
+        inflate(blockIndex);
+        inflatedBlock = blockIndex;
+      }
+      return decode(raw, (int) location);
+    }
+
+    private void inflate(int blockIndex) throws IOException {
+      int position = BLOCK_ENTRY_SIZE * blockIndex;
+      int segmentIndex = readInt(table, position);
+      long offset = readLong(table, position + 4);
+      byte[] input = new byte[readInt(table, position + 12)];
+      raw = new byte[readInt(table, position + 16)];
+      if (files[segmentIndex] == null) {
+        files[segmentIndex] = new RandomAccessFile(
+                new File(dir, String.format(SEGMENT_FILE_FORMAT, segmentIndex)), "r");
+      }
+      files[segmentIndex].seek(offset);
+      files[segmentIndex].readFully(input);
+      inflater.reset();
+      inflater.setInput(input);
+      try {
+        int length = 0;
+        while (length < raw.length && !inflater.finished()) {
+          int inflated = inflater.inflate(raw, length, raw.length - length);
+          if (inflated == 0 && inflater.needsInput()) break;
+          length += inflated;
+        }
+        if (length != raw.length) {
+          throw new IOException("Truncated block " + blockIndex + " in segment " + segmentIndex);
+        }
+      } catch (DataFormatException e) {
+        throw new IOException("Corrupted block " + blockIndex + " in segment " + segmentIndex, e);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      inflater.end();
+      for (RandomAccessFile file : files) {
+        if (file != null) file.close();
+      }
+    }
+
+  }
+
+  /**
+   * Sorts the entries by PMID and then by location in place, recursing into the smaller part.
+   */
+  private static void sort(long[] pmids, long[] locations, int low, int high) {
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      long pivotPmid = pmids[mid];
+      long pivotLocation = locations[mid];
+      int i = low;
+      int j = high;
+      while (i <= j) {
+        while (compare(pmids[i], locations[i], pivotPmid, pivotLocation) < 0) i++;
+        while (compare(pmids[j], locations[j], pivotPmid, pivotLocation) > 0) j--;
+        if (i <= j) {
+          swap(pmids, i, j);
+          swap(locations, i, j);
+          i++;
+          j--;
+        }
+      }
+      if (j - low < high - i) {
+        sort(pmids, locations, low, j);
+        low = i;
+      } else {
+        sort(pmids, locations, i, high);
+        high = j;
+      }
+    }
+  }
+
+  private static int compare(long pmid1, long location1, long pmid2, long location2) {
+    int ret = Long.compare(pmid1, pmid2);
+    return ret != 0 ? ret : Long.compare(location1, location2);
+  }
+
+  private static void swap(long[] array, int i, int j) {
+    long tmp = array[i];
+    array[i] = array[j];
+    array[j] = tmp;
+  }
+
+  public static void main(String[] args) throws IOException {
+    File dir = new File(args[0]);
+    int blockSize = 1 << 16;
+    long segmentSize = 1L << 30;
+    int i = 1;
+    for (; i < args.length && args[i].startsWith("-"); i += 2) {
+      switch (args[i]) {
+        case "-block-size": blockSize = Integer.parseInt(args[i + 1]); break;
+        case "-segment-size": segmentSize = Long.parseLong(args[i + 1]); break;
+        default: throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+    }
+    try (MappedDocumentStoreBuilder builder = new MappedDocumentStoreBuilder(dir, blockSize,
+            segmentSize)) {
+      for (; i < args.length; i++) {
+        LOG.info("Reading {}", args[i]);
+        builder.addJson(new File(args[i]));
+      }
+    }
+  }
+
+}
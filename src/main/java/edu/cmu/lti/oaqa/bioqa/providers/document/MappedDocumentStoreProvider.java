@@ -0,0 +1,84 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.document;
+
+import edu.cmu.lti.oaqa.ecd.config.ConfigurableProvider;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceSpecifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A {@link DocumentStoreProvider} that reads the documents from a local {@link MappedDocumentStore}
+ * in the directory <tt>dir</tt>, which is built by {@link MappedDocumentStoreBuilder}.
+ *
+ * @see MappedDocumentStore
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class MappedDocumentStoreProvider extends ConfigurableProvider
+        implements DocumentStoreProvider {
+
+  private MappedDocumentStore store;
+
+  private static final Logger LOG = LoggerFactory.getLogger(MappedDocumentStoreProvider.class);
+
+  @Override
+  public boolean initialize(ResourceSpecifier aSpecifier, Map<String, Object> aAdditionalParams)
+          throws ResourceInitializationException {
+    boolean ret = super.initialize(aSpecifier, aAdditionalParams);
+    File dir = new File((String) getParameterValue("dir"));
+    try {
+      store = new MappedDocumentStore(dir);
+    } catch (IOException e) {
+      throw new ResourceInitializationException(e);
+    }
+    LOG.info("Loaded {} documents from {}.", store.size(), dir);
+    return ret;
+  }
+
+  @Override
+  public Optional<StoredDocument> get(String pmid) throws AnalysisEngineProcessException {
+    try {
+      return store.get(pmid);
+    } catch (IOException e) {
+      throw new AnalysisEngineProcessException(e);
+    }
+  }
+
+  @Override
+  public Map<String, StoredDocument> get(Collection<String> pmids)
+          throws AnalysisEngineProcessException {
+    try {
+      return store.get(pmids);
+    } catch (IOException e) {
+      throw new AnalysisEngineProcessException(e);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    super.destroy();
+    store.close();
+  }
+
+}
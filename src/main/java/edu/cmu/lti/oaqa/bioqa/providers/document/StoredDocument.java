@@ -0,0 +1,70 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.document;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ *   A PubMed document, i.e. its PMID, title, abstract, and full-text sections, e.g. from
+ *   <a href="https://www.ncbi.nlm.nih.gov/pmc/">PubMed Central</a>, read from a
+ *   {@link DocumentStoreProvider}.
+ *   Any of the title and the abstract may be <tt>null</tt>, and the sections may be empty, if the
+ *   source of the document does not provide them.
+ * </p>
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public final class StoredDocument {
+
+  private final String pmid;
+
+  private final String title;
+
+  private final String abstractText;
+
+  private final List<String> sections;
+
+  public StoredDocument(String pmid, String title, String abstractText, List<String> sections) {
+    this.pmid = pmid;
+    this.title = title;
+    this.abstractText = abstractText;
+    this.sections = sections == null ? Collections.emptyList() :
+            Collections.unmodifiableList(sections);
+  }
+
+  public String getPmid() {
+    return pmid;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public String getAbstractText() {
+    return abstractText;
+  }
+
+  public List<String> getSections() {
+    return sections;
+  }
+
+  @Override
+  public String toString() {
+    return pmid + ": " + title;
+  }
+
+}
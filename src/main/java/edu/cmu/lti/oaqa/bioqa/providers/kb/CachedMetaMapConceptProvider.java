@@ -25,7 +25,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.IntStream;
@@ -48,8 +48,12 @@ public class CachedMetaMapConceptProvider extends MetaMapConceptProvider
 
   private DB db;
 
+  private KbCacheCompactor compactor;
+
   private HTreeMap<String, String> text2mmo;
 
+  private SingleFlight<String, String> singleFlight;
+
   private static final Logger LOG = LoggerFactory.getLogger(CachedMetaMapConceptProvider.class);
 
   @Override
@@ -58,42 +62,44 @@ public class CachedMetaMapConceptProvider extends MetaMapConceptProvider
     boolean ret = super.initialize(aSpecifier, aAdditionalParams);
     // initialize mapdb
     File file = new File((String) getParameterValue("db-file"));
-    db = DBMaker.newFileDB(file).compressionEnable().commitFileSyncDisable().cacheSize(1)
-            .closeOnJvmShutdown().make();
+    db = DBMaker.newFileDB(file).compressionEnable().commitFileSyncDisable().cacheSize(1).make();
+    compactor = KbCacheCompactor.create(db, file,
+            getParameterValue("compaction-fragmentation-threshold"),
+            getParameterValue("compaction-check-interval-minutes"));
     String map = (String) getParameterValue("map-name");
     text2mmo = db.getHashMap(map);
+    singleFlight = new SingleFlight<>(map);
     return ret;
   }
 
   @Override
   protected List<String> requestConcepts(List<String> texts) throws AnalysisEngineProcessException {
-    // retrieve cached text/mmos and leave missing ones as null
-    List<String> mergedMmoStrings = texts.stream().map(text2mmo::get).collect(toList());
-    // find missing indexes and collect texts
-    int[] missingIndexes = IntStream.range(0, texts.size())
-            .filter(i -> mergedMmoStrings.get(i) == null).toArray();
-    LOG.info("{} missing documents.", missingIndexes.length);
-    if (missingIndexes.length > 0) {
-      List<String> missingTexts = Arrays.stream(missingIndexes).mapToObj(texts::get)
-              .collect(toList());
+    // retrieve cached text/mmos, and request missing ones or wait for in-flight requests
+    Map<String, String> text2mergedMmo = singleFlight.get(texts, text2mmo::get, missingTexts -> {
+      LOG.info("{} missing documents.", missingTexts.size());
       // retrieve concepts and add to both cache and mergedElements to return
       List<String> missingMmoStrings = super.requestConcepts(missingTexts);
-      IntStream.range(0, missingIndexes.length).forEach(i -> {
-        String mmoString = missingMmoStrings.get(i);
-        mergedMmoStrings.set(missingIndexes[i], mmoString);
-        text2mmo.put(missingTexts.get(i), mmoString);
+      Map<String, String> missingText2mmo = new HashMap<>();
+      compactor.update(() -> {
+        IntStream.range(0, missingTexts.size()).forEach(i -> {
+          String mmoString = missingMmoStrings.get(i);
+          missingText2mmo.put(missingTexts.get(i), mmoString);
+          if (text2mmo.put(missingTexts.get(i), mmoString) != null) singleFlight.recordDuplicate();
+        });
+        db.commit();
       });
-      db.commit();
-    }
+      compactor.maybeCompact();
+      return missingText2mmo;
+    });
     db.getEngine().clearCache();
-    return mergedMmoStrings;
+    return texts.stream().map(text2mergedMmo::get).collect(toList());
   }
 
   @Override
   public void destroy() {
     super.destroy();
-    db.commit();
-    db.compact();
+    singleFlight.report();
+    compactor.commit();
   }
 
 }
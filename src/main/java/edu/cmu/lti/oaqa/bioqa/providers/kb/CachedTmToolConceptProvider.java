@@ -35,6 +35,10 @@ import static java.util.stream.Collectors.toMap;
 /**
  * A {@link TmToolConceptProvider} that uses a local <a href="http://www.mapdb.org/">MapDB</a>
  * instance to cache the service requests and responses.
+ * Empty responses (i.e. no denotation) are negative entries, whose creation times are recorded in
+ * <tt>map-name/trigger/negatives</tt>, and the texts whose requests failed are recorded in
+ * <tt>map-name/trigger/errors</tt> with their retry times, both of which are interpreted according
+ * to the {@link KbCachePolicy}.
  *
  * TODO: Created a cache provider and cacheable interface to standardize the cacheable versions of
  * services.
@@ -48,8 +52,20 @@ public class CachedTmToolConceptProvider extends TmToolConceptProvider
 
   private DB db;
 
+  private KbCacheCompactor compactor;
+
   private Map<String, HTreeMap<String, String>> trigger2text2denotations;
 
+  private Map<String, HTreeMap<String, Long>> trigger2text2negative;
+
+  private Map<String, HTreeMap<String, Long>> trigger2text2error;
+
+  private KbCachePolicy policy;
+
+  private Map<String, SingleFlight<String, String>> trigger2singleFlight;
+
+  private static final String EMPTY_DENOTATIONS = "[]";
+
   private static final Logger LOG = LoggerFactory.getLogger(CachedTmToolConceptProvider.class);
 
   @Override
@@ -58,11 +74,21 @@ public class CachedTmToolConceptProvider extends TmToolConceptProvider
     boolean ret = super.initialize(aSpecifier, aAdditionalParams);
     // initialize mapdb
     File file = new File((String) getParameterValue("db-file"));
-    db = DBMaker.newFileDB(file).compressionEnable().commitFileSyncDisable().cacheSize(1)
-            .closeOnJvmShutdown().make();
+    db = DBMaker.newFileDB(file).compressionEnable().commitFileSyncDisable().cacheSize(1).make();
+    compactor = KbCacheCompactor.create(db, file,
+            getParameterValue("compaction-fragmentation-threshold"),
+            getParameterValue("compaction-check-interval-minutes"));
     String map = (String) getParameterValue("map-name");
     trigger2text2denotations = triggers.stream()
             .collect(toMap(Function.identity(), trigger -> db.getHashMap(map + "/" + trigger)));
+    trigger2text2negative = triggers.stream().collect(toMap(Function.identity(),
+            trigger -> db.getHashMap(map + "/" + trigger + "/negatives")));
+    trigger2text2error = triggers.stream().collect(toMap(Function.identity(),
+            trigger -> db.getHashMap(map + "/" + trigger + "/errors")));
+    policy = KbCachePolicy.create(getParameterValue("negative-ttl-hours"),
+            getParameterValue("error-retry-after-minutes"));
+    trigger2singleFlight = triggers.stream().collect(
+            toMap(Function.identity(), trigger -> new SingleFlight<>(map + "/" + trigger)));
     return ret;
   }
 
@@ -70,34 +96,76 @@ public class CachedTmToolConceptProvider extends TmToolConceptProvider
   protected List<String> requestConcepts(List<String> normalizedTexts, String trigger)
           throws AnalysisEngineProcessException {
     Map<String, String> text2denotations = trigger2text2denotations.get(trigger);
-    // retrieve cached text/mmos and leave missing ones as null
-    List<String> mergedDenotationStrings = normalizedTexts.stream().map(text2denotations::get)
-            .collect(toList());
-    // find missing indexes and collect texts
-    int[] missingIndexes = IntStream.range(0, normalizedTexts.size())
-            .filter(i -> mergedDenotationStrings.get(i) == null).toArray();
-    LOG.info("{} missing documents at [{}].", missingIndexes.length, trigger);
-    if (missingIndexes.length > 0) {
-      List<String> missingTexts = Arrays.stream(missingIndexes).mapToObj(normalizedTexts::get)
-              .collect(toList());
-      // retrieve concepts and add to both cache and mergedElements to return
-      List<String> missingDenotationStrings = super.requestConcepts(missingTexts, trigger);
-      IntStream.range(0, missingIndexes.length).forEach(i -> {
-        String denotationString = missingDenotationStrings.get(i);
-        mergedDenotationStrings.set(missingIndexes[i], denotationString);
-        text2denotations.put(missingTexts.get(i), denotationString);
-      });
-      db.commit();
-    }
+    Map<String, Long> text2negative = trigger2text2negative.get(trigger);
+    Map<String, Long> text2error = trigger2text2error.get(trigger);
+    SingleFlight<String, String> singleFlight = trigger2singleFlight.get(trigger);
+    // retrieve cached text/denotations, and request missing ones or wait for in-flight requests
+    Map<String, String> text2mergedDenotations = singleFlight.get(normalizedTexts,
+            text -> getValidDenotations(text, text2denotations, text2negative, text2error),
+            missingTexts -> {
+              LOG.info("{} missing documents at [{}].", missingTexts.size(), trigger);
+              // retrieve concepts and add to both cache and mergedElements to return
+              List<String> missingDenotationStrings;
+              try {
+                missingDenotationStrings = super.requestConcepts(missingTexts, trigger);
+              } catch (AnalysisEngineProcessException | RuntimeException e) {
+                long retryAfter = policy.nextRetryTime();
+                compactor.update(() -> {
+                  missingTexts.forEach(text -> text2error.put(text, retryAfter));
+                  db.commit();
+                });
+                LOG.warn("{} documents failed at [{}], will retry after {}.", missingTexts.size(),
+                        trigger, new Date(retryAfter));
+                throw e;
+              }
+              Map<String, String> missingText2denotations = new HashMap<>();
+              long now = System.currentTimeMillis();
+              compactor.update(() -> {
+                IntStream.range(0, missingTexts.size()).forEach(i -> {
+                  String text = missingTexts.get(i);
+                  String denotationString = missingDenotationStrings.get(i);
+                  missingText2denotations.put(text, denotationString);
+                  if (text2denotations.put(text, denotationString) != null) {
+                    singleFlight.recordDuplicate();
+                  }
+                  if (EMPTY_DENOTATIONS.equals(denotationString)) {
+                    text2negative.put(text, now);
+                  } else {
+                    text2negative.remove(text);
+                  }
+                  text2error.remove(text);
+                });
+                db.commit();
+              });
+              compactor.maybeCompact();
+              return missingText2denotations;
+            });
     db.getEngine().clearCache();
-    return mergedDenotationStrings;
+    return normalizedTexts.stream().map(text2mergedDenotations::get).collect(toList());
+  }
+
+  /**
+   * Returns the cached denotations, unless it is an expired negative entry, or an empty denotation
+   * list if the text has failed and its retry time has not come, or otherwise <tt>null</tt> to
+   * request the service again.
+   */
+  private String getValidDenotations(String text, Map<String, String> text2denotations,
+          Map<String, Long> text2negative, Map<String, Long> text2error) {
+    String denotations = text2denotations.get(text);
+    if (denotations != null) {
+      if (!EMPTY_DENOTATIONS.equals(denotations)) return denotations;
+      Long createdAt = text2negative.get(text);
+      return createdAt != null && policy.isNegativeExpired(createdAt) ? null : denotations;
+    }
+    Long retryAfter = text2error.get(text);
+    return retryAfter != null && !policy.canRetry(retryAfter) ? EMPTY_DENOTATIONS : null;
   }
 
   @Override
   public void destroy() {
     super.destroy();
-    db.commit();
-    db.compact();
+    trigger2singleFlight.values().forEach(SingleFlight::report);
+    compactor.commit();
   }
 
 }
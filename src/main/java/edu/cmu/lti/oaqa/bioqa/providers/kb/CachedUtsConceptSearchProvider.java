@@ -14,8 +14,8 @@
 
 package edu.cmu.lti.oaqa.bioqa.providers.kb;
 
-import com.google.common.collect.ImmutableMap;
 import edu.cmu.lti.oaqa.baseqa.providers.kb.ConceptSearchProvider;
+import edu.cmu.lti.oaqa.bioqa.util.StringPool;
 import edu.cmu.lti.oaqa.ecd.config.ConfigurableProvider;
 import edu.cmu.lti.oaqa.type.kb.Concept;
 import edu.cmu.lti.oaqa.type.kb.ConceptType;
@@ -31,6 +31,9 @@ import org.apache.uima.resource.impl.CustomResourceSpecifier_impl;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
 import org.mapdb.HTreeMap;
+import org.mapdb.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.*;
@@ -38,6 +41,15 @@ import java.util.*;
 /**
  * A {@link UtsConceptSearchProvider} that uses a local <a href="http://www.mapdb.org/">MapDB</a>
  * instance to cache the service requests and responses.
+ * The responses are stored as {@link UtsConceptSearchCacheEntry}s using a compact
+ * {@link UtsConceptSearchCacheSerializer}, where the semantic types are interned in a separate
+ * table (<tt>map-name/types</tt>) and referenced by their indexes.
+ * Cache files created by the previous versions, which stored <tt>Map&lt;String, Object&gt;</tt>
+ * values, are migrated in place when they are opened, or via {@link #main(String[])}.
+ * Searches that return nothing are cached as negative entries, and failed searches are cached as
+ * error entries, both of which expire according to the {@link KbCachePolicy}.
+ * A batch of strings ({@link #search(JCas, Collection)}) is looked up in the cache first, and the
+ * misses are searched by the delegate in parallel.
  *
  * TODO: Created a cache provider and cacheable interface to standardize the cacheable versions of
  * services.
@@ -55,7 +67,26 @@ public class CachedUtsConceptSearchProvider extends ConfigurableProvider
 
   private DB db;
 
-  private HTreeMap<String, Map<String, Object>> string2concept;
+  private KbCacheCompactor compactor;
+
+  private HTreeMap<String, UtsConceptSearchCacheEntry> string2entry;
+
+  private HTreeMap<Integer, String[]> index2type;
+
+  private List<String[]> types;
+
+  private Map<String, Integer> type2index;
+
+  private SingleFlight<String, UtsConceptSearchCacheEntry> singleFlight;
+
+  // the layout changes are handled by the per-entry version byte, so the map name stays the same
+  private static final String ENTRY_MAP_SUFFIX = "/v1";
+
+  private KbCachePolicy policy;
+
+  private static final String TYPE_MAP_SUFFIX = "/types";
+
+  private static final Logger LOG = LoggerFactory.getLogger(CachedUtsConceptSearchProvider.class);
 
   @Override
   public boolean initialize(ResourceSpecifier aSpecifier, Map<String, Object> aAdditionalParams)
@@ -68,13 +99,82 @@ public class CachedUtsConceptSearchProvider extends ConfigurableProvider
             delegateResourceSpecifier, aAdditionalParams));
     // initialize mapdb
     File file = new File((String) getParameterValue("db-file"));
-    db = DBMaker.newFileDB(file).compressionEnable().commitFileSyncDisable().cacheSize(128)
-            .closeOnJvmShutdown().make();
+    db = DBMaker.newFileDB(file).compressionEnable().commitFileSyncDisable().cacheSize(128).make();
+    compactor = KbCacheCompactor.create(db, file,
+            getParameterValue("compaction-fragmentation-threshold"),
+            getParameterValue("compaction-check-interval-minutes"));
     String map = (String) getParameterValue("map-name");
-    string2concept = db.getHashMap(map);
+    policy = KbCachePolicy.create(getParameterValue("negative-ttl-hours"),
+            getParameterValue("error-retry-after-minutes"));
+    openMaps(map);
+    migrateLegacyMap(map);
+    singleFlight = new SingleFlight<>(map);
     return ret;
   }
 
+  private void openMaps(String map) {
+    string2entry = db.createHashMap(map + ENTRY_MAP_SUFFIX).keySerializer(Serializer.STRING)
+            .valueSerializer(new UtsConceptSearchCacheSerializer()).makeOrGet();
+    index2type = db.getHashMap(map + TYPE_MAP_SUFFIX);
+    types = new ArrayList<>();
+    type2index = new HashMap<>();
+    for (int i = 0; i < index2type.size(); i++) {
+      String[] type = index2type.get(i);
+      types.add(type);
+      type2index.put(typeKey(type[0], type[1], type[2]), i);
+    }
+  }
+
+  /**
+   * Converts the entries in the map created by the previous versions, whose values are
+   * <tt>Map&lt;String, Object&gt;</tt>s serialized by the default MapDB serializer, into
+   * {@link UtsConceptSearchCacheEntry}s, and deletes the legacy map from the same file.
+   */
+  @SuppressWarnings("unchecked")
+  private void migrateLegacyMap(String map) {
+    if (!db.exists(map)) return;
+    HTreeMap<String, Map<String, Object>> legacy = db.getHashMap(map);
+    LOG.info("Migrating {} legacy entries from {}.", legacy.size(), map);
+    // the legacy negative entries are not timestamped, and expire as if created by the migration
+    long now = System.currentTimeMillis();
+    int count = 0;
+    for (Map.Entry<String, Map<String, Object>> entry : legacy.entrySet()) {
+      Map<String, Object> data = entry.getValue();
+      if (data.isEmpty()) {
+        string2entry.put(entry.getKey(), UtsConceptSearchCacheEntry.negative(now));
+      } else {
+        int[] typeIndexes = ((List<String[]>) data.get("types")).stream()
+                .mapToInt(type -> internType(type[0], type[1], type[2])).toArray();
+        string2entry.put(entry.getKey(), new UtsConceptSearchCacheEntry(
+                (String) data.get("name"), (String) data.get("id"), typeIndexes));
+      }
+      if (++count % 100000 == 0) {
+        db.commit();
+        LOG.info("Migrated {} entries.", count);
+      }
+    }
+    db.delete(map);
+    db.commit();
+    LOG.info("Migrated {} entries to {}.", count, map + ENTRY_MAP_SUFFIX);
+  }
+
+  synchronized int internType(String id, String name, String abbreviation) {
+    String key = typeKey(id, name, abbreviation);
+    Integer index = type2index.get(key);
+    if (index == null) {
+      index = types.size();
+      types.add(new String[] {id, name, abbreviation});
+      type2index.put(key, index);
+      int newIndex = index;
+      compactor.update(() -> index2type.put(newIndex, new String[] {id, name, abbreviation}));
+    }
+    return index;
+  }
+
+  private static String typeKey(String id, String name, String abbreviation) {
+    return id + '\t' + name + '\t' + abbreviation;
+  }
+
   @Override
   public Optional<Concept> search(String string) throws AnalysisEngineProcessException {
     return delegate.search(string);
@@ -82,36 +182,120 @@ public class CachedUtsConceptSearchProvider extends ConfigurableProvider
 
   @Override
   public Optional<Concept> search(JCas jcas, String string) throws AnalysisEngineProcessException {
-    if (string2concept.containsKey(string))
-      return Optional.ofNullable(toConcept(jcas, string2concept.get(string)));
-    Optional<Concept> concept = delegate.search(jcas, string);
-    Map<String, Object> data = fromConcept(concept.orElse(null));
-    string2concept.put(string, data);
-    return concept;
+    List<Optional<Concept>> loaded = new ArrayList<>(1);
+    UtsConceptSearchCacheEntry entry = singleFlight.get(string, this::getValidEntry, strings -> {
+      Optional<Concept> concept;
+      try {
+        concept = delegate.search(jcas, string);
+      } catch (AnalysisEngineProcessException e) {
+        long retryAfter = policy.nextRetryTime();
+        LOG.warn("Concept search failed for {}, will retry after {}.", string,
+                new Date(retryAfter));
+        compactor.update(() -> string2entry.put(string,
+                UtsConceptSearchCacheEntry.error(retryAfter)));
+        throw e;
+      }
+      loaded.add(concept);
+      UtsConceptSearchCacheEntry loadedEntry = fromConcept(concept.orElse(null));
+      compactor.update(() -> {
+        UtsConceptSearchCacheEntry previous = string2entry.put(string, loadedEntry);
+        if (previous != null && !previous.isError()) singleFlight.recordDuplicate();
+      });
+      compactor.maybeCompact();
+      return Collections.singletonMap(string, loadedEntry);
+    });
+    // the concept has been created in the jcas if this caller issued the request
+    if (!loaded.isEmpty()) return loaded.get(0);
+    return Optional.ofNullable(toConcept(jcas, entry));
   }
 
-  // TODO change to serializable object
-  private static Concept toConcept(JCas jcas, Map<String, Object> data) {
-    if (data.isEmpty()) return null;
-    List<ConceptType> types = new ArrayList<>();
-    for (String[] type : (List<String[]>) data.get("types")) {
-      types.add(TypeFactory.createConceptType(jcas, type[0], type[1], type[2]));
+  /**
+   * Looks up the strings in the cache, and sends the misses that are not in flight to the delegate
+   * in one batch, which searches them in parallel.
+   */
+  @Override
+  public Map<String, Optional<Concept>> search(JCas jcas, Collection<String> strings)
+          throws AnalysisEngineProcessException {
+    Map<String, Optional<Concept>> loaded = new HashMap<>();
+    Map<String, UtsConceptSearchCacheEntry> string2validEntry = singleFlight.get(strings,
+            this::getValidEntry, misses -> {
+              Map<String, Optional<Concept>> concepts;
+              try {
+                concepts = delegate.search(jcas, misses);
+              } catch (AnalysisEngineProcessException e) {
+                long retryAfter = policy.nextRetryTime();
+                LOG.warn("Concept search failed for {} strings, will retry after {}.",
+                        misses.size(), new Date(retryAfter));
+                compactor.update(() -> misses.forEach(string -> string2entry
+                        .put(string, UtsConceptSearchCacheEntry.error(retryAfter))));
+                throw e;
+              }
+              loaded.putAll(concepts);
+              Map<String, UtsConceptSearchCacheEntry> loadedEntries = new HashMap<>();
+              for (String string : misses) {
+                loadedEntries.put(string, fromConcept(
+                        concepts.getOrDefault(string, Optional.empty()).orElse(null)));
+              }
+              compactor.update(() -> loadedEntries.forEach((string, loadedEntry) -> {
+                UtsConceptSearchCacheEntry previous = string2entry.put(string, loadedEntry);
+                if (previous != null && !previous.isError()) singleFlight.recordDuplicate();
+              }));
+              compactor.maybeCompact();
+              return loadedEntries;
+            });
+    Map<String, Optional<Concept>> string2concept = new LinkedHashMap<>();
+    for (String string : strings) {
+      if (string2concept.containsKey(string)) continue;
+      // the concepts have been created in the jcas for the strings requested by this caller
+      Optional<Concept> concept = loaded.get(string);
+      if (concept == null) {
+        UtsConceptSearchCacheEntry entry = string2validEntry.get(string);
+        concept = Optional.ofNullable(entry == null ? null : toConcept(jcas, entry));
+      }
+      string2concept.put(string, concept);
     }
-    return TypeFactory
-            .createConcept(jcas, (String) data.get("name"), (String) data.get("id"), types);
+    return string2concept;
   }
 
-  private static Map<String, Object> fromConcept(Concept concept) {
-    if (concept == null) return ImmutableMap.of();
-    Map<String, Object> data = new HashMap<>();
-    data.put("name", TypeUtil.getConceptPreferredName(concept));
-    data.put("id", TypeUtil.getConceptIds(concept).stream().findFirst().orElse(null));
-    List<String[]> types = new ArrayList<>();
-    for (ConceptType type : TypeUtil.getConceptTypes(concept)) {
-      types.add(new String[] {type.getId(), type.getName(), type.getAbbreviation()});
+  /**
+   * Returns the cached entry if it is still valid, i.e. a positive entry, an unexpired negative
+   * entry, or an error entry whose retry time has not come (treated as a negative entry).
+   * Otherwise, <tt>null</tt> is returned to request the service again.
+   */
+  private UtsConceptSearchCacheEntry getValidEntry(String string) {
+    UtsConceptSearchCacheEntry entry = string2entry.get(string);
+    if (entry == null) return null;
+    switch (entry.getKind()) {
+      case NEGATIVE:
+        return policy.isNegativeExpired(entry.getTimestamp()) ? null : entry;
+      case ERROR:
+        return policy.canRetry(entry.getTimestamp()) ? null : entry;
+      default:
+        return entry;
     }
-    data.put("types", types);
-    return data;
+  }
+
+  private Concept toConcept(JCas jcas, UtsConceptSearchCacheEntry entry) {
+    if (entry.isNegative() || entry.isError()) return null;
+    List<ConceptType> conceptTypes = new ArrayList<>(entry.getTypeIndexes().length);
+    synchronized (this) {
+      for (int typeIndex : entry.getTypeIndexes()) {
+        String[] type = types.get(typeIndex);
+        conceptTypes.add(TypeFactory.createConceptType(jcas, StringPool.of(type[0]),
+                StringPool.of(type[1]), StringPool.of(type[2])));
+      }
+    }
+    return TypeFactory.createConcept(jcas, StringPool.of(entry.getName()),
+            StringPool.of(entry.getId()), conceptTypes);
+  }
+
+  private UtsConceptSearchCacheEntry fromConcept(Concept concept) {
+    if (concept == null) return UtsConceptSearchCacheEntry.negative(System.currentTimeMillis());
+    int[] typeIndexes = TypeUtil.getConceptTypes(concept).stream()
+            .mapToInt(type -> internType(type.getId(), type.getName(), type.getAbbreviation()))
+            .toArray();
+    return new UtsConceptSearchCacheEntry(TypeUtil.getConceptPreferredName(concept),
+            TypeUtil.getConceptIds(concept).stream().findFirst().orElse(null), typeIndexes);
   }
 
   @Override
@@ -129,8 +313,25 @@ public class CachedUtsConceptSearchProvider extends ConfigurableProvider
   @Override
   public void destroy() {
     super.destroy();
-    db.commit();
-    db.compact();
+    delegate.destroy();
+    singleFlight.report();
+    compactor.commit();
+  }
+
+  /**
+   * Migrates a cache file created by the previous versions offline.
+   *
+   * @param args the path to the MapDB file, and the map name
+   */
+  public static void main(String[] args) {
+    CachedUtsConceptSearchProvider provider = new CachedUtsConceptSearchProvider();
+    provider.db = DBMaker.newFileDB(new File(args[0])).compressionEnable()
+            .commitFileSyncDisable().cacheSize(128).make();
+    provider.compactor = new KbCacheCompactor(provider.db, new File(args[0]), 0, 0);
+    provider.openMaps(args[1]);
+    provider.migrateLegacyMap(args[1]);
+    KbCacheCompactor.compact(provider.db, new File(args[0]));
+    provider.db.close();
   }
 
 }
@@ -14,8 +14,6 @@
 
 package edu.cmu.lti.oaqa.bioqa.providers.kb;
 
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
 import edu.cmu.lti.oaqa.baseqa.providers.kb.SynonymExpansionProvider;
 import edu.cmu.lti.oaqa.ecd.config.ConfigurableProvider;
 import org.apache.uima.UIMAFramework;
@@ -32,12 +30,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * A {@link UtsSynonymExpansionProvider} that uses a local <a href="http://www.mapdb.org/">MapDB</a>
  * instance to cache the service requests and responses.
+ * Concept IDs that the service returned nothing for are recorded in a separate negative map
+ * (<tt>map-name/negatives</tt>) with their creation times, and the IDs whose requests failed are
+ * recorded in an error map (<tt>map-name/errors</tt>) with their retry times, both of which are
+ * interpreted according to the {@link KbCachePolicy}.
  *
  * TODO: Created a cache provider and cacheable interface to standardize the cacheable versions of
  * services.
@@ -55,8 +55,18 @@ public class CachedUtsSynonymExpansionProvider extends ConfigurableProvider
 
   private DB db;
 
+  private KbCacheCompactor compactor;
+
   private HTreeMap<String, Set<String>> id2synonyms;
 
+  private HTreeMap<String, Long> id2negative;
+
+  private HTreeMap<String, Long> id2error;
+
+  private KbCachePolicy policy;
+
+  private SingleFlight<String, Set<String>> singleFlight;
+
   private static final Logger LOG = LoggerFactory
           .getLogger(CachedUtsSynonymExpansionProvider.class);
 
@@ -71,10 +81,17 @@ public class CachedUtsSynonymExpansionProvider extends ConfigurableProvider
             delegateResourceSpecifier, aAdditionalParams));
     // initialize mapdb
     File file = new File((String) getParameterValue("db-file"));
-    db = DBMaker.newFileDB(file).compressionEnable().commitFileSyncDisable().cacheSize(128)
-            .closeOnJvmShutdown().make();
+    db = DBMaker.newFileDB(file).compressionEnable().commitFileSyncDisable().cacheSize(128).make();
+    compactor = KbCacheCompactor.create(db, file,
+            getParameterValue("compaction-fragmentation-threshold"),
+            getParameterValue("compaction-check-interval-minutes"));
     String map = (String) getParameterValue("map-name");
     id2synonyms = db.getHashMap(map);
+    id2negative = db.getHashMap(map + "/negatives");
+    id2error = db.getHashMap(map + "/errors");
+    policy = KbCachePolicy.create(getParameterValue("negative-ttl-hours"),
+            getParameterValue("error-retry-after-minutes"));
+    singleFlight = new SingleFlight<>(map);
     return ret;
   }
 
@@ -91,23 +108,57 @@ public class CachedUtsSynonymExpansionProvider extends ConfigurableProvider
   @Override
   public Map<String, Set<String>> getSynonyms(Collection<String> ids)
           throws AnalysisEngineProcessException {
-    Map<String, Set<String>> ret = ids.stream().filter(id2synonyms::containsKey)
-            .collect(Collectors.toMap(Function.identity(), id2synonyms::get));
-    Set<String> mids = Sets.difference(ImmutableSet.copyOf(ids), ret.keySet());
-    LOG.info("Retrieved {} from cache, requesting {} missing concepts.", ret.size(), mids.size());
-    Map<String, Set<String>> mids2synonysm = delegate.getSynonyms(mids);
-    ret.putAll(mids2synonysm);
-    id2synonyms.putAll(mids2synonysm);
-    db.commit();
+    Map<String, Set<String>> ret = singleFlight.get(ids, this::getValidSynonyms, mids -> {
+      LOG.info("Requesting {} missing concepts.", mids.size());
+      Map<String, Set<String>> mids2synonysm = delegate.getSynonyms(mids);
+      long now = System.currentTimeMillis();
+      long retryAfter = policy.nextRetryTime();
+      compactor.update(() -> {
+        for (String id : mids) {
+          Set<String> synonyms = mids2synonysm.get(id);
+          if (synonyms == null) {
+            id2error.put(id, retryAfter);
+          } else if (synonyms.isEmpty()) {
+            id2negative.put(id, now);
+            id2error.remove(id);
+          } else {
+            if (id2synonyms.put(id, synonyms) != null) singleFlight.recordDuplicate();
+            id2negative.remove(id);
+            id2error.remove(id);
+          }
+        }
+        db.commit();
+      });
+      int errors = mids.size() - mids2synonysm.size();
+      if (errors > 0) {
+        LOG.warn("{} concepts failed, will retry after {}.", errors, new Date(retryAfter));
+      }
+      compactor.maybeCompact();
+      return mids2synonysm;
+    });
     db.getEngine().clearCache();
     return ret;
   }
 
+  /**
+   * Returns the cached synonyms, an empty set for an unexpired negative entry or an error entry
+   * whose retry time has not come, or <tt>null</tt> to request the service again.
+   */
+  private Set<String> getValidSynonyms(String id) {
+    Set<String> synonyms = id2synonyms.get(id);
+    if (synonyms != null) return synonyms;
+    Long createdAt = id2negative.get(id);
+    if (createdAt != null && !policy.isNegativeExpired(createdAt)) return Collections.emptySet();
+    Long retryAfter = id2error.get(id);
+    if (retryAfter != null && !policy.canRetry(retryAfter)) return Collections.emptySet();
+    return null;
+  }
+
   @Override
   public void destroy() {
     super.destroy();
-    db.commit();
-    db.compact();
+    singleFlight.report();
+    compactor.commit();
   }
 
 }
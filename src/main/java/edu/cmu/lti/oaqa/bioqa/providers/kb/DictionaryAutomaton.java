@@ -0,0 +1,188 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.kb;
+
+import edu.cmu.lti.oaqa.baseqa.util.LongIntMap;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ *   An Aho&ndash;Corasick automaton over token ids, used by {@link DictionaryConceptProvider}.
+ *   The goto function is a {@link LongIntMap} from (state, token) pairs to states, and the failure,
+ *   output, and dictionary suffix links are kept in primitive arrays, so that an automaton of
+ *   millions of terms takes tens of bytes per state.
+ * </p>
+ * <p>
+ *   Terms are added with {@link #add(int[], int)}, and {@link #build()} must be called before
+ *   {@link #match(int[], int[], int[])}.
+ * </p>
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+class DictionaryAutomaton {
+
+  // the goto function, keyed by (state << 32 | token)
+  private final LongIntMap transitions = new LongIntMap(1 << 16);
+
+  private int numStates = 1;
+
+  // the output of a terminal state, or -1
+  private int[] outputs = new int[1 << 12];
+
+  private int[] depths = new int[1 << 12];
+
+  // the children of each state as a linked list, only used to build the failure links
+  private int[] firstChildren = new int[1 << 12];
+
+  private int[] nextSiblings = new int[1 << 12];
+
+  private int[] tokens = new int[1 << 12];
+
+  private int[] failures;
+
+  // the nearest terminal state along the failure links, or -1
+  private int[] dictionarySuffixes;
+
+  DictionaryAutomaton() {
+    Arrays.fill(outputs, -1);
+    Arrays.fill(firstChildren, -1);
+  }
+
+  /**
+   * Adds a term, and returns the previous output of the term, or -1.
+   */
+  int add(int[] term, int output) {
+    int state = 0;
+    for (int token : term) {
+      int next = get(state, token);
+      if (next < 0) {
+        next = newState(state, token);
+        transitions.put(LongIntMap.key(state, token), next);
+      }
+      state = next;
+    }
+    int previous = outputs[state];
+    outputs[state] = output;
+    return previous;
+  }
+
+  int getOutput(int[] term) {
+    int state = 0;
+    for (int token : term) {
+      state = get(state, token);
+      if (state < 0) return -1;
+    }
+    return outputs[state];
+  }
+
+  private int newState(int parent, int token) {
+    if (numStates == outputs.length) {
+      int capacity = numStates * 2;
+      outputs = Arrays.copyOf(outputs, capacity);
+      Arrays.fill(outputs, numStates, capacity, -1);
+      depths = Arrays.copyOf(depths, capacity);
+      firstChildren = Arrays.copyOf(firstChildren, capacity);
+      Arrays.fill(firstChildren, numStates, capacity, -1);
+      nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+      tokens = Arrays.copyOf(tokens, capacity);
+    }
+    int state = numStates++;
+    depths[state] = depths[parent] + 1;
+    tokens[state] = token;
+    nextSiblings[state] = firstChildren[parent];
+    firstChildren[parent] = state;
+    return state;
+  }
+
+  private int get(int state, int token) {
+    return transitions.get(LongIntMap.key(state, token));
+  }
+
+  /**
+   * Builds the failure and dictionary suffix links in breadth-first order, and releases the
+   * arrays only needed to build the automaton.
+   */
+  void build() {
+    failures = new int[numStates];
+    dictionarySuffixes = new int[numStates];
+    dictionarySuffixes[0] = -1;
+    int[] queue = new int[numStates];
+    int head = 0;
+    int tail = 0;
+    for (int child = firstChildren[0]; child >= 0; child = nextSiblings[child]) {
+      failures[child] = 0;
+      dictionarySuffixes[child] = -1;
+      queue[tail++] = child;
+    }
+    while (head < tail) {
+      int state = queue[head++];
+      for (int child = firstChildren[state]; child >= 0; child = nextSiblings[child]) {
+        int failure = failures[state];
+        int next;
+        while ((next = get(failure, tokens[child])) < 0 && failure != 0) {
+          failure = failures[failure];
+        }
+        failures[child] = next >= 0 ? next : 0;
+        int f = failures[child];
+        dictionarySuffixes[child] = outputs[f] >= 0 ? f : dictionarySuffixes[f];
+        queue[tail++] = child;
+      }
+    }
+    outputs = Arrays.copyOf(outputs, numStates);
+    depths = Arrays.copyOf(depths, numStates);
+    firstChildren = null;
+    nextSiblings = null;
+    tokens = null;
+  }
+
+  /**
+   * Finds the longest term starting at each token, where a token id that is negative (e.g. not in
+   * the vocabulary) does not match any term.
+   *
+   * @param lengths the output array, where <tt>lengths[i]</tt> is set to the number of tokens of
+   *                the longest term starting at the <tt>i</tt>-th token, or 0
+   * @param outputs the output array, where <tt>outputs[i]</tt> is set to the output of the term
+   */
+  void match(int[] text, int[] lengths, int[] outputs) {
+    Arrays.fill(lengths, 0, text.length, 0);
+    int state = 0;
+    for (int i = 0; i < text.length; i++) {
+      int token = text[i];
+      if (token < 0) {
+        state = 0;
+        continue;
+      }
+      int next;
+      while ((next = get(state, token)) < 0 && state != 0) {
+        state = failures[state];
+      }
+      state = next >= 0 ? next : 0;
+      for (int s = this.outputs[state] >= 0 ? state : dictionarySuffixes[state]; s > 0;
+           s = dictionarySuffixes[s]) {
+        int start = i - depths[s] + 1;
+        if (depths[s] > lengths[start]) {
+          lengths[start] = depths[s];
+          outputs[start] = this.outputs[s];
+        }
+      }
+    }
+  }
+
+  int getNumStates() {
+    return numStates;
+  }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.kb;
+
+import edu.cmu.lti.oaqa.baseqa.providers.kb.ConceptProvider;
+import edu.cmu.lti.oaqa.ecd.config.ConfigurableProvider;
+import edu.cmu.lti.oaqa.type.kb.Concept;
+import edu.cmu.lti.oaqa.type.kb.ConceptMention;
+import edu.cmu.lti.oaqa.type.kb.ConceptType;
+import edu.cmu.lti.oaqa.util.TypeFactory;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceSpecifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>
+ *   A local {@link ConceptProvider} that tags the longest matches of the terms in a UMLS/MeSH-style
+ *   dictionary, as a fast offline alternative to {@link MetaMapConceptProvider} and
+ *   {@link TmToolConceptProvider}.
+ *   The dictionary, specified via the parameter <tt>dictionary</tt> as a file or a class path
+ *   resource (optionally gzipped), has one term per line in the tab-separated format
+ *   <pre>
+ *     CUI	term	semantic types	[preferred name]
+ *   </pre>
+ *   where the semantic types (e.g. <tt>dsyn</tt>) are separated by <tt>|</tt> or <tt>,</tt>, and
+ *   the preferred name defaults to the first term of the CUI, e.g. a dump of <tt>MRCONSO.RRF</tt>
+ *   joined with <tt>MRSTY.RRF</tt>.
+ *   Lines starting with <tt>#</tt> are ignored.
+ * </p>
+ * <p>
+ *   The terms and the text are normalized into lower cased letter-or-digit tokens, which are
+ *   matched by an Aho&ndash;Corasick automaton ({@link DictionaryAutomaton}) over the token ids,
+ *   and the leftmost-longest non-overlapping matches are kept.
+ *   A term whose normalized text is shorter than <tt>min-term-length</tt> characters (3 by default)
+ *   is ignored to avoid spurious matches of short abbreviations.
+ *   Each match creates a {@link Concept} for each CUI of the term, with the id
+ *   <tt>UMLS:CUI</tt>, the names of the preferred name and the covered text, and the types
+ *   <tt>umls:semantic type</tt>, the same as {@link MetaMapConceptProvider}, so that the concepts
+ *   can be merged by {@link edu.cmu.lti.oaqa.baseqa.evidence.concept.ConceptMerger}.
+ * </p>
+ *
+ * @see DictionaryAutomaton
+ * @see MetaMapConceptProvider
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class DictionaryConceptProvider extends ConfigurableProvider implements ConceptProvider {
+
+  private static final int DEFAULT_MIN_TERM_LENGTH = 3;
+
+  private final Map<String, Integer> vocabulary = new HashMap<>();
+
+  private final DictionaryAutomaton automaton = new DictionaryAutomaton();
+
+  // the CUIs of each term, which is the output of the automaton
+  private final List<int[]> termConcepts = new ArrayList<>();
+
+  private final List<String> cuis = new ArrayList<>();
+
+  private final List<String> preferredNames = new ArrayList<>();
+
+  private final List<String[]> semanticTypes = new ArrayList<>();
+
+  private static final Logger LOG = LoggerFactory.getLogger(DictionaryConceptProvider.class);
+
+  @Override
+  public boolean initialize(ResourceSpecifier aSpecifier, Map<String, Object> aAdditionalParams)
+          throws ResourceInitializationException {
+    boolean ret = super.initialize(aSpecifier, aAdditionalParams);
+    String dictionary = String.class.cast(getParameterValue("dictionary"));
+    int minTermLength = Optional.ofNullable((Integer) getParameterValue("min-term-length"))
+            .orElse(DEFAULT_MIN_TERM_LENGTH);
+    long start = System.currentTimeMillis();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            openDictionary(dictionary), UTF_8), 1 << 16)) {
+      load(reader, minTermLength);
+    } catch (IOException e) {
+      throw new ResourceInitializationException(e);
+    }
+    automaton.build();
+    LOG.info("Loaded {} terms of {} concepts ({} tokens, {} states) from {} in {} ms.",
+            termConcepts.size(), cuis.size(), vocabulary.size(), automaton.getNumStates(),
+            dictionary, System.currentTimeMillis() - start);
+    return ret;
+  }
+
+  private InputStream openDictionary(String dictionary) throws IOException {
+    InputStream in = new File(dictionary).exists() ? new FileInputStream(dictionary) :
+            getClass().getResourceAsStream(dictionary);
+    if (in == null) {
+      throw new FileNotFoundException(dictionary);
+    }
+    return dictionary.endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+  }
+
+  private void load(BufferedReader reader, int minTermLength) throws IOException {
+    Map<String, Integer> cui2concept = new HashMap<>();
+    Map<String, String> semanticTypeStrings = new HashMap<>();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isEmpty() || line.startsWith("#")) continue;
+      String[] segs = line.split("\t");
+      if (segs.length < 3) {
+        LOG.warn("Malformed dictionary line: {}", line);
+        continue;
+      }
+      int concept = cui2concept.getOrDefault(segs[0], -1);
+      if (concept < 0) {
+        concept = cuis.size();
+        cui2concept.put(segs[0], concept);
+        cuis.add(segs[0]);
+        preferredNames.add(segs.length > 3 ? segs[3] : segs[1]);
+        semanticTypes.add(Arrays.stream(segs[2].split("[|,]")).map(String::trim)
+                .filter(type -> !type.isEmpty())
+                .map(type -> semanticTypeStrings.computeIfAbsent(type, t -> t))
+                .toArray(String[]::new));
+      }
+      List<String> tokens = tokenize(segs[1], null, null);
+      if (tokens.stream().mapToInt(String::length).sum() < minTermLength) continue;
+      int[] term = tokens.stream().mapToInt(token -> vocabulary.computeIfAbsent(token,
+              t -> vocabulary.size())).toArray();
+      int output = automaton.getOutput(term);
+      if (output < 0) {
+        automaton.add(term, termConcepts.size());
+        termConcepts.add(new int[] { concept });
+      } else {
+        int[] concepts = termConcepts.get(output);
+        int newConcept = concept;
+        if (Arrays.stream(concepts).noneMatch(c -> c == newConcept)) {
+          concepts = Arrays.copyOf(concepts, concepts.length + 1);
+          concepts[concepts.length - 1] = concept;
+          termConcepts.set(output, concepts);
+        }
+      }
+    }
+  }
+
+  /**
+   * Splits the text into lower cased letter-or-digit tokens.
+   *
+   * @param begins the begin offsets of the tokens, if not null
+   * @param ends the end offsets of the tokens, if not null
+   */
+  static List<String> tokenize(String text, List<Integer> begins, List<Integer> ends) {
+    List<String> tokens = new ArrayList<>();
+    int length = text.length();
+    int i = 0;
+    while (i < length) {
+      while (i < length && !Character.isLetterOrDigit(text.charAt(i))) i++;
+      if (i == length) break;
+      int begin = i;
+      while (i < length && Character.isLetterOrDigit(text.charAt(i))) i++;
+      tokens.add(text.substring(begin, i).toLowerCase(Locale.ROOT));
+      if (begins != null) begins.add(begin);
+      if (ends != null) ends.add(i);
+    }
+    return tokens;
+  }
+
+  @Override
+  public List<Concept> getConcepts(JCas jcas) throws AnalysisEngineProcessException {
+    String text = jcas.getDocumentText();
+    List<Integer> begins = new ArrayList<>();
+    List<Integer> ends = new ArrayList<>();
+    List<String> tokens = tokenize(text, begins, ends);
+    int[] ids = new int[tokens.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = vocabulary.getOrDefault(tokens.get(i), -1);
+    }
+    int[] lengths = new int[ids.length];
+    int[] outputs = new int[ids.length];
+    automaton.match(ids, lengths, outputs);
+    // keep the leftmost-longest non-overlapping matches
+    List<Concept> concepts = new ArrayList<>();
+    for (int i = 0; i < ids.length; ) {
+      if (lengths[i] == 0) {
+        i++;
+        continue;
+      }
+      int begin = begins.get(i);
+      int end = ends.get(i + lengths[i] - 1);
+      String coveredText = text.substring(begin, end);
+      for (int concept : termConcepts.get(outputs[i])) {
+        ConceptMention mention = TypeFactory.createConceptMention(jcas, begin, end, coveredText,
+                1.0);
+        List<ConceptType> types = new ArrayList<>();
+        for (String semanticType : semanticTypes.get(concept)) {
+          types.add(TypeFactory.createConceptType(jcas, "umls:" + semanticType));
+        }
+        List<String> names = Arrays.asList(preferredNames.get(concept), coveredText);
+        concepts.add(TypeFactory.createConcept(jcas, names, "UMLS:" + cuis.get(concept), mention,
+                types));
+      }
+      i += lengths[i];
+    }
+    return concepts;
+  }
+
+}
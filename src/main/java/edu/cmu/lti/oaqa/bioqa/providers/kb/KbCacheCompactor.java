@@ -0,0 +1,256 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.kb;
+
+import org.mapdb.DB;
+import org.mapdb.Store;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>
+ *   Compacts the MapDB cache file of a cached KB provider in the background, instead of
+ *   synchronously when the provider is destroyed.
+ *   After the provider commits, {@link #maybeCompact()} checks (at most once every
+ *   <tt>compaction-check-interval-minutes</tt>) the fragmentation ratio of the store, i.e. the free
+ *   space over the current size, and if it exceeds <tt>compaction-fragmentation-threshold</tt>,
+ *   the compaction is started on a daemon thread.
+ *   Background compaction is disabled if the threshold is not specified, in which case the cache
+ *   file can be compacted offline via the <tt>compact</tt> command of {@link KbCacheTool}.
+ * </p>
+ * <p>
+ *   The provider makes each batch of changes to the store via {@link #update(Runnable)}, which
+ *   holds the read side of a lock whose write side is held by the compaction, so that the
+ *   compaction never commits a half-written batch, and the batches wait for the compaction, which
+ *   blocks the cache accesses anyway.
+ *   MapDB 1.0 only supports a full rewrite of the store, so the threshold should be set high
+ *   enough that it is rarely triggered.
+ * </p>
+ * <p>
+ *   Shutdown never waits for a running compaction.
+ *   {@link #commit()}, called when the provider is destroyed, and the JVM shutdown hook, which
+ *   closes the store, leave the final commit and close to the compaction thread if a compaction is
+ *   running, so the store should not be opened with MapDB's <tt>closeOnJvmShutdown()</tt>, whose
+ *   shutdown hook may close the store in the middle of a compaction.
+ *   If the JVM exits before the compaction completes, the store is left as of the last commit,
+ *   since MapDB writes the compacted store to a separate file before it replaces the original.
+ * </p>
+ *
+ * @see KbCacheTool
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class KbCacheCompactor {
+
+  private static final long DEFAULT_CHECK_INTERVAL_MINUTES = 10;
+
+  private final DB db;
+
+  private final File file;
+
+  private final double threshold;
+
+  private final long checkInterval;
+
+  private volatile long lastCheckTime;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  // guarded by this
+  private boolean running;
+
+  // guarded by this, set once the provider is destroyed, after which no compaction is started
+  private boolean destroyed;
+
+  // guarded by this, set once the JVM shuts down
+  private boolean closing;
+
+  private final ExecutorService executor;
+
+  private static final Logger LOG = LoggerFactory.getLogger(KbCacheCompactor.class);
+
+  public KbCacheCompactor(DB db, File file, double threshold, long checkInterval) {
+    this.db = db;
+    this.file = file;
+    this.threshold = threshold;
+    this.checkInterval = checkInterval;
+    this.lastCheckTime = System.currentTimeMillis();
+    this.executor = threshold > 0 ? Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "kb-cache-compactor-" + file.getName());
+      thread.setDaemon(true);
+      return thread;
+    }) : null;
+    Runtime.getRuntime().addShutdownHook(new Thread(this::close, "kb-cache-closer"));
+  }
+
+  /**
+   * Creates a compactor from the (optional) descriptor parameters
+   * <tt>compaction-fragmentation-threshold</tt> and <tt>compaction-check-interval-minutes</tt>.
+   */
+  public static KbCacheCompactor create(DB db, File file, Object threshold,
+          Object checkIntervalMinutes) {
+    long minutes = checkIntervalMinutes == null ? DEFAULT_CHECK_INTERVAL_MINUTES :
+            Number.class.cast(checkIntervalMinutes).longValue();
+    return new KbCacheCompactor(db, file,
+            threshold == null ? 0 : Number.class.cast(threshold).doubleValue(),
+            TimeUnit.MINUTES.toMillis(minutes));
+  }
+
+  /**
+   * Runs a batch of changes to the store, e.g. puts followed by a commit, which may run
+   * concurrently with other batches, but not with a compaction.
+   */
+  public void update(Runnable updates) {
+    lock.readLock().lock();
+    try {
+      updates.run();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public void maybeCompact() {
+    if (executor == null || System.currentTimeMillis() - lastCheckTime < checkInterval) {
+      return;
+    }
+    synchronized (this) {
+      if (running || destroyed || closing) return;
+      lastCheckTime = System.currentTimeMillis();
+      double fragmentation = getFragmentation(db);
+      LOG.info("Fragmentation of {}: {}", file, String.format("%.3f", fragmentation));
+      if (fragmentation <= threshold) return;
+      running = true;
+    }
+    executor.execute(this::runCompaction);
+  }
+
+  private void runCompaction() {
+    lock.writeLock().lock();
+    try {
+      boolean skip;
+      synchronized (this) {
+        skip = destroyed || closing;
+      }
+      if (skip) {
+        // the provider has been destroyed before the compaction started, which owns the commit
+        db.commit();
+      } else {
+        compact(db, file);
+      }
+    } catch (RuntimeException | IllegalAccessError e) {
+      LOG.warn("Failed to compact {}, will retry at the next check.", file, e);
+    } finally {
+      boolean close;
+      synchronized (this) {
+        running = false;
+        close = closing;
+      }
+      if (close) {
+        closeStore();
+      }
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Commits the store when the provider is destroyed, and stops the background compaction.
+   * If a compaction is running, which commits the store itself, it returns without waiting.
+   */
+  public void commit() {
+    synchronized (this) {
+      destroyed = true;
+      if (running) {
+        LOG.info("Compaction of {} is running, and will commit the store.", file);
+        return;
+      }
+    }
+    if (executor != null) {
+      executor.shutdown();
+    }
+    lock.writeLock().lock();
+    try {
+      db.commit();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Commits and closes the store when the JVM shuts down, unless a compaction is running, which
+   * then closes the store when it completes.
+   */
+  private void close() {
+    synchronized (this) {
+      closing = true;
+      if (running) {
+        LOG.info("Compaction of {} is running, and will close the store.", file);
+        return;
+      }
+    }
+    lock.writeLock().lock();
+    try {
+      closeStore();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void closeStore() {
+    synchronized (db) {
+      if (!db.isClosed()) {
+        db.commit();
+        db.close();
+      }
+    }
+  }
+
+  public static double getFragmentation(DB db) {
+    Store store = Store.forDB(db);
+    long size = store.getCurrSize();
+    return size == 0 ? 0 : (double) store.getFreeSize() / size;
+  }
+
+  /**
+   * Commits and compacts the store, and reports the reclaimed space, which should not run
+   * concurrently with any change to the store, e.g. offline, or while holding the write lock.
+   *
+   * @return the number of bytes reclaimed on disk
+   */
+  public static long compact(DB db, File file) {
+    long before = getFileSize(file);
+    long start = System.currentTimeMillis();
+    LOG.info("Compacting {} ({} bytes, fragmentation {}).", file, before,
+            String.format("%.3f", getFragmentation(db)));
+    db.commit();
+    db.compact();
+    long after = getFileSize(file);
+    LOG.info("Compacted {} in {} ms: {} bytes reclaimed, {} bytes remaining.", file,
+            System.currentTimeMillis() - start, before - after, after);
+    return before - after;
+  }
+
+  private static long getFileSize(File file) {
+    // the index file, and the physical file (.p) of StoreDirect
+    return file.length() + new File(file.getPath() + ".p").length();
+  }
+
+}
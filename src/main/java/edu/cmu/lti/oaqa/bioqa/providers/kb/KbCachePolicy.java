@@ -0,0 +1,88 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.kb;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *   Expiration policy shared by the cached KB providers for the two kinds of non-positive cache
+ *   entries:
+ *   <ul>
+ *     <li>
+ *       <b>Negative</b> entries record that the service returned nothing for a request.
+ *       They expire after <tt>negative-ttl-hours</tt> (a negative value, which is the default,
+ *       means never), and a negative entry whose creation time is unknown (0) never expires.
+ *     </li>
+ *     <li>
+ *       <b>Error</b> entries record that the request failed (e.g. timeout, connection reset).
+ *       They are not treated as negative results, but the request will not be sent again until
+ *       <tt>error-retry-after-minutes</tt> (30 by default) has passed.
+ *     </li>
+ *   </ul>
+ * </p>
+ *
+ * @see KbCacheTool
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class KbCachePolicy {
+
+  private static final long DEFAULT_NEGATIVE_TTL_HOURS = -1;
+
+  private static final long DEFAULT_ERROR_RETRY_AFTER_MINUTES = 30;
+
+  private final long negativeTtl;
+
+  private final long errorRetryAfter;
+
+  public KbCachePolicy(long negativeTtl, long errorRetryAfter) {
+    this.negativeTtl = negativeTtl;
+    this.errorRetryAfter = errorRetryAfter;
+  }
+
+  /**
+   * Creates a policy from the (optional) descriptor parameters <tt>negative-ttl-hours</tt> and
+   * <tt>error-retry-after-minutes</tt>.
+   */
+  public static KbCachePolicy create(Object negativeTtlHours, Object errorRetryAfterMinutes) {
+    long hours = negativeTtlHours == null ? DEFAULT_NEGATIVE_TTL_HOURS :
+            Number.class.cast(negativeTtlHours).longValue();
+    long minutes = errorRetryAfterMinutes == null ? DEFAULT_ERROR_RETRY_AFTER_MINUTES :
+            Number.class.cast(errorRetryAfterMinutes).longValue();
+    return new KbCachePolicy(hours < 0 ? -1 : TimeUnit.HOURS.toMillis(hours),
+            TimeUnit.MINUTES.toMillis(minutes));
+  }
+
+  public boolean isNegativeExpired(long createdAt) {
+    return negativeTtl >= 0 && createdAt > 0
+            && System.currentTimeMillis() - createdAt > negativeTtl;
+  }
+
+  public long nextRetryTime() {
+    return System.currentTimeMillis() + errorRetryAfter;
+  }
+
+  public boolean canRetry(long retryAfter) {
+    return System.currentTimeMillis() >= retryAfter;
+  }
+
+  @Override
+  public String toString() {
+    return "negative-ttl=" + (negativeTtl < 0 ? "never" : negativeTtl + "ms")
+            + ", error-retry-after=" + errorRetryAfter + "ms";
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.kb;
+
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ *   Command line maintenance tool for the MapDB cache files of the cached KB providers, e.g.
+ *   {@link CachedMetaMapConceptProvider}, {@link CachedTmToolConceptProvider},
+ *   {@link CachedUtsConceptSearchProvider}, and {@link CachedUtsSynonymExpansionProvider}.
+ * </p>
+ * <p>
+ *   Usage:
+ *   <pre>
+ *     audit db-file [negative-ttl-hours]
+ *     compact db-file
+ *   </pre>
+ *   The <tt>audit</tt> command opens the cache file read-only, and reports the number of
+ *   positive, negative, and error entries in each map, as well as the number of negative entries
+ *   that have expired under the given TTL and the error entries that are due for retry.
+ *   The <tt>compact</tt> command rewrites the cache file, which should not be opened by any
+ *   running pipeline, and reports the reclaimed space.
+ * </p>
+ *
+ * @see KbCachePolicy
+ * @see KbCacheCompactor
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class KbCacheTool {
+
+  private static class AuditCounts {
+
+    long positive, negative, expired, error, retryable;
+
+    @Override
+    public String toString() {
+      return String.format("%10d %10d %10d %10d %10d", positive, negative, expired, error,
+              retryable);
+    }
+
+  }
+
+  public static void audit(File file, KbCachePolicy policy) {
+    DB db = DBMaker.newFileDB(file).compressionEnable().readOnly().make();
+    Map<String, AuditCounts> name2counts = new TreeMap<>();
+    for (Map.Entry<String, Object> entry : db.getAll().entrySet()) {
+      if (!(entry.getValue() instanceof Map)) continue;
+      String name = entry.getKey();
+      AuditCounts counts = new AuditCounts();
+      Collection<?> values = ((Map<?, ?>) entry.getValue()).values();
+      if (name.endsWith("/negatives")) {
+        for (Object createdAt : values) {
+          counts.negative++;
+          if (policy.isNegativeExpired((Long) createdAt)) counts.expired++;
+        }
+      } else if (name.endsWith("/errors")) {
+        for (Object retryAfter : values) {
+          counts.error++;
+          if (policy.canRetry((Long) retryAfter)) counts.retryable++;
+        }
+      } else {
+        values.forEach(value -> countValue(value, counts, policy));
+      }
+      name2counts.put(name, counts);
+    }
+    System.out.println(String.format("%-40s %10s %10s %10s %10s %10s", "map", "positive",
+            "negative", "expired", "error", "retryable"));
+    name2counts.forEach((name, counts) -> System.out.println(String.format("%-40s %s", name,
+            counts)));
+    db.close();
+  }
+
+  private static void countValue(Object value, AuditCounts counts, KbCachePolicy policy) {
+    if (value instanceof UtsConceptSearchCacheEntry) {
+      UtsConceptSearchCacheEntry entry = (UtsConceptSearchCacheEntry) value;
+      switch (entry.getKind()) {
+        case NEGATIVE:
+          counts.negative++;
+          if (policy.isNegativeExpired(entry.getTimestamp())) counts.expired++;
+          break;
+        case ERROR:
+          counts.error++;
+          if (policy.canRetry(entry.getTimestamp())) counts.retryable++;
+          break;
+        default:
+          counts.positive++;
+      }
+    } else if (value instanceof Collection && ((Collection<?>) value).isEmpty()
+            || value instanceof Map && ((Map<?, ?>) value).isEmpty() || "[]".equals(value)) {
+      // empty synonym sets, legacy empty concept maps, and empty tmTool denotation lists
+      counts.negative++;
+    } else {
+      counts.positive++;
+    }
+  }
+
+  public static void compact(File file) {
+    DB db = DBMaker.newFileDB(file).compressionEnable().commitFileSyncDisable().make();
+    long reclaimed = KbCacheCompactor.compact(db, file);
+    System.out.println(file + ": " + reclaimed + " bytes reclaimed");
+    db.close();
+  }
+
+  public static void main(String[] args) {
+    if (args.length < 2) {
+      System.err.println("Usage: audit db-file [negative-ttl-hours] | compact db-file");
+      System.exit(1);
+    }
+    switch (args[0]) {
+      case "audit":
+        KbCachePolicy policy = KbCachePolicy
+                .create(args.length > 2 ? Long.parseLong(args[2]) : null, null);
+        audit(new File(args[1]), policy);
+        break;
+      case "compact":
+        compact(new File(args[1]));
+        break;
+      default:
+        System.err.println("Unknown command: " + args[0]);
+        System.exit(1);
+    }
+  }
+
+}
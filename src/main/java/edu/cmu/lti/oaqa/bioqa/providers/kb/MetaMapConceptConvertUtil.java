@@ -14,6 +14,7 @@
 
 package edu.cmu.lti.oaqa.bioqa.providers.kb;
 
+import edu.cmu.lti.oaqa.bioqa.util.StringPool;
 import edu.cmu.lti.oaqa.type.kb.Concept;
 import edu.cmu.lti.oaqa.type.kb.ConceptMention;
 import edu.cmu.lti.oaqa.type.kb.ConceptType;
@@ -29,6 +30,7 @@ import static java.util.stream.Collectors.toList;
 /**
  * This utility class creates {@link Concept}s from {@link MetaMapObject}s returned by the
  * {@link MetaMapConceptProvider}.
+ * The ids, names, and semantic types are interned in the {@link StringPool}.
  *
  * @see MetaMapObject
  * @see MetaMapConceptProvider
@@ -50,11 +52,11 @@ class MetaMapConceptConvertUtil {
   private static Concept convertMetaMapMappingCandidateToConcept(JCas jcas,
           MetaMapObject.Candidate candidate) {
     double score = candidate.getCandidateScore() / -1000.0;
-    String id = "UMLS:" + candidate.getCandidateCUI();
-    String preferredName = candidate.getCandidatePreferred();
-    String matchedName = candidate.getCandidateMatched();
+    String id = StringPool.of("UMLS:" + candidate.getCandidateCUI());
+    String preferredName = StringPool.of(candidate.getCandidatePreferred());
+    String matchedName = StringPool.of(candidate.getCandidateMatched());
     List<ConceptType> types = candidate.getSemTypes().stream()
-            .map(name -> TypeFactory.createConceptType(jcas, "umls:" + name))
+            .map(name -> TypeFactory.createConceptType(jcas, StringPool.of("umls:" + name)))
             .collect(toList());
     ConceptMention mention = convertMetaMapConceptPIToConceptMention(jcas,
             candidate.getConceptPIs(),
@@ -18,6 +18,7 @@ import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 import com.sun.org.apache.xalan.internal.xsltc.trax.TransformerFactoryImpl;
 import edu.cmu.lti.oaqa.baseqa.providers.kb.ConceptProvider;
+import edu.cmu.lti.oaqa.bioqa.util.RecordReplay;
 import edu.cmu.lti.oaqa.ecd.config.ConfigurableProvider;
 import edu.cmu.lti.oaqa.type.kb.Concept;
 import gov.nih.nlm.nls.skr.GenericObject;
@@ -79,6 +80,8 @@ public class MetaMapConceptProvider extends ConfigurableProvider implements Conc
 
   private GenericObject conf;
 
+  private String version;
+
   private XMLInputFactory xmlInputFactory;
 
   private Transformer transformer;
@@ -92,6 +95,7 @@ public class MetaMapConceptProvider extends ConfigurableProvider implements Conc
 
   MetaMapConceptProvider(String version, String username, String password, String email,
           boolean silentOnError, int priority) throws ResourceInitializationException {
+    this.version = version;
     conf = createConf(version, username, password, email, silentOnError, priority);
     xmlInputFactory = XMLInputFactory.newFactory();
     try {
@@ -108,7 +112,7 @@ public class MetaMapConceptProvider extends ConfigurableProvider implements Conc
   public boolean initialize(ResourceSpecifier aSpecifier, Map<String, Object> aAdditionalParams)
           throws ResourceInitializationException {
     boolean ret = super.initialize(aSpecifier, aAdditionalParams);
-    String version = String.class.cast(getParameterValue("version"));
+    version = String.class.cast(getParameterValue("version"));
     String username = String.class.cast(getParameterValue("username"));
     String password = String.class.cast(getParameterValue("password"));
     String email = String.class.cast(getParameterValue("email"));
@@ -176,7 +180,8 @@ public class MetaMapConceptProvider extends ConfigurableProvider implements Conc
     }
     conf.setFileField("UpLoad_File", file.toString());
     LOG.info("Request ready for {} inputs.", texts.size());
-    String response = conf.handleSubmission();
+    String response = RecordReplay.getInstance().call("metamap/" + version, lines,
+            String.class, conf::handleSubmission);
     file.deleteOnExit();
     LOG.info("Response received.");
     List<String> mmoStrings;
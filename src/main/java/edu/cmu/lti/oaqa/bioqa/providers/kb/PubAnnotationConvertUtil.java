@@ -15,6 +15,7 @@
 package edu.cmu.lti.oaqa.bioqa.providers.kb;
 
 import com.google.common.base.CharMatcher;
+import edu.cmu.lti.oaqa.bioqa.util.StringPool;
 import edu.cmu.lti.oaqa.type.kb.Concept;
 import edu.cmu.lti.oaqa.type.kb.ConceptMention;
 import edu.cmu.lti.oaqa.type.kb.ConceptType;
@@ -103,12 +104,13 @@ class PubAnnotationConvertUtil {
   private static Concept convertDenotationToConcept(JCas jcas,
           PubAnnotation.Denotation denotation) {
     String[] objSegs = denotation.getObj().split(":", 2);
-    ConceptType ctype = TypeFactory.createConceptType(jcas, "tmtool:" + objSegs[0]);
+    ConceptType ctype = TypeFactory.createConceptType(jcas,
+            StringPool.of("tmtool:" + objSegs[0]));
     ConceptMention cmention = convertSpanToConceptMention(jcas, denotation.getSpan());
     Concept concept = TypeFactory.createConcept(jcas, cmention, ctype);
     if (objSegs.length > 1) {
-      concept.setIds(
-              FSCollectionFactory.createStringList(jcas, Collections.singletonList(objSegs[1])));
+      concept.setIds(FSCollectionFactory.createStringList(jcas,
+              Collections.singletonList(StringPool.of(objSegs[1]))));
     }
     return concept;
   }
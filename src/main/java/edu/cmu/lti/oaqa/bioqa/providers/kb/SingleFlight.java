@@ -0,0 +1,180 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.kb;
+
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * <p>
+ *   Coalesces concurrent cache misses for the same key into a single in-flight remote request,
+ *   which is used by the cached KB providers (e.g. {@link CachedMetaMapConceptProvider},
+ *   {@link CachedTmToolConceptProvider}, {@link CachedUtsConceptSearchProvider}, and
+ *   {@link CachedUtsSynonymExpansionProvider}).
+ * </p>
+ * <p>
+ *   A caller first claims each missing key.
+ *   The keys that it successfully claims are requested in one batch by the caller itself, and the
+ *   keys that have already been claimed by other callers are awaited via the shared
+ *   {@link CompletableFuture}s.
+ *   A caller always finishes its own batch before waiting for others, so two callers that claim
+ *   each other's keys cannot deadlock.
+ *   The {@link BatchLoader} is responsible for writing the responses to the cache before it
+ *   returns, so that the callers that look up the cache after the key is released will hit.
+ * </p>
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class SingleFlight<K, V> {
+
+  @FunctionalInterface
+  public interface BatchLoader<K, V> {
+
+    Map<K, V> load(List<K> keys) throws AnalysisEngineProcessException;
+
+  }
+
+  private final String name;
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inflight = new ConcurrentHashMap<>();
+
+  private final AtomicLong requestedCount = new AtomicLong();
+
+  private final AtomicLong hitCount = new AtomicLong();
+
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+  private final AtomicLong loadedCount = new AtomicLong();
+
+  private final AtomicLong batchCount = new AtomicLong();
+
+  private final AtomicLong duplicateCount = new AtomicLong();
+
+  private final AtomicInteger activeLoaderCount = new AtomicInteger();
+
+  private final AtomicInteger maxActiveLoaderCount = new AtomicInteger();
+
+  private static final Logger LOG = LoggerFactory.getLogger(SingleFlight.class);
+
+  public SingleFlight(String name) {
+    this.name = name;
+  }
+
+  public V get(K key, Function<K, V> cache, BatchLoader<K, V> loader)
+          throws AnalysisEngineProcessException {
+    return get(Collections.singleton(key), cache, loader).get(key);
+  }
+
+  /**
+   * Returns the values of the given keys, from the cache if present, otherwise from an in-flight
+   * request issued by another caller, or from a new request issued by the given loader.
+   * Keys whose values are <tt>null</tt> in both the cache and the loader's response are absent
+   * from the returned map.
+   */
+  public Map<K, V> get(Collection<K> keys, Function<K, V> cache, BatchLoader<K, V> loader)
+          throws AnalysisEngineProcessException {
+    Map<K, V> ret = new HashMap<>();
+    Map<K, CompletableFuture<V>> owned = new LinkedHashMap<>();
+    Map<K, CompletableFuture<V>> joined = new HashMap<>();
+    for (K key : new LinkedHashSet<>(keys)) {
+      requestedCount.incrementAndGet();
+      V value = cache.apply(key);
+      if (value != null) {
+        hitCount.incrementAndGet();
+        ret.put(key, value);
+        continue;
+      }
+      CompletableFuture<V> future = new CompletableFuture<>();
+      CompletableFuture<V> existing = inflight.putIfAbsent(key, future);
+      if (existing != null) {
+        coalescedCount.incrementAndGet();
+        joined.put(key, existing);
+        continue;
+      }
+      // the request may have been completed and released between the lookup and the claim
+      value = cache.apply(key);
+      if (value != null) {
+        hitCount.incrementAndGet();
+        inflight.remove(key, future);
+        future.complete(value);
+        ret.put(key, value);
+        continue;
+      }
+      owned.put(key, future);
+    }
+    if (!owned.isEmpty()) {
+      maxActiveLoaderCount.accumulateAndGet(activeLoaderCount.incrementAndGet(), Math::max);
+      batchCount.incrementAndGet();
+      loadedCount.addAndGet(owned.size());
+      Map<K, V> loaded;
+      try {
+        loaded = loader.load(new ArrayList<>(owned.keySet()));
+      } catch (Throwable t) {
+        // an error must also complete the futures, otherwise the joiners would wait forever
+        owned.forEach(inflight::remove);
+        owned.values().forEach(future -> future.completeExceptionally(t));
+        throw t;
+      } finally {
+        activeLoaderCount.decrementAndGet();
+      }
+      // the keys are released before the futures are completed, so that a caller that comes after
+      // the completion looks up the cache instead of joining a finished request
+      owned.forEach(inflight::remove);
+      owned.forEach((key, future) -> {
+        V value = loaded.get(key);
+        future.complete(value);
+        if (value != null) ret.put(key, value);
+      });
+    }
+    for (Map.Entry<K, CompletableFuture<V>> entry : joined.entrySet()) {
+      V value;
+      try {
+        value = entry.getValue().get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AnalysisEngineProcessException(e);
+      } catch (ExecutionException e) {
+        throw new AnalysisEngineProcessException(e.getCause());
+      }
+      if (value != null) ret.put(entry.getKey(), value);
+    }
+    return ret;
+  }
+
+  /**
+   * Records that a response has overwritten an existing cache entry, i.e. the same key has been
+   * requested from the remote service more than once.
+   */
+  public void recordDuplicate() {
+    duplicateCount.incrementAndGet();
+  }
+
+  public void report() {
+    LOG.info("[{}] {} keys requested, {} cache hits, {} coalesced into in-flight requests, {} "
+            + "loaded in {} batches, {} duplicate remote loads, {} max concurrent loaders.", name,
+            requestedCount.get(), hitCount.get(), coalescedCount.get(), loadedCount.get(),
+            batchCount.get(), duplicateCount.get(), maxActiveLoaderCount.get());
+  }
+
+}
@@ -18,17 +18,9 @@ import com.google.common.collect.*;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import edu.cmu.lti.oaqa.baseqa.providers.kb.ConceptProvider;
+import edu.cmu.lti.oaqa.bioqa.util.RecordReplay;
 import edu.cmu.lti.oaqa.ecd.config.ConfigurableProvider;
 import edu.cmu.lti.oaqa.type.kb.Concept;
-import org.apache.commons.io.IOUtils;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.ServiceUnavailableRetryStrategy;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.protocol.HttpContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
@@ -36,9 +28,7 @@ import org.apache.uima.resource.ResourceSpecifier;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
 import static java.util.stream.Collectors.toList;
 
@@ -80,6 +70,11 @@ import static java.util.stream.Collectors.toList;
  *     <li>
  *       <tt>Receive/</tt> method can only be called once.
  *     </li>
+ *     <li>
+ *       Requests are sent through a pooled asynchronous {@link TmToolTransport}, and the texts are
+ *       split into chunks of at most <tt>max-batch-size</tt> texts, which are submitted
+ *       concurrently (bounded by <tt>max-concurrency-per-trigger</tt>).
+ *     </li>
  *   </ul>
  * </p>
  *
@@ -91,22 +86,9 @@ public class TmToolConceptProvider extends ConfigurableProvider implements Conce
 
   protected Set<String> triggers = ImmutableSet.of("tmChem", "DNorm", "tmVar", "GNormPlus");
 
-  private static HttpClientBuilder clientBuilder = HttpClientBuilder.create()
-          .disableRedirectHandling()
-          .setServiceUnavailableRetryStrategy(new ServiceUnavailableRetryStrategy() {
+  private TmToolTransport transport;
 
-            @Override
-            public boolean retryRequest(HttpResponse response, int executionCount,
-                    HttpContext context) {
-              int statusCode = response.getStatusLine().getStatusCode();
-              return statusCode == 404 || statusCode == 501;
-            }
-
-            @Override
-            public long getRetryInterval() {
-              return 1000L;
-            }
-          });
+  private int maxBatchSize;
 
   private static Gson gson = new GsonBuilder().disableHtmlEscaping().create();
 
@@ -118,9 +100,25 @@ public class TmToolConceptProvider extends ConfigurableProvider implements Conce
     if (triggersParam != null) {
       setTriggers(ImmutableSet.copyOf((Iterable<String>) triggersParam));
     }
+    String urlPrefix = Optional.ofNullable((String) getParameterValue("url-prefix"))
+            .orElse(URL_PREFIX);
+    int maxConnections = getIntParameterValue("max-connections", 16);
+    int maxConcurrencyPerTrigger = getIntParameterValue("max-concurrency-per-trigger", 2);
+    int maxSubmitRetries = getIntParameterValue("max-submit-retries", 3);
+    long pollInitialInterval = getIntParameterValue("poll-initial-interval", 1000);
+    long pollMaxInterval = getIntParameterValue("poll-max-interval", 30000);
+    long timeout = TimeUnit.MINUTES.toMillis(getIntParameterValue("receive-timeout-minutes", 60));
+    transport = new TmToolTransport(urlPrefix, maxConnections, maxConcurrencyPerTrigger,
+            maxSubmitRetries, pollInitialInterval, pollMaxInterval, timeout);
+    maxBatchSize = getIntParameterValue("max-batch-size", 200);
     return ret;
   }
 
+  private int getIntParameterValue(String name, int defaultValue) {
+    Object value = getParameterValue(name);
+    return value == null ? defaultValue : Integer.class.cast(value);
+  }
+
   public void setTriggers(Set<String> triggers) {
     this.triggers = triggers;
   }
@@ -138,29 +136,25 @@ public class TmToolConceptProvider extends ConfigurableProvider implements Conce
     ListMultimap<Integer, PubAnnotation.Denotation> index2denotations = Multimaps
             .synchronizedListMultimap(ArrayListMultimap.create());
     ExecutorService es = Executors.newCachedThreadPool();
-    for (String trigger : triggers) {
-      es.submit(() -> {
-        try {
-          List<String> denotationStrings = requestConcepts(normalizedTexts, trigger);
-          assert denotationStrings.size() == jcases.size();
-          for (int i = 0; i < jcases.size(); i++)  {
-            PubAnnotation.Denotation[] denotations = gson
-                    .fromJson(denotationStrings.get(i), PubAnnotation.Denotation[].class);
-            index2denotations.putAll(i, Arrays.asList(denotations));
-          }
-        } catch (Exception e) {
-          throw TmToolConceptProviderException.unknownException(trigger, e);
-        }
-      });
-    }
+    List<CompletableFuture<Void>> futures = triggers.stream()
+            .map(trigger -> CompletableFuture.runAsync(() -> {
+              try {
+                List<String> denotationStrings = requestConcepts(normalizedTexts, trigger);
+                assert denotationStrings.size() == jcases.size();
+                for (int i = 0; i < jcases.size(); i++) {
+                  PubAnnotation.Denotation[] denotations = gson
+                          .fromJson(denotationStrings.get(i), PubAnnotation.Denotation[].class);
+                  index2denotations.putAll(i, Arrays.asList(denotations));
+                }
+              } catch (Exception e) {
+                throw TmToolConceptProviderException.unknownException(trigger, e);
+              }
+            }, es)).collect(toList());
     es.shutdown();
     try {
-      boolean status = es.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-      if (!status) {
-        throw new AnalysisEngineProcessException();
-      }
-    } catch (InterruptedException e) {
-      throw new AnalysisEngineProcessException(e);
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    } catch (CompletionException e) {
+      throw new AnalysisEngineProcessException(e.getCause());
     }
     // convert denotation strings
     List<Concept> concepts = new ArrayList<>();
@@ -179,18 +173,29 @@ public class TmToolConceptProvider extends ConfigurableProvider implements Conce
 
   protected List<String> requestConcepts(List<String> normalizedTexts, String trigger)
           throws AnalysisEngineProcessException {
-    PubAnnotation[] inputs = PubAnnotationConvertUtil.convertTextsToPubAnnotations(normalizedTexts);
-    String request = gson.toJson(inputs, PubAnnotation[].class);
-    String response;
-    try {
-      response = submitText(trigger, request);
-    } catch (IOException e) {
-      throw new AnalysisEngineProcessException(e);
+    // split oversized batches into chunks, which are submitted concurrently
+    List<List<String>> chunks = Lists.partition(normalizedTexts, maxBatchSize);
+    List<CompletableFuture<String>> responses = new ArrayList<>();
+    for (List<String> chunk : chunks) {
+      PubAnnotation[] inputs = PubAnnotationConvertUtil.convertTextsToPubAnnotations(chunk);
+      String request = gson.toJson(inputs, PubAnnotation[].class);
+      responses.add(RecordReplay.getInstance().callAsync("tmtool/" + trigger, request,
+              String.class, () -> transport.submit(trigger, request)));
+    }
+    List<PubAnnotation> sortedOutputs = new ArrayList<>();
+    for (CompletableFuture<String> response : responses) {
+      PubAnnotation[] outputs;
+      try {
+        outputs = gson.fromJson("[" + response.get() + "]", PubAnnotation[].class);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AnalysisEngineProcessException(e);
+      } catch (ExecutionException e) {
+        throw new AnalysisEngineProcessException(e.getCause());
+      }
+      Arrays.stream(outputs).sorted(Comparator.comparing(pa -> Integer.parseInt(pa.getSourceid())))
+              .forEachOrdered(sortedOutputs::add);
     }
-    PubAnnotation[] outputs = gson.fromJson("[" + response + "]", PubAnnotation[].class);
-    List<PubAnnotation> sortedOutputs = Arrays.stream(outputs)
-            .sorted(Comparator.comparing(pa -> Integer.parseInt(pa.getSourceid())))
-            .collect(toList());
     List<String> denotationStrings = sortedOutputs.stream().map(PubAnnotation::getDenotations)
             .map(gson::toJson).collect(toList());
     if (denotationStrings.size() != normalizedTexts.size()) {
@@ -210,15 +215,14 @@ public class TmToolConceptProvider extends ConfigurableProvider implements Conce
     return denotationStrings;
   }
 
-  private static String submitText(String trigger, String text) throws IOException {
-    CloseableHttpClient client = clientBuilder.build();
-    HttpPost post = new HttpPost(URL_PREFIX + trigger + "/Submit/");
-    post.setEntity(new StringEntity(text));
-    HttpResponse response = client.execute(post);
-    String session = IOUtils.toString(response.getEntity().getContent());
-    HttpGet get = new HttpGet(URL_PREFIX + session + "/Receive/");
-    response = client.execute(get);
-    return IOUtils.toString(response.getEntity().getContent());
+  @Override
+  public void destroy() {
+    super.destroy();
+    try {
+      transport.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
   }
 
 }
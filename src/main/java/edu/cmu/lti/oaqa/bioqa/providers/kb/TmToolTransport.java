@@ -0,0 +1,244 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.kb;
+
+import org.apache.http.Header;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * <p>
+ *   A shared HTTP transport for the <a href="https://www.ncbi.nlm.nih.gov/CBBresearch/Lu/Demo/tmTools/RESTfulAPIs.html">TmTool
+ *   Restful API</a> used by {@link TmToolConceptProvider}.
+ *   All the requests go through one pooled {@link CloseableHttpClient}, whose connections are kept
+ *   alive and reused across requests and triggers.
+ * </p>
+ * <p>
+ *   {@link #submit(String, String)} is asynchronous: it posts the text to the <tt>Submit/</tt>
+ *   endpoint, and then polls the <tt>Receive/</tt> endpoint, which responds with 404 or 501 until
+ *   the result is ready, on a scheduler with an exponential backoff (from
+ *   <tt>poll-initial-interval</tt> to <tt>poll-max-interval</tt> milliseconds), so no thread is
+ *   blocked while a request is being processed on the server.
+ *   The number of concurrent requests per trigger is bounded by
+ *   <tt>max-concurrency-per-trigger</tt>.
+ *   A submission rejected by the rate limit of the server (429) or while the server is
+ *   unavailable (503) is retried up to <tt>max-submit-retries</tt> times, with the same backoff,
+ *   or after the <tt>Retry-After</tt> delay if the server sends one.
+ * </p>
+ * <p>
+ *   The URL prefix can be set to a local stub server that implements the same Submit/Receive
+ *   protocol, i.e. <tt>POST {prefix}{trigger}/Submit/</tt> returns a session id, and
+ *   <tt>GET {prefix}{session}/Receive/</tt> returns the concatenated PubAnnotation objects, e.g.
+ *   <tt>TmToolStubServer</tt> in the test sources.
+ * </p>
+ *
+ * @see TmToolConceptProvider
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class TmToolTransport implements Closeable {
+
+  private final String urlPrefix;
+
+  private final int maxConcurrencyPerTrigger;
+
+  private final int maxSubmitRetries;
+
+  private final long pollInitialInterval;
+
+  private final long pollMaxInterval;
+
+  private final long timeout;
+
+  private final PoolingHttpClientConnectionManager connectionManager;
+
+  private final CloseableHttpClient client;
+
+  private final ScheduledExecutorService scheduler;
+
+  private final Map<String, Semaphore> trigger2permits = new ConcurrentHashMap<>();
+
+  private static final Logger LOG = LoggerFactory.getLogger(TmToolTransport.class);
+
+  public TmToolTransport(String urlPrefix, int maxConnections, int maxConcurrencyPerTrigger,
+          int maxSubmitRetries, long pollInitialInterval, long pollMaxInterval, long timeout) {
+    this.urlPrefix = urlPrefix;
+    this.maxConcurrencyPerTrigger = maxConcurrencyPerTrigger;
+    this.maxSubmitRetries = maxSubmitRetries;
+    this.pollInitialInterval = pollInitialInterval;
+    this.pollMaxInterval = pollMaxInterval;
+    this.timeout = timeout;
+    connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnections);
+    RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(30000)
+            .setSocketTimeout(300000).build();
+    client = HttpClients.custom().setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig).disableRedirectHandling().build();
+    scheduler = Executors.newScheduledThreadPool(maxConnections, r -> {
+      Thread thread = new Thread(r, "tmtool-transport");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Submits the text to the trigger, and returns a future of the response, which completes
+   * exceptionally if the request fails or the result is not ready after the timeout.
+   * The caller is blocked if there are already <tt>max-concurrency-per-trigger</tt> requests of
+   * the same trigger in flight.
+   */
+  public CompletableFuture<String> submit(String trigger, String text) {
+    Semaphore permits = trigger2permits
+            .computeIfAbsent(trigger, t -> new Semaphore(maxConcurrencyPerTrigger));
+    CompletableFuture<String> future = new CompletableFuture<>();
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.completeExceptionally(e);
+      return future;
+    }
+    future.whenComplete((response, throwable) -> permits.release());
+    long deadline = System.currentTimeMillis() + timeout;
+    scheduler.execute(() -> submit(trigger, text, pollInitialInterval, 0, deadline, future));
+    return future;
+  }
+
+  private void submit(String trigger, String text, long interval, int retries, long deadline,
+          CompletableFuture<String> future) {
+    String session;
+    try {
+      session = post(urlPrefix + trigger + "/Submit/", text);
+    } catch (RetryableSubmitException e) {
+      long delay = Math.max(interval, e.retryAfter);
+      if (retries >= maxSubmitRetries || System.currentTimeMillis() + delay > deadline) {
+        future.completeExceptionally(e);
+        return;
+      }
+      LOG.info("Submit to [{}] rejected ({}), retry {}/{} in {} ms.", trigger, e.getMessage(),
+              retries + 1, maxSubmitRetries, delay);
+      long nextInterval = Math.min(interval * 3 / 2, pollMaxInterval);
+      scheduler.schedule(() -> submit(trigger, text, nextInterval, retries + 1, deadline, future),
+              delay, TimeUnit.MILLISECONDS);
+      return;
+    } catch (IOException | RuntimeException e) {
+      future.completeExceptionally(e);
+      return;
+    }
+    LOG.debug("Submitted to [{}] with session {}.", trigger, session);
+    poll(session, pollInitialInterval, deadline, future);
+  }
+
+  private void poll(String session, long interval, long deadline,
+          CompletableFuture<String> future) {
+    String response;
+    try {
+      response = get(urlPrefix + session + "/Receive/");
+    } catch (IOException | RuntimeException e) {
+      future.completeExceptionally(e);
+      return;
+    }
+    if (response != null) {
+      future.complete(response);
+    } else if (System.currentTimeMillis() + interval > deadline) {
+      future.completeExceptionally(new TimeoutException("Result not ready for " + session));
+    } else {
+      long nextInterval = Math.min(interval * 3 / 2, pollMaxInterval);
+      scheduler.schedule(() -> poll(session, nextInterval, deadline, future), interval,
+              TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private String post(String url, String text) throws IOException {
+    HttpPost post = new HttpPost(url);
+    post.setEntity(new StringEntity(text));
+    try (CloseableHttpResponse response = client.execute(post)) {
+      String content = EntityUtils.toString(response.getEntity());
+      int statusCode = response.getStatusLine().getStatusCode();
+      if (statusCode == 429 || statusCode == 503) {
+        throw new RetryableSubmitException(statusCode,
+                getRetryAfter(response.getFirstHeader("Retry-After")));
+      }
+      if (statusCode != 200) {
+        throw new IOException("Submit failed with status " + statusCode + ": " + content);
+      }
+      return content.trim();
+    }
+  }
+
+  /**
+   * @return the delay in milliseconds, or 0 if absent or given as an HTTP date
+   */
+  private static long getRetryAfter(Header header) {
+    if (header == null) return 0;
+    try {
+      return TimeUnit.SECONDS.toMillis(Long.parseLong(header.getValue().trim()));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * @return the content, or <tt>null</tt> if the result is not ready
+   */
+  private String get(String url) throws IOException {
+    try (CloseableHttpResponse response = client.execute(new HttpGet(url))) {
+      // consume the entity so that the connection is returned to the pool
+      String content = EntityUtils.toString(response.getEntity());
+      int statusCode = response.getStatusLine().getStatusCode();
+      if (statusCode == 404 || statusCode == 501) return null;
+      if (statusCode != 200) {
+        throw new IOException("Receive failed with status " + statusCode + ": " + content);
+      }
+      return content;
+    }
+  }
+
+  private static class RetryableSubmitException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    final long retryAfter;
+
+    RetryableSubmitException(int statusCode, long retryAfter) {
+      super("status " + statusCode);
+      this.retryAfter = retryAfter;
+    }
+
+  }
+
+  @Override
+  public void close() throws IOException {
+    scheduler.shutdownNow();
+    client.close();
+    connectionManager.close();
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.kb;
+
+import java.util.Arrays;
+
+/**
+ * A cache entry of {@link CachedUtsConceptSearchProvider}, which holds the preferred name, the
+ * concept ID, and the semantic types of a concept search result.
+ * Semantic types are not stored as strings, but as indexes into a semantic type table that is
+ * shared by all the entries in the same cache file (see
+ * {@link CachedUtsConceptSearchProvider#internType(String, String, String)}).
+ * A negative entry is used to record that the search returned nothing, and an error entry is used
+ * to record that the search failed, together with the time to retry (see {@link KbCachePolicy}).
+ *
+ * @see UtsConceptSearchCacheSerializer
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public final class UtsConceptSearchCacheEntry {
+
+  public enum Kind {POSITIVE, NEGATIVE, ERROR}
+
+  private static final int[] NO_TYPES = new int[0];
+
+  private final Kind kind;
+
+  private final String name;
+
+  private final String id;
+
+  private final int[] typeIndexes;
+
+  private final long timestamp;
+
+  private UtsConceptSearchCacheEntry(Kind kind, String name, String id, int[] typeIndexes,
+          long timestamp) {
+    this.kind = kind;
+    this.name = name;
+    this.id = id;
+    this.typeIndexes = typeIndexes;
+    this.timestamp = timestamp;
+  }
+
+  public UtsConceptSearchCacheEntry(String name, String id, int[] typeIndexes) {
+    this(Kind.POSITIVE, name, id, typeIndexes, 0);
+  }
+
+  /**
+   * @param createdAt the time the negative result was received, or 0 if unknown
+   */
+  public static UtsConceptSearchCacheEntry negative(long createdAt) {
+    return new UtsConceptSearchCacheEntry(Kind.NEGATIVE, null, null, NO_TYPES, createdAt);
+  }
+
+  public static UtsConceptSearchCacheEntry error(long retryAfter) {
+    return new UtsConceptSearchCacheEntry(Kind.ERROR, null, null, NO_TYPES, retryAfter);
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  public boolean isNegative() {
+    return kind == Kind.NEGATIVE;
+  }
+
+  public boolean isError() {
+    return kind == Kind.ERROR;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public int[] getTypeIndexes() {
+    return typeIndexes;
+  }
+
+  /**
+   * @return the creation time of a negative entry, or the retry time of an error entry
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  @Override
+  public String toString() {
+    switch (kind) {
+      case NEGATIVE:
+        return "NEGATIVE@" + timestamp;
+      case ERROR:
+        return "ERROR@" + timestamp;
+      default:
+        return name + " (" + id + ") " + Arrays.toString(typeIndexes);
+    }
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.kb;
+
+import org.mapdb.Serializer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * <p>
+ *   A fixed-layout MapDB {@link Serializer} for {@link UtsConceptSearchCacheEntry}, which replaces
+ *   the default POJO serialization of the <tt>Map&lt;String, Object&gt;</tt> values previously used
+ *   by {@link CachedUtsConceptSearchProvider}.
+ * </p>
+ * <p>
+ *   Layout (version 3):
+ *   <pre>
+ *     byte    version
+ *     byte    flags (bit 0: negative, bit 1: has id, bit 2: error, bit 3: has name)
+ *     long    creation time if negative, or retry time if error (absent if positive)
+ *     UTF     name             (absent if negative, error, or no name)
+ *     UTF     id               (absent if negative, error, or no id)
+ *     varint  number of types  (absent if negative or error)
+ *     varint* type indexes     (absent if negative or error)
+ *   </pre>
+ *   Version 1 entries, which have no timestamp and no error flag, can still be read, and their
+ *   negative entries are treated as created at an unknown time.
+ *   Version 1 and 2 positive entries always have a name.
+ * </p>
+ *
+ * @see UtsConceptSearchCacheEntry
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class UtsConceptSearchCacheSerializer
+        implements Serializer<UtsConceptSearchCacheEntry>, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  static final byte VERSION = 3;
+
+  private static final int FLAG_NEGATIVE = 1;
+
+  private static final int FLAG_HAS_ID = 1 << 1;
+
+  private static final int FLAG_ERROR = 1 << 2;
+
+  private static final int FLAG_HAS_NAME = 1 << 3;
+
+  @Override
+  public void serialize(DataOutput out, UtsConceptSearchCacheEntry value) throws IOException {
+    out.writeByte(VERSION);
+    if (value.isNegative() || value.isError()) {
+      out.writeByte(value.isNegative() ? FLAG_NEGATIVE : FLAG_ERROR);
+      out.writeLong(value.getTimestamp());
+      return;
+    }
+    out.writeByte((value.getId() == null ? 0 : FLAG_HAS_ID)
+            | (value.getName() == null ? 0 : FLAG_HAS_NAME));
+    if (value.getName() != null) {
+      out.writeUTF(value.getName());
+    }
+    if (value.getId() != null) {
+      out.writeUTF(value.getId());
+    }
+    int[] typeIndexes = value.getTypeIndexes();
+    writeVarInt(out, typeIndexes.length);
+    for (int typeIndex : typeIndexes) {
+      writeVarInt(out, typeIndex);
+    }
+  }
+
+  @Override
+  public UtsConceptSearchCacheEntry deserialize(DataInput in, int available) throws IOException {
+    byte version = in.readByte();
+    if (version < 1 || version > VERSION) {
+      throw new IOException("Unsupported UTS concept search cache entry version: " + version);
+    }
+    int flags = in.readByte();
+    if ((flags & FLAG_NEGATIVE) != 0) {
+      return UtsConceptSearchCacheEntry.negative(version == 1 ? 0 : in.readLong());
+    }
+    if ((flags & FLAG_ERROR) != 0) {
+      return UtsConceptSearchCacheEntry.error(in.readLong());
+    }
+    String name = version < 3 || (flags & FLAG_HAS_NAME) != 0 ? in.readUTF() : null;
+    String id = (flags & FLAG_HAS_ID) != 0 ? in.readUTF() : null;
+    int[] typeIndexes = new int[readVarInt(in)];
+    for (int i = 0; i < typeIndexes.length; i++) {
+      typeIndexes[i] = readVarInt(in);
+    }
+    return new UtsConceptSearchCacheEntry(name, id, typeIndexes);
+  }
+
+  @Override
+  public int fixedSize() {
+    return -1;
+  }
+
+  private static void writeVarInt(DataOutput out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static int readVarInt(DataInput in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) return value;
+    }
+    throw new IOException("Malformed varint.");
+  }
+
+}
@@ -14,10 +14,20 @@
 
 package edu.cmu.lti.oaqa.bioqa.providers.kb;
 
+import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.factory.JCasFactory;
@@ -25,7 +35,10 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.ResourceSpecifier;
 
+import com.google.gson.reflect.TypeToken;
 import edu.cmu.lti.oaqa.baseqa.providers.kb.ConceptSearchProvider;
+import edu.cmu.lti.oaqa.bioqa.util.RecordReplay;
+import edu.cmu.lti.oaqa.bioqa.util.StringPool;
 import edu.cmu.lti.oaqa.ecd.config.ConfigurableProvider;
 import edu.cmu.lti.oaqa.type.kb.Concept;
 import edu.cmu.lti.oaqa.type.kb.ConceptType;
@@ -51,6 +64,25 @@ import gov.nih.nlm.uts.webservice.semnet.UtsWsSemanticNetworkControllerImplServi
  * <tt>search type</tt>s in a fixed order: <tt>exact</tt>, <tt>words</tt>,
  * <tt>normalizedString</tt>.
  * If nothing is returned after all, a <tt>None</tt> will be returned.
+ * <p>
+ * To reduce the number of round trips per search, the <tt>getConcept</tt> requests for the hits
+ * are sent in parallel (up to <tt>nthreads</tt>), the semantic types, which come from the small and
+ * static UMLS semantic network, are looked up once and kept in an in-process table (bounded by
+ * <tt>max-semantic-types</tt>), and the single-use tickets are prefetched on demand by a
+ * {@link UtsTicketPool} (of size <tt>ticket-pool-size</tt>).
+ * The remote calls only fetch the DTOs, and the {@link Concept}s are created on the calling thread.
+ * </p>
+ * <p>
+ * If <tt>speculative-search</tt> is enabled, all the search types of the cascade are requested in
+ * parallel, and the first non-empty result in the priority order is taken, after which the
+ * remaining requests are cancelled.
+ * If <tt>prior-min-observations</tt> is positive, the search types that have never succeeded first
+ * for strings of the same shape are skipped (see {@link UtsSearchTypePrior}), unless all the other
+ * search types have returned nothing, so that a negative result is always that of the full
+ * cascade.
+ * A batch of strings ({@link #search(JCas, Collection)}) is looked up in parallel, up to
+ * <tt>batch-nthreads</tt> strings at a time.
+ * </p>
  *
  * @see UtsSynonymExpansionProvider
  * @see CachedUtsConceptSearchProvider
@@ -64,9 +96,7 @@ public class UtsConceptSearchProvider extends ConfigurableProvider
 
   private String version;
 
-  private String grantTicket;
-
-  private UtsWsSecurityController securityService;
+  private UtsTicketPool ticketPool;
 
   private UtsWsFinderController finderService;
 
@@ -76,7 +106,35 @@ public class UtsConceptSearchProvider extends ConfigurableProvider
 
   private static final String FINDER_TARGET = "atom";
 
-  private static final int MAX_RETRY = 5;
+  private static final int DEFAULT_NTHREADS = 8;
+
+  private static final int DEFAULT_BATCH_NTHREADS = 8;
+
+  private static final int DEFAULT_TICKET_POOL_SIZE = 16;
+
+  private static final Type UI_LABELS_TYPE = new TypeToken<List<UiLabel>>() {}.getType();
+
+  private static final int DEFAULT_MAX_SEMANTIC_TYPES = 1024;
+
+  // a proxy ticket expires in 5 minutes
+  private static final long TICKET_MAX_AGE = TimeUnit.MINUTES.toMillis(4);
+
+  private ExecutorService es;
+
+  private Map<String, SemanticTypeDTO> id2semanticType = new ConcurrentHashMap<>();
+
+  private int maxSemanticTypes = DEFAULT_MAX_SEMANTIC_TYPES;
+
+  private static final String[] CASCADE_SEARCH_TYPES = {"exact", "words", "words",
+          "normalizedString"};
+
+  private boolean speculativeSearch;
+
+  private ExecutorService cascadeEs;
+
+  private ExecutorService batchEs;
+
+  private UtsSearchTypePrior prior = new UtsSearchTypePrior(CASCADE_SEARCH_TYPES.length, 0);
 
   @Override
   public boolean initialize(ResourceSpecifier aSpecifier, Map<String, Object> aAdditionalParams)
@@ -84,19 +142,26 @@ public class UtsConceptSearchProvider extends ConfigurableProvider
     boolean ret = super.initialize(aSpecifier, aAdditionalParams);
     this.service = String.class.cast(getParameterValue("service"));
     this.version = String.class.cast(getParameterValue("version"));
-    securityService = (new UtsWsSecurityControllerImplService())
-            .getUtsWsSecurityControllerImplPort();
     String username = String.class.cast(getParameterValue("username"));
     String password = String.class.cast(getParameterValue("password"));
+    int nthreads = Optional.ofNullable((Integer) getParameterValue("nthreads"))
+            .orElse(DEFAULT_NTHREADS);
+    int ticketPoolSize = Optional.ofNullable((Integer) getParameterValue("ticket-pool-size"))
+            .orElse(DEFAULT_TICKET_POOL_SIZE);
+    int batchNthreads = Optional.ofNullable((Integer) getParameterValue("batch-nthreads"))
+            .orElse(DEFAULT_BATCH_NTHREADS);
+    maxSemanticTypes = Optional.ofNullable((Integer) getParameterValue("max-semantic-types"))
+            .orElse(DEFAULT_MAX_SEMANTIC_TYPES);
+    speculativeSearch = Optional.ofNullable((Boolean) getParameterValue("speculative-search"))
+            .orElse(false);
+    int priorMinObservations = Optional
+            .ofNullable((Integer) getParameterValue("prior-min-observations")).orElse(0);
+    prior = new UtsSearchTypePrior(CASCADE_SEARCH_TYPES.length, priorMinObservations);
     try {
-      grantTicket = securityService.getProxyGrantTicket(username, password);
+      createServices(username, password, nthreads, ticketPoolSize, batchNthreads);
     } catch (UtsFault_Exception e) {
       throw new ResourceInitializationException(e);
     }
-    finderService = (new UtsWsFinderControllerImplService()).getUtsWsFinderControllerImplPort();
-    contentService = (new UtsWsContentControllerImplService()).getUtsWsContentControllerImplPort();
-    semanticNetworkService = (new UtsWsSemanticNetworkControllerImplService())
-            .getUtsWsSemanticNetworkControllerImplPort();
     return ret;
   }
 
@@ -107,85 +172,259 @@ public class UtsConceptSearchProvider extends ConfigurableProvider
           throws gov.nih.nlm.uts.webservice.security.UtsFault_Exception {
     this.service = service;
     this.version = version;
-    securityService = (new UtsWsSecurityControllerImplService())
-            .getUtsWsSecurityControllerImplPort();
-    grantTicket = securityService.getProxyGrantTicket(username, password);
-    finderService = (new UtsWsFinderControllerImplService()).getUtsWsFinderControllerImplPort();
-    contentService = (new UtsWsContentControllerImplService()).getUtsWsContentControllerImplPort();
-    semanticNetworkService = (new UtsWsSemanticNetworkControllerImplService())
-            .getUtsWsSemanticNetworkControllerImplPort();
+    createServices(username, password, DEFAULT_NTHREADS, DEFAULT_TICKET_POOL_SIZE,
+            DEFAULT_BATCH_NTHREADS);
+  }
+
+  private void createServices(String username, String password, int nthreads, int ticketPoolSize,
+          int batchNthreads) throws UtsFault_Exception {
+    // the services are not connected if the calls are replayed by RecordReplay
+    if (!RecordReplay.getInstance().isReplaying()) {
+      UtsWsSecurityController securityService = (new UtsWsSecurityControllerImplService())
+              .getUtsWsSecurityControllerImplPort();
+      String grantTicket = securityService.getProxyGrantTicket(username, password);
+      ticketPool = new UtsTicketPool(securityService, grantTicket, service, ticketPoolSize,
+              TICKET_MAX_AGE);
+      finderService = (new UtsWsFinderControllerImplService()).getUtsWsFinderControllerImplPort();
+      contentService = (new UtsWsContentControllerImplService())
+              .getUtsWsContentControllerImplPort();
+      semanticNetworkService = (new UtsWsSemanticNetworkControllerImplService())
+              .getUtsWsSemanticNetworkControllerImplPort();
+    }
+    es = Executors.newFixedThreadPool(nthreads, r -> {
+      Thread thread = new Thread(r, "uts-concept-search");
+      thread.setDaemon(true);
+      return thread;
+    });
+    cascadeEs = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "uts-search-cascade");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // the batch searches wait for the getConcept requests on es, so they need their own pool
+    batchEs = Executors.newFixedThreadPool(batchNthreads, r -> {
+      Thread thread = new Thread(r, "uts-concept-search-batch");
+      thread.setDaemon(true);
+      return thread;
+    });
   }
 
   @Override
   public Optional<Concept> search(JCas jcas, String string) throws AnalysisEngineProcessException {
-    Optional<Concept> optional = search(jcas, string, "exact");
-    if (!optional.isPresent()) {
-      int index = string.indexOf(" (");
-      if (index > 0) {
-        optional = search(jcas, string.substring(0, index), "words");
+    Optional<ConceptDTO> conceptDto = findConcept(string);
+    if (!conceptDto.isPresent()) return Optional.empty();
+    return createConcepts(jcas, Collections.singletonList(conceptDto.get())).stream().findFirst();
+  }
+
+  /**
+   * Looks up the strings in parallel (up to <tt>batch-nthreads</tt>), each of which goes through
+   * the same cascade as {@link #search(JCas, String)}, and creates the {@link Concept}s on the
+   * calling thread.
+   */
+  @Override
+  public Map<String, Optional<Concept>> search(JCas jcas, Collection<String> strings)
+          throws AnalysisEngineProcessException {
+    Map<String, Future<Optional<ConceptDTO>>> string2future = new LinkedHashMap<>();
+    for (String string : strings) {
+      if (!string2future.containsKey(string)) {
+        string2future.put(string, batchEs.submit(() -> findConcept(string)));
+      }
+    }
+    Map<String, Optional<Concept>> string2concept = new LinkedHashMap<>();
+    try {
+      for (Map.Entry<String, Future<Optional<ConceptDTO>>> entry : string2future.entrySet()) {
+        Optional<ConceptDTO> conceptDto = entry.getValue().get();
+        string2concept.put(entry.getKey(), conceptDto.isPresent() ?
+                createConcepts(jcas, Collections.singletonList(conceptDto.get())).stream()
+                        .findFirst() : Optional.empty());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AnalysisEngineProcessException(e);
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof AnalysisEngineProcessException ?
+              (AnalysisEngineProcessException) e.getCause() :
+              new AnalysisEngineProcessException(e.getCause());
+    } finally {
+      string2future.values().forEach(future -> future.cancel(true));
+    }
+    return string2concept;
+  }
+
+  /**
+   * Tries the search types of the cascade, and returns the first hit, without creating any
+   * {@link Concept}, so that it can be called from any thread.
+   */
+  private Optional<ConceptDTO> findConcept(String string) throws AnalysisEngineProcessException {
+    // the strings to search for at each step of the cascade, or null if the step is not applicable
+    String[] strings = new String[CASCADE_SEARCH_TYPES.length];
+    strings[0] = string;
+    int index = string.indexOf(" (");
+    if (index > 0) {
+      strings[1] = string.substring(0, index);
+    }
+    strings[2] = string;
+    strings[3] = string;
+    String shape = UtsSearchTypePrior.getShape(string);
+    String[] skippedStrings = new String[strings.length];
+    boolean pruned = false;
+    for (int step = 0; step < strings.length; step++) {
+      if (strings[step] != null && prior.shouldSkip(shape, step)) {
+        skippedStrings[step] = strings[step];
+        strings[step] = null;
+        pruned = true;
+      }
+    }
+    Optional<ConceptDTO> conceptDto = findConcept(strings, shape);
+    if (!conceptDto.isPresent() && pruned) {
+      // a negative result is cached (by CachedUtsConceptSearchProvider) as if the string is not in
+      // UMLS, so it is only returned after the skipped steps have also been tried
+      conceptDto = findConcept(skippedStrings, shape);
+    }
+    if (!conceptDto.isPresent()) {
+      prior.record(shape, -1);
+    }
+    return conceptDto;
+  }
+
+  /**
+   * Tries the given steps of the cascade, where the inapplicable or skipped steps are
+   * <tt>null</tt>, and records the first step that succeeds in the prior.
+   */
+  private Optional<ConceptDTO> findConcept(String[] strings, String shape)
+          throws AnalysisEngineProcessException {
+    if (speculativeSearch) {
+      return findConceptSpeculatively(strings, shape);
+    }
+    for (int step = 0; step < strings.length; step++) {
+      if (strings[step] == null) continue;
+      List<ConceptDTO> conceptDtos = fetchConcepts(strings[step], CASCADE_SEARCH_TYPES[step], 1);
+      if (!conceptDtos.isEmpty()) {
+        prior.record(shape, step);
+        return Optional.of(conceptDtos.get(0));
       }
     }
-    if (!optional.isPresent()) {
-      optional = search(jcas, string, "words");
+    return Optional.empty();
+  }
+
+  private Optional<ConceptDTO> findConceptSpeculatively(String[] strings, String shape)
+          throws AnalysisEngineProcessException {
+    List<Future<List<ConceptDTO>>> futures = new ArrayList<>();
+    for (int step = 0; step < strings.length; step++) {
+      String stepString = strings[step];
+      String searchType = CASCADE_SEARCH_TYPES[step];
+      futures.add(stepString == null ? null :
+              cascadeEs.submit(() -> fetchConcepts(stepString, searchType, 1)));
     }
-    if (!optional.isPresent()) {
-      optional = search(jcas, string, "normalizedString");
+    try {
+      for (int step = 0; step < futures.size(); step++) {
+        if (futures.get(step) == null) continue;
+        List<ConceptDTO> conceptDtos = futures.get(step).get();
+        if (!conceptDtos.isEmpty()) {
+          prior.record(shape, step);
+          return Optional.of(conceptDtos.get(0));
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AnalysisEngineProcessException(e);
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof AnalysisEngineProcessException ?
+              (AnalysisEngineProcessException) e.getCause() :
+              new AnalysisEngineProcessException(e.getCause());
+    } finally {
+      futures.stream().filter(future -> future != null)
+              .forEach(future -> future.cancel(true));
     }
-    return optional;
+    return Optional.empty();
   }
 
   @Override
   public List<Concept> search(JCas jcas, String string, String searchType, int hits)
           throws AnalysisEngineProcessException {
-    List<UiLabel> results;
+    return createConcepts(jcas, fetchConcepts(string, searchType, hits));
+  }
+
+  private List<ConceptDTO> fetchConcepts(String string, String searchType, int hits)
+          throws AnalysisEngineProcessException {
+    List<UiLabel> results = RecordReplay.getInstance().call("uts/findConcepts",
+            version + "\t" + searchType + "\t" + hits + "\t" + string, UI_LABELS_TYPE, () -> {
+              try {
+                return finderService.findConcepts(getSingleUseTicket(), version, FINDER_TARGET,
+                        string, searchType, createFinderPsf(hits));
+              } catch (gov.nih.nlm.uts.webservice.finder.UtsFault_Exception
+                      | UtsFault_Exception e) {
+                throw new AnalysisEngineProcessException(e);
+              }
+            });
+    // fetch the concepts in parallel
+    List<Future<ConceptDTO>> futures = new ArrayList<>();
+    for (UiLabel result : results) {
+      futures.add(es.submit(() -> RecordReplay.getInstance().call("uts/getConcept",
+              version + "\t" + result.getUi(), ConceptDTO.class,
+              () -> contentService.getConcept(getSingleUseTicket(), version, result.getUi()))));
+    }
+    List<ConceptDTO> conceptDtos = new ArrayList<>();
     try {
-      results = finderService.findConcepts(getSingleUseTicket(), version, FINDER_TARGET, string,
-              searchType, createFinderPsf(hits));
-    } catch (gov.nih.nlm.uts.webservice.finder.UtsFault_Exception | UtsFault_Exception e) {
+      for (Future<ConceptDTO> future : futures) {
+        conceptDtos.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      futures.forEach(future -> future.cancel(true));
+      Thread.currentThread().interrupt();
       throw new AnalysisEngineProcessException(e);
+    } catch (ExecutionException e) {
+      futures.forEach(future -> future.cancel(true));
+      throw new AnalysisEngineProcessException(e.getCause());
     }
+    return conceptDtos;
+  }
+
+  /**
+   * Creates the {@link Concept}s from the DTOs, which should be called on the thread that owns the
+   * {@link JCas}.
+   */
+  private List<Concept> createConcepts(JCas jcas, List<ConceptDTO> conceptDtos)
+          throws AnalysisEngineProcessException {
     List<Concept> concepts = new ArrayList<>();
-    for (UiLabel result : results) {
-      ConceptDTO concept;
-      try {
-        concept = contentService.getConcept(getSingleUseTicket(), version, result.getUi());
-      } catch (gov.nih.nlm.uts.webservice.content.UtsFault_Exception | UtsFault_Exception e) {
-        throw new AnalysisEngineProcessException(e);
-      }
+    for (ConceptDTO concept : conceptDtos) {
       List<ConceptType> types = new ArrayList<>();
       for (String semanticTypeId : concept.getSemanticTypes()) {
-        SemanticTypeDTO semType;
-        try {
-          semType = semanticNetworkService.getSemanticType(getSingleUseTicket(), version,
-                  semanticTypeId);
-        } catch (gov.nih.nlm.uts.webservice.semnet.UtsFault_Exception | UtsFault_Exception e) {
-          throw new AnalysisEngineProcessException(e);
-        }
-        types.add(TypeFactory
-                .createConceptType(jcas, "umls:" + semType.getUi(), "umls:" + semType.getValue(),
-                        "umls:" + semType.getAbbreviation()));
+        SemanticTypeDTO semType = getSemanticType(semanticTypeId);
+        types.add(TypeFactory.createConceptType(jcas, StringPool.of("umls:" + semType.getUi()),
+                StringPool.of("umls:" + semType.getValue()),
+                StringPool.of("umls:" + semType.getAbbreviation())));
       }
-      concepts.add(TypeFactory.createConcept(jcas, concept.getDefaultPreferredName(),
-              "UMLS:" + concept.getUi(), types));
+      concepts.add(TypeFactory.createConcept(jcas,
+              StringPool.of(concept.getDefaultPreferredName()),
+              StringPool.of("UMLS:" + concept.getUi()), types));
     }
     return concepts;
   }
 
+  private SemanticTypeDTO getSemanticType(String semanticTypeId)
+          throws AnalysisEngineProcessException {
+    SemanticTypeDTO semType = id2semanticType.get(semanticTypeId);
+    if (semType != null) return semType;
+    semType = RecordReplay.getInstance().call("uts/getSemanticType",
+            version + "\t" + semanticTypeId, SemanticTypeDTO.class, () -> {
+              try {
+                return semanticNetworkService.getSemanticType(getSingleUseTicket(), version,
+                        semanticTypeId);
+              } catch (gov.nih.nlm.uts.webservice.semnet.UtsFault_Exception
+                      | UtsFault_Exception e) {
+                throw new AnalysisEngineProcessException(e);
+              }
+            });
+    if (id2semanticType.size() < maxSemanticTypes) {
+      id2semanticType.put(semanticTypeId, semType);
+    }
+    return semType;
+  }
+
   private String getSingleUseTicket()
           throws gov.nih.nlm.uts.webservice.security.UtsFault_Exception {
-    int retries = 0;
-    while (true) {
-      try {
-        return securityService.getProxyTicket(grantTicket, service);
-      } catch (gov.nih.nlm.uts.webservice.security.UtsFault_Exception e) {
-        if (++retries == MAX_RETRY) throw e;
-        try {
-          Thread.sleep(5000);
-        } catch (InterruptedException e1) {
-          e1.printStackTrace();
-        }
-      }
-    }
+    return ticketPool.take();
   }
 
   private static gov.nih.nlm.uts.webservice.finder.Psf createFinderPsf(int hits) {
@@ -194,6 +433,17 @@ public class UtsConceptSearchProvider extends ConfigurableProvider
     return psf;
   }
 
+  @Override
+  public void destroy() {
+    super.destroy();
+    es.shutdownNow();
+    cascadeEs.shutdownNow();
+    batchEs.shutdownNow();
+    if (ticketPool != null) {
+      ticketPool.close();
+    }
+  }
+
   public static void main(String[] args) throws Exception {
     UtsConceptSearchProvider service = new UtsConceptSearchProvider(args[0], args[1], args[2],
             args[3]);
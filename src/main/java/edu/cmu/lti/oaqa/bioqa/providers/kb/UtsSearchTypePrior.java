@@ -0,0 +1,95 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.kb;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * <p>
+ *   A learned prior over the steps of the search type cascade of {@link UtsConceptSearchProvider},
+ *   which counts, for each string shape (e.g. whether the string contains a parenthesized suffix,
+ *   digits, only upper case letters, and how many tokens it has), which step has returned the
+ *   first non-empty result, or that none has.
+ * </p>
+ * <p>
+ *   Once a shape has been observed <tt>minObservations</tt> times, a step that has never been the
+ *   first to succeed for the shape is skipped, except for every <tt>minObservations</tt>-th search
+ *   of the shape, which runs the full cascade so that the prior keeps learning.
+ *   The skipped steps are still tried if none of the other steps has succeeded, since a negative
+ *   result is cached.
+ *   The prior is disabled if <tt>minObservations</tt> is not positive.
+ * </p>
+ *
+ * @see UtsConceptSearchProvider
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+class UtsSearchTypePrior {
+
+  private final int numSteps;
+
+  private final int minObservations;
+
+  // the last element counts the searches that none of the steps has succeeded
+  private final Map<String, AtomicIntegerArray> shape2counts = new ConcurrentHashMap<>();
+
+  UtsSearchTypePrior(int numSteps, int minObservations) {
+    this.numSteps = numSteps;
+    this.minObservations = minObservations;
+  }
+
+  static String getShape(String string) {
+    boolean paren = string.contains(" (");
+    boolean digit = false;
+    boolean lower = false;
+    int tokens = 1;
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      if (Character.isDigit(c)) {
+        digit = true;
+      } else if (Character.isLowerCase(c)) {
+        lower = true;
+      } else if (Character.isWhitespace(c)) {
+        tokens++;
+      }
+    }
+    return (paren ? "P" : "-") + (digit ? "D" : "-") + (lower ? "-" : "U")
+            + Math.min(tokens, 3);
+  }
+
+  boolean shouldSkip(String shape, int step) {
+    if (minObservations <= 0) return false;
+    AtomicIntegerArray counts = shape2counts.get(shape);
+    if (counts == null) return false;
+    int observations = 0;
+    for (int i = 0; i <= numSteps; i++) {
+      observations += counts.get(i);
+    }
+    return observations >= minObservations && observations % minObservations != 0
+            && counts.get(step) == 0;
+  }
+
+  /**
+   * @param step the step that has returned the first non-empty result, or <tt>-1</tt> if none
+   */
+  void record(String shape, int step) {
+    if (minObservations <= 0) return;
+    shape2counts.computeIfAbsent(shape, s -> new AtomicIntegerArray(numSteps + 1))
+            .incrementAndGet(step < 0 ? numSteps : step);
+  }
+
+}
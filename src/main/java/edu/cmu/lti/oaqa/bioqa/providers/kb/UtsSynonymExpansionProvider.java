@@ -16,7 +16,9 @@ package edu.cmu.lti.oaqa.bioqa.providers.kb;
 
 import static java.util.stream.Collectors.toSet;
 
+import java.lang.reflect.Type;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -28,7 +30,9 @@ import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.ResourceSpecifier;
 
+import com.google.gson.reflect.TypeToken;
 import edu.cmu.lti.oaqa.baseqa.providers.kb.SynonymExpansionProvider;
+import edu.cmu.lti.oaqa.bioqa.util.RecordReplay;
 import edu.cmu.lti.oaqa.ecd.config.ConfigurableProvider;
 import gov.nih.nlm.uts.webservice.content.AtomDTO;
 import gov.nih.nlm.uts.webservice.content.TermStringDTO;
@@ -69,6 +73,8 @@ public class UtsSynonymExpansionProvider extends ConfigurableProvider
 
   private static final int MAX_RETRY = 5;
 
+  private static final Type SYNONYMS_TYPE = new TypeToken<Set<String>>() {}.getType();
+
   private static final Logger LOG = LoggerFactory.getLogger(UtsSynonymExpansionProvider.class);
 
   @Override
@@ -77,16 +83,20 @@ public class UtsSynonymExpansionProvider extends ConfigurableProvider
     boolean ret = super.initialize(aSpecifier, aAdditionalParams);
     this.service = String.class.cast(getParameterValue("service"));
     this.version = String.class.cast(getParameterValue("version"));
-    securityService = (new UtsWsSecurityControllerImplService())
-            .getUtsWsSecurityControllerImplPort();
-    String username = String.class.cast(getParameterValue("username"));
-    String password = String.class.cast(getParameterValue("password"));
-    try {
-      grantTicket = securityService.getProxyGrantTicket(username, password);
-    } catch (UtsFault_Exception e) {
-      throw new ResourceInitializationException(e);
+    // the services are not connected if the calls are replayed by RecordReplay
+    if (!RecordReplay.getInstance().isReplaying()) {
+      securityService = (new UtsWsSecurityControllerImplService())
+              .getUtsWsSecurityControllerImplPort();
+      String username = String.class.cast(getParameterValue("username"));
+      String password = String.class.cast(getParameterValue("password"));
+      try {
+        grantTicket = securityService.getProxyGrantTicket(username, password);
+      } catch (UtsFault_Exception e) {
+        throw new ResourceInitializationException(e);
+      }
+      contentService = (new UtsWsContentControllerImplService())
+              .getUtsWsContentControllerImplPort();
     }
-    contentService = (new UtsWsContentControllerImplService()).getUtsWsContentControllerImplPort();
     nthreads = Integer.class.cast(getParameterValue("nthreads"));
     timeout = Integer.class.cast(getParameterValue("timeout"));
     return ret;
@@ -113,15 +123,24 @@ public class UtsSynonymExpansionProvider extends ConfigurableProvider
   @Override
   public Set<String> getSynonyms(String id) throws AnalysisEngineProcessException {
     String umlsId = id.substring(5);
-    try {
-      return contentService
-              .getConceptAtoms(getSingleUseTicket(), version, umlsId, createContentPsf()).stream()
-              .map(AtomDTO::getTermString).map(TermStringDTO::getName).collect(toSet());
-    } catch (gov.nih.nlm.uts.webservice.content.UtsFault_Exception | UtsFault_Exception e) {
-      throw new AnalysisEngineProcessException(e);
-    }
+    return RecordReplay.getInstance().call("uts/getConceptAtoms", version + "\t" + umlsId,
+            SYNONYMS_TYPE, () -> {
+              try {
+                return contentService.getConceptAtoms(getSingleUseTicket(), version, umlsId,
+                        createContentPsf()).stream().map(AtomDTO::getTermString)
+                        .map(TermStringDTO::getName).collect(toSet());
+              } catch (gov.nih.nlm.uts.webservice.content.UtsFault_Exception
+                      | UtsFault_Exception e) {
+                throw new AnalysisEngineProcessException(e);
+              }
+            });
   }
 
+  /**
+   * Retrieves the synonyms of the given concept IDs in parallel.
+   * An ID that the service returns nothing for is mapped to an empty set, whereas an ID whose
+   * request has failed (or timed out) is absent from the returned map.
+   */
   @Override
   public Map<String, Set<String>> getSynonyms(Collection<String> ids)
           throws AnalysisEngineProcessException {
@@ -131,8 +150,16 @@ public class UtsSynonymExpansionProvider extends ConfigurableProvider
       es.execute(() -> {
         try {
           id2synonyms.put(id, getSynonyms(id));
+        } catch (AnalysisEngineProcessException e) {
+          if (e.getCause() instanceof gov.nih.nlm.uts.webservice.content.UtsFault_Exception) {
+            // the service has answered with a fault, e.g. the concept is not found
+            LOG.debug("No synonyms found for {}: {}", id, e.getCause().getMessage());
+            id2synonyms.put(id, Collections.emptySet());
+          } else {
+            LOG.warn("Failed to retrieve synonyms for {}.", id, e);
+          }
         } catch (Exception e) {
-          e.printStackTrace();
+          LOG.warn("Failed to retrieve synonyms for {}.", id, e);
         }
       } );
     } );
@@ -0,0 +1,195 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.kb;
+
+import gov.nih.nlm.uts.webservice.security.UtsFault_Exception;
+import gov.nih.nlm.uts.webservice.security.UtsWsSecurityController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *   A pool of single-use UTS proxy tickets, which is refilled by a background thread on demand, so
+ *   that a UTS request does not have to wait for an extra <tt>getProxyTicket</tt> round trip.
+ *   The pool starts empty, and when {@link #take()} leaves fewer than half of <tt>size</tt>
+ *   tickets in the pool (including those being fetched), the pool is refilled up to
+ *   <tt>size</tt>, so that no ticket is requested while no UTS request is made.
+ * </p>
+ * <p>
+ *   A proxy ticket expires shortly after it is issued, hence a pooled ticket older than
+ *   <tt>maxAge</tt> milliseconds is discarded, and the number of discarded tickets is reported
+ *   when the pool is closed.
+ *   If the pool is empty, {@link #take()} falls back to requesting a ticket synchronously, with the
+ *   same retry policy as before.
+ *   If a prefetch fails, e.g. because of a network error, the prefetcher backs off exponentially
+ *   (up to a minute) and waits for the next demand.
+ * </p>
+ *
+ * @see UtsConceptSearchProvider
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class UtsTicketPool implements Closeable {
+
+  private static class Ticket {
+
+    final String value;
+
+    final long issuedAt;
+
+    Ticket(String value, long issuedAt) {
+      this.value = value;
+      this.issuedAt = issuedAt;
+    }
+
+  }
+
+  private static final int MAX_RETRY = 5;
+
+  private static final long MAX_BACKOFF = TimeUnit.MINUTES.toMillis(1);
+
+  private final UtsWsSecurityController securityService;
+
+  private final String grantTicket;
+
+  private final String service;
+
+  private final int size;
+
+  private final int lowWaterMark;
+
+  private final long maxAge;
+
+  private final BlockingQueue<Ticket> tickets = new LinkedBlockingQueue<>();
+
+  // the number of tickets requested from the prefetcher, which have not been fetched yet
+  private final Semaphore demand = new Semaphore(0);
+
+  private final AtomicInteger fetching = new AtomicInteger();
+
+  private final AtomicInteger prefetched = new AtomicInteger();
+
+  private final AtomicInteger expired = new AtomicInteger();
+
+  private final Thread prefetcher;
+
+  private volatile boolean closed;
+
+  private static final Logger LOG = LoggerFactory.getLogger(UtsTicketPool.class);
+
+  public UtsTicketPool(UtsWsSecurityController securityService, String grantTicket,
+          String service, int size, long maxAge) {
+    this.securityService = securityService;
+    this.grantTicket = grantTicket;
+    this.service = service;
+    this.size = size;
+    this.lowWaterMark = (size + 1) / 2;
+    this.maxAge = maxAge;
+    if (size > 0) {
+      prefetcher = new Thread(this::prefetch, "uts-ticket-prefetcher");
+      prefetcher.setDaemon(true);
+      prefetcher.start();
+    } else {
+      prefetcher = null;
+    }
+  }
+
+  private void prefetch() {
+    long backoff = 0;
+    while (!closed) {
+      try {
+        demand.acquire();
+        if (backoff > 0) {
+          Thread.sleep(backoff);
+        }
+      } catch (InterruptedException e) {
+        return;
+      }
+      try {
+        tickets.add(new Ticket(requestTicket(), System.currentTimeMillis()));
+        prefetched.incrementAndGet();
+        backoff = 0;
+      } catch (UtsFault_Exception | RuntimeException e) {
+        // e.g. a WebServiceException on a network error, the demand is dropped until the next take
+        backoff = Math.min(Math.max(backoff * 2, 1000), MAX_BACKOFF);
+        LOG.warn("Failed to prefetch a UTS ticket, backing off for {} ms.", backoff, e);
+        synchronized (this) {
+          fetching.addAndGet(-demand.drainPermits() - 1);
+        }
+        continue;
+      }
+      fetching.decrementAndGet();
+    }
+  }
+
+  public String take() throws UtsFault_Exception {
+    try {
+      Ticket ticket;
+      while ((ticket = tickets.poll()) != null) {
+        if (System.currentTimeMillis() - ticket.issuedAt < maxAge) {
+          return ticket.value;
+        }
+        expired.incrementAndGet();
+      }
+      return requestTicket();
+    } finally {
+      refill();
+    }
+  }
+
+  private synchronized void refill() {
+    if (prefetcher == null || closed) return;
+    int available = tickets.size() + fetching.get();
+    if (available < lowWaterMark) {
+      fetching.addAndGet(size - available);
+      demand.release(size - available);
+    }
+  }
+
+  private String requestTicket() throws UtsFault_Exception {
+    int retries = 0;
+    while (true) {
+      try {
+        return securityService.getProxyTicket(grantTicket, service);
+      } catch (UtsFault_Exception e) {
+        if (closed || ++retries == MAX_RETRY) throw e;
+        try {
+          Thread.sleep(5000);
+        } catch (InterruptedException e1) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    LOG.info("{} UTS tickets prefetched, {} expired unused.", prefetched.get(), expired.get());
+    if (prefetcher != null) {
+      prefetcher.interrupt();
+    }
+    tickets.clear();
+  }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.util;
+
+import com.google.gson.Gson;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ *   A record/replay layer for the remote services, e.g. MetaMap, UTS, tmTool, GoPubMed, and the PMC
+ *   content service, so that a pipeline can be run and benchmarked offline and reproducibly.
+ *   Each remote call is identified by a service name and a deterministic request string (which
+ *   excludes any credential or single-use ticket), and its response is serialized as JSON.
+ * </p>
+ * <p>
+ *   The layer is shared by all the components of the JVM, and configured by the system properties:
+ *   <ul>
+ *     <li>
+ *       <tt>bioqa.replay.mode</tt>: <tt>off</tt> (default) to call the services,
+ *       <tt>record</tt> to call the services and record the successful responses and their
+ *       latencies into the archive, or <tt>replay</tt> to answer the calls from the archive,
+ *       without any network access, where a call that has not been recorded fails with an
+ *       {@link IllegalStateException}.
+ *     </li>
+ *     <li>
+ *       <tt>bioqa.replay.archive</tt>: the MapDB file of the archive.
+ *     </li>
+ *     <li>
+ *       <tt>bioqa.replay.latency</tt>: the latency injected into each replayed call, which is
+ *       <tt>none</tt> (default), <tt>recorded</tt> for the recorded latency, or a fixed number of
+ *       milliseconds.
+ *     </li>
+ *   </ul>
+ * </p>
+ * <p>
+ *   Failed calls are not recorded, hence they fail the same way in the replay mode.
+ * </p>
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class RecordReplay {
+
+  public enum Mode { OFF, RECORD, REPLAY }
+
+  @FunctionalInterface
+  public interface RemoteCall<T, E extends Exception> {
+
+    T call() throws E;
+
+  }
+
+  private static final String MAP_NAME = "recordings";
+
+  private static volatile RecordReplay instance;
+
+  private final Mode mode;
+
+  private final DB db;
+
+  // the values are the latency in milliseconds and the JSON response separated by a tab
+  private final Map<String, String> key2recording;
+
+  private final boolean recordedLatency;
+
+  private final long fixedLatency;
+
+  private final AtomicLong calls = new AtomicLong();
+
+  private final ExecutorService es = Executors.newCachedThreadPool(r -> {
+    Thread thread = new Thread(r, "record-replay");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private static final Gson gson = new Gson();
+
+  private static final Logger LOG = LoggerFactory.getLogger(RecordReplay.class);
+
+  RecordReplay(Mode mode, String archive, String latency) {
+    this.mode = mode;
+    if (mode != Mode.OFF) {
+      if (archive == null) {
+        throw new IllegalArgumentException("bioqa.replay.archive is required in " + mode);
+      }
+      File file = new File(archive);
+      db = mode == Mode.REPLAY ? DBMaker.newFileDB(file).compressionEnable().readOnly().make() :
+              DBMaker.newFileDB(file).compressionEnable().commitFileSyncDisable().cacheSize(128)
+                      .closeOnJvmShutdown().make();
+      key2recording = db.getHashMap(MAP_NAME);
+      LOG.info("{} {} remote calls in {}.", mode, key2recording.size(), archive);
+    } else {
+      db = null;
+      key2recording = null;
+    }
+    recordedLatency = "recorded".equals(latency);
+    fixedLatency = latency == null || "none".equals(latency) || recordedLatency ? 0 :
+            Long.parseLong(latency);
+  }
+
+  public static RecordReplay getInstance() {
+    if (instance == null) {
+      synchronized (RecordReplay.class) {
+        if (instance == null) {
+          instance = new RecordReplay(
+                  Mode.valueOf(System.getProperty("bioqa.replay.mode", "off").toUpperCase()),
+                  System.getProperty("bioqa.replay.archive"),
+                  System.getProperty("bioqa.replay.latency"));
+        }
+      }
+    }
+    return instance;
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * @return <tt>true</tt> if the remote services should not be connected, e.g. logged in
+   */
+  public boolean isReplaying() {
+    return mode == Mode.REPLAY;
+  }
+
+  /**
+   * Calls the remote service, or answers the call from the archive, depending on the mode.
+   *
+   * @param type the type of the response, used to serialize and deserialize it as JSON
+   */
+  public <T, E extends Exception> T call(String service, String request, Type type,
+          RemoteCall<T, E> remote) throws E {
+    switch (mode) {
+      case RECORD:
+        long start = System.currentTimeMillis();
+        T response = remote.call();
+        record(service, request, type, response, System.currentTimeMillis() - start);
+        return response;
+      case REPLAY:
+        return replay(service, request, type);
+      default:
+        return remote.call();
+    }
+  }
+
+  /**
+   * Calls the remote service asynchronously, or answers the call from the archive on a separate
+   * thread, depending on the mode.
+   */
+  public <T> CompletableFuture<T> callAsync(String service, String request, Type type,
+          Supplier<CompletableFuture<T>> remote) {
+    switch (mode) {
+      case RECORD:
+        long start = System.currentTimeMillis();
+        return remote.get().thenApply(response -> {
+          record(service, request, type, response, System.currentTimeMillis() - start);
+          return response;
+        });
+      case REPLAY:
+        return CompletableFuture.supplyAsync(() -> replay(service, request, type), es);
+      default:
+        return remote.get();
+    }
+  }
+
+  private void record(String service, String request, Type type, Object response,
+          long latency) {
+    String json = gson.toJson(response, type);
+    synchronized (this) {
+      key2recording.put(getKey(service, request), latency + "\t" + json);
+      db.commit();
+    }
+    calls.incrementAndGet();
+  }
+
+  private <T> T replay(String service, String request, Type type) {
+    String recording = key2recording.get(getKey(service, request));
+    if (recording == null) {
+      throw new IllegalStateException("No recording for " + service + ": " + request);
+    }
+    int tab = recording.indexOf('\t');
+    long delay = recordedLatency ? Long.parseLong(recording.substring(0, tab)) : fixedLatency;
+    if (delay > 0) {
+      try {
+        TimeUnit.MILLISECONDS.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    calls.incrementAndGet();
+    return gson.fromJson(recording.substring(tab + 1), type);
+  }
+
+  private static String getKey(String service, String request) {
+    return service + "\t" + request;
+  }
+
+  public long getCalls() {
+    return calls.get();
+  }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *   A bounded, process-wide pool of the identifiers that the KB providers create over and over
+ *   for different questions, e.g. concept names, CUIs, semantic types, and PubMed URIs, so that
+ *   the {@link org.apache.uima.jcas.JCas}es and caches refer to one shared {@link String} instance
+ *   of each identifier instead of many equal copies.
+ *   Since the pooled instances are shared, comparing two pooled identifiers with
+ *   {@link String#equals(Object)} usually returns at the identity check.
+ * </p>
+ * <p>
+ *   The pool is configured by the system property <tt>bioqa.string-pool.max-size</tt> (1000000 by
+ *   default, and 0 to disable pooling).
+ *   Once the pool is full, new strings are returned as they are, and the pooled ones stay.
+ *   The numbers of lookups, hits (i.e. equal copies replaced by a pooled instance), and rejected
+ *   strings are reported by {@link #report()}, and when the JVM shuts down.
+ *   The heap actually saved is not reported, since a replaced copy is only reclaimed if its caller
+ *   drops it, which the pool cannot tell.
+ * </p>
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class StringPool {
+
+  private static volatile StringPool instance;
+
+  private final int maxSize;
+
+  private final ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<>();
+
+  private final AtomicLong lookups = new AtomicLong();
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong rejected = new AtomicLong();
+
+  private static final Logger LOG = LoggerFactory.getLogger(StringPool.class);
+
+  StringPool(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  public static StringPool getInstance() {
+    if (instance == null) {
+      synchronized (StringPool.class) {
+        if (instance == null) {
+          instance = new StringPool(
+                  Integer.getInteger("bioqa.string-pool.max-size", 1000000));
+          Runtime.getRuntime().addShutdownHook(new Thread(instance::report));
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * A shorthand of <tt>getInstance().intern(string)</tt>.
+   */
+  public static String of(String string) {
+    return getInstance().intern(string);
+  }
+
+  /**
+   * @return the pooled instance equal to the string, or the string itself if it is the first
+   *         occurrence, or the pool is full or disabled
+   */
+  public String intern(String string) {
+    if (string == null || maxSize <= 0) {
+      return string;
+    }
+    lookups.incrementAndGet();
+    String pooled = pool.get(string);
+    if (pooled == null) {
+      if (pool.size() >= maxSize) {
+        rejected.incrementAndGet();
+        return string;
+      }
+      pooled = pool.putIfAbsent(string, string);
+      if (pooled == null) {
+        return string;
+      }
+    }
+    hits.incrementAndGet();
+    return pooled;
+  }
+
+  public int size() {
+    return pool.size();
+  }
+
+  public void report() {
+    long lookupCount = lookups.get();
+    LOG.info("String pool: {} strings, {} lookups, {} hits ({}%), {} rejected.", pool.size(),
+            lookupCount, hits.get(), lookupCount == 0 ? 0 : 100 * hits.get() / lookupCount,
+            rejected.get());
+  }
+
+}
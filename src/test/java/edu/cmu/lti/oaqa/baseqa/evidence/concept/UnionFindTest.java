@@ -0,0 +1,131 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.cmu.lti.oaqa.baseqa.evidence.concept;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class UnionFindTest {
+
+  @Test
+  public void testSingletons() {
+    UnionFind uf = new UnionFind(3);
+    assertEquals(3, uf.size());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(i, uf.find(i));
+    }
+  }
+
+  @Test
+  public void testUnion() {
+    UnionFind uf = new UnionFind(5);
+    uf.union(0, 1);
+    uf.union(3, 4);
+    uf.union(1, 0);
+    assertEquals(uf.find(0), uf.find(1));
+    assertEquals(uf.find(3), uf.find(4));
+    assertNotEquals(uf.find(0), uf.find(3));
+    assertNotEquals(uf.find(2), uf.find(0));
+    uf.union(1, 4);
+    assertEquals(uf.find(0), uf.find(3));
+    assertNotEquals(uf.find(2), uf.find(4));
+  }
+
+  @Test
+  public void testAddGrowsBeyondInitialCapacity() {
+    UnionFind uf = new UnionFind(0);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, uf.add());
+      if (i > 0) {
+        uf.union(i - 1, i);
+      }
+    }
+    assertEquals(1000, uf.size());
+    assertEquals(uf.find(0), uf.find(999));
+  }
+
+  @Test
+  public void testConceptAndKeyIndexes() {
+    // concepts 0 and 2 share an id (key 3), and concept 1 has its own name (key 4)
+    UnionFind uf = new UnionFind(3);
+    int id = uf.add();
+    int name = uf.add();
+    uf.union(0, id);
+    uf.union(1, name);
+    uf.union(2, id);
+    assertEquals(uf.find(0), uf.find(2));
+    assertNotEquals(uf.find(0), uf.find(1));
+  }
+
+  @Test
+  public void testMatchesConnectedComponents() {
+    Random random = new Random(42);
+    int n = 500;
+    UnionFind uf = new UnionFind(n);
+    List<List<Integer>> edges = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      edges.add(new ArrayList<>());
+    }
+    for (int k = 0; k < 300; k++) {
+      int x = random.nextInt(n);
+      int y = random.nextInt(n);
+      uf.union(x, y);
+      edges.get(x).add(y);
+      edges.get(y).add(x);
+    }
+    int[] components = connectedComponents(edges);
+    for (int x = 0; x < n; x++) {
+      for (int y = 0; y < n; y++) {
+        assertEquals(components[x] == components[y], uf.find(x) == uf.find(y));
+      }
+    }
+  }
+
+  private static int[] connectedComponents(List<List<Integer>> edges) {
+    int[] components = new int[edges.size()];
+    Arrays.fill(components, -1);
+    int ncomponents = 0;
+    for (int start = 0; start < edges.size(); start++) {
+      if (components[start] >= 0) continue;
+      Deque<Integer> queue = new ArrayDeque<>();
+      queue.add(start);
+      components[start] = ncomponents;
+      while (!queue.isEmpty()) {
+        for (int next : edges.get(queue.poll())) {
+          if (components[next] < 0) {
+            components[next] = ncomponents;
+            queue.add(next);
+          }
+        }
+      }
+      ncomponents++;
+    }
+    return components;
+  }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.cmu.lti.oaqa.baseqa.providers.parser;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class ParsedTokenCodecTest {
+
+  @Test
+  public void testRoundTrip() {
+    List<ParsedToken> parsedTokens = Arrays.asList(
+            new ParsedToken(0, 5, "NNP", "brca1", "nsubj", 1),
+            new ParsedToken(6, 8, "VBZ", "be", "root", -1),
+            new ParsedToken(9, 10, null, null, null, 1));
+    assertParsedTokensEqual(parsedTokens, roundTrip(parsedTokens));
+  }
+
+  @Test
+  public void testEmpty() {
+    assertTrue(roundTrip(Collections.emptyList()).isEmpty());
+  }
+
+  @Test
+  public void testLargeOffsetsLengthsAndHeads() {
+    List<ParsedToken> parsedTokens = new ArrayList<>();
+    parsedTokens.add(new ParsedToken(70000, 70000 + 40000, "NN", "x", "dep", 50000));
+    parsedTokens.add(new ParsedToken(Integer.MAX_VALUE - 1, Integer.MAX_VALUE, "NN", "y", "dep",
+            32768));
+    parsedTokens.add(new ParsedToken(123456789, 123456789 + 65536, "NN", "z", "root", -1));
+    assertParsedTokensEqual(parsedTokens, roundTrip(parsedTokens));
+  }
+
+  @Test
+  public void testNonAsciiStrings() {
+    List<ParsedToken> parsedTokens = Collections.singletonList(
+            new ParsedToken(0, 4, "NN", "α-synuclein", "ñ", -1));
+    assertParsedTokensEqual(parsedTokens, roundTrip(parsedTokens));
+  }
+
+  @Test
+  public void testVersion() {
+    byte[] bytes = ParsedTokenCodec.encode(Collections.emptyList());
+    assertEquals(ParsedTokenCodec.VERSION, bytes[0]);
+  }
+
+  @Test
+  public void testVersion1IsNotDecoded() throws IOException {
+    // the version 1 encoding of a token, which started with the number of tokens as an int
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(1);
+    out.writeInt(0);
+    out.writeShort(5);
+    out.writeShort(-1);
+    out.writeBoolean(false);
+    out.writeBoolean(false);
+    out.writeBoolean(false);
+    assertNull(ParsedTokenCodec.decode(bytes.toByteArray()));
+    assertNull(ParsedTokenCodec.decode(new byte[0]));
+  }
+
+  private static List<ParsedToken> roundTrip(List<ParsedToken> parsedTokens) {
+    return ParsedTokenCodec.decode(ParsedTokenCodec.encode(parsedTokens));
+  }
+
+  private static void assertParsedTokensEqual(List<ParsedToken> expected,
+          List<ParsedToken> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      ParsedToken e = expected.get(i);
+      ParsedToken a = actual.get(i);
+      assertEquals(e.getBegin(), a.getBegin());
+      assertEquals(e.getEnd(), a.getEnd());
+      assertEquals(e.getPartOfSpeech(), a.getPartOfSpeech());
+      assertEquals(e.getLemmaForm(), a.getLemmaForm());
+      assertEquals(e.getDepLabel(), a.getDepLabel());
+      assertEquals(e.getHead(), a.getHead());
+    }
+  }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.baseqa.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class LongIntMapTest {
+
+  @Test
+  public void testGetAndPut() {
+    LongIntMap map = new LongIntMap(4);
+    assertEquals(-1, map.get(LongIntMap.key(0, 0)));
+    map.put(LongIntMap.key(0, 0), 7);
+    map.put(LongIntMap.key(0, -1), 8);
+    map.put(LongIntMap.key(1, 0), 9);
+    assertEquals(7, map.get(LongIntMap.key(0, 0)));
+    assertEquals(8, map.get(LongIntMap.key(0, -1)));
+    assertEquals(9, map.get(LongIntMap.key(1, 0)));
+    assertEquals(-1, map.get(LongIntMap.key(-1, 0)));
+    assertEquals(3, map.size());
+  }
+
+  @Test
+  public void testPutReplaces() {
+    LongIntMap map = new LongIntMap(2);
+    map.put(42L, 1);
+    map.put(42L, 2);
+    assertEquals(2, map.get(42L));
+    assertEquals(1, map.size());
+  }
+
+  @Test
+  public void testRehash() {
+    // a grid of (high, low) pairs, whose keys differ only in a few bits, starting from two slots
+    LongIntMap map = new LongIntMap(2);
+    for (int high = 0; high < 300; high++) {
+      for (int low = -50; low < 50; low++) {
+        map.put(LongIntMap.key(high, low), high * 100 + low + 50);
+      }
+    }
+    assertEquals(30000, map.size());
+    for (int high = 0; high < 300; high++) {
+      for (int low = -50; low < 50; low++) {
+        assertEquals(high * 100 + low + 50, map.get(LongIntMap.key(high, low)));
+      }
+      assertEquals(-1, map.get(LongIntMap.key(high, 50)));
+    }
+  }
+
+}
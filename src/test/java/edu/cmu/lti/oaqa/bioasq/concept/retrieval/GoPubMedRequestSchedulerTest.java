@@ -0,0 +1,172 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioasq.concept.retrieval;
+
+import edu.cmu.lti.oaqa.bio.bioasq.services.OntologyServiceResponse;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static edu.cmu.lti.oaqa.bioasq.util.BioASQUtil.Ontology.GENE;
+import static edu.cmu.lti.oaqa.bioasq.util.BioASQUtil.Ontology.MESH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link GoPubMedRequestScheduler} with an {@link OntologyPageStubFetcher}.
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class GoPubMedRequestSchedulerTest {
+
+  private final List<GoPubMedRequestScheduler> schedulers = new ArrayList<>();
+
+  private File dir;
+
+  @After
+  public void tearDown() throws IOException {
+    schedulers.forEach(GoPubMedRequestScheduler::close);
+    if (dir != null) {
+      File[] files = dir.listFiles();
+      if (files != null) Arrays.stream(files).forEach(File::delete);
+      Files.delete(dir.toPath());
+    }
+  }
+
+  private GoPubMedRequestScheduler start(OntologyPageStubFetcher fetcher, double requestsPerSecond,
+          String cacheDbFile) {
+    GoPubMedRequestScheduler scheduler = new GoPubMedRequestScheduler(fetcher, 4,
+            requestsPerSecond, cacheDbFile, "ontology");
+    schedulers.add(scheduler);
+    return scheduler;
+  }
+
+  @Test
+  public void testDeduplicateInflight() throws Exception {
+    OntologyPageStubFetcher fetcher = new OntologyPageStubFetcher(10, Collections.emptyList(),
+            true);
+    GoPubMedRequestScheduler scheduler = start(fetcher, 0, null);
+    CompletableFuture<OntologyServiceResponse.Result> first = scheduler.request(GENE, "p53", 0, 5);
+    CompletableFuture<OntologyServiceResponse.Result> second = scheduler.request(GENE, "p53", 0,
+            5);
+    CompletableFuture<OntologyServiceResponse.Result> other = scheduler.request(MESH, "p53", 0, 5);
+    fetcher.release();
+    assertEquals(5, first.get().getFindings().size());
+    assertEquals(5, second.get().getFindings().size());
+    assertEquals(5, other.get().getFindings().size());
+    assertEquals(2, fetcher.fetches.get());
+    assertEquals(1, scheduler.getCounters(GENE).deduplicated.get());
+    assertEquals(1, scheduler.getCounters(GENE).remoteCalls.get());
+    assertEquals(0, scheduler.getCounters(MESH).deduplicated.get());
+  }
+
+  @Test
+  public void testRequestsPerSecond() throws Exception {
+    OntologyPageStubFetcher fetcher = new OntologyPageStubFetcher(100, Collections.emptyList(),
+            false);
+    GoPubMedRequestScheduler scheduler = start(fetcher, 10, null);
+    List<CompletableFuture<OntologyServiceResponse.Result>> futures = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      futures.add(scheduler.request(GENE, "query " + i, 0, 5));
+    }
+    for (CompletableFuture<OntologyServiceResponse.Result> future : futures) {
+      future.get();
+    }
+    List<Long> startTimes = new ArrayList<>(fetcher.startTimes);
+    Collections.sort(startTimes);
+    // five intervals of 100 ms each, with some slack for the timer
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(startTimes.get(5) - startTimes.get(0));
+    assertTrue("Elapsed " + elapsed + " ms", elapsed >= 400);
+  }
+
+  @Test
+  public void testPersistentCache() throws Exception {
+    dir = Files.createTempDirectory("gopubmed-cache").toFile();
+    String cacheDbFile = new File(dir, "cache.db").getPath();
+    OntologyPageStubFetcher fetcher = new OntologyPageStubFetcher(3, Collections.emptyList(),
+            false);
+    GoPubMedRequestScheduler scheduler = start(fetcher, 0, cacheDbFile);
+    assertEquals(3, scheduler.request(GENE, "brca1", 0, 5).get().getFindings().size());
+    assertEquals(3, scheduler.request(GENE, "brca1", 0, 5).get().getFindings().size());
+    assertEquals(1, scheduler.getCounters(GENE).cacheHits.get());
+    schedulers.remove(scheduler);
+    scheduler.close();
+    GoPubMedRequestScheduler reopened = start(fetcher, 0, cacheDbFile);
+    assertEquals(3, reopened.request(GENE, "brca1", 0, 5).get().getFindings().size());
+    assertEquals(1, reopened.getCounters(GENE).cacheHits.get());
+    assertEquals(0, reopened.getCounters(GENE).remoteCalls.get());
+    assertEquals(1, fetcher.fetches.get());
+  }
+
+  @Test
+  public void testErrorCounters() throws Exception {
+    dir = Files.createTempDirectory("gopubmed-cache").toFile();
+    OntologyPageStubFetcher fetcher = new OntologyPageStubFetcher(10, Collections.singletonList(0),
+            false);
+    GoPubMedRequestScheduler scheduler = start(fetcher, 0, new File(dir, "cache.db").getPath());
+    for (int i = 1; i <= 2; i++) {
+      try {
+        scheduler.request(MESH, "tp53", 0, 5).get();
+        fail();
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof UncheckedIOException);
+      }
+      // a failed request is neither cached nor kept in flight, so it is sent again
+      assertEquals(i, scheduler.getCounters(MESH).errors.get());
+      assertEquals(i, scheduler.getCounters(MESH).remoteCalls.get());
+    }
+    assertEquals(0, scheduler.getCounters(MESH).cacheHits.get());
+    assertEquals(0, scheduler.getCounters(GENE).errors.get());
+  }
+
+  @Test
+  public void testSearchStopsAtShortPage() throws Exception {
+    // the third page is empty, and the fourth page, which is not used, fails
+    OntologyPageStubFetcher fetcher = new OntologyPageStubFetcher(7, Collections.singletonList(3),
+            false);
+    GoPubMedRequestScheduler scheduler = start(fetcher, 0, null);
+    List<OntologyServiceResponse.Result> results = scheduler.searchOntology("egfr", 4, 5, GENE)
+            .get();
+    assertEquals(2, results.size());
+    assertEquals(5, results.get(0).getFindings().size());
+    assertEquals(2, results.get(1).getFindings().size());
+  }
+
+  @Test
+  public void testSearchFailsAtUsedPage() throws Exception {
+    OntologyPageStubFetcher fetcher = new OntologyPageStubFetcher(20, Collections.singletonList(1),
+            false);
+    GoPubMedRequestScheduler scheduler = start(fetcher, 0, null);
+    try {
+      scheduler.searchOntology("egfr", 3, 5, GENE).get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof UncheckedIOException);
+    }
+  }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioasq.concept.retrieval;
+
+import com.google.gson.Gson;
+import edu.cmu.lti.oaqa.bio.bioasq.services.OntologyServiceResponse;
+import edu.cmu.lti.oaqa.bioasq.util.BioASQUtil;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *   A local stand-in for the ontology search of the GoPubMed service, used by
+ *   {@link GoPubMedRequestScheduler} via {@link GoPubMedRequestScheduler.OntologyPageFetcher}.
+ *   A search for the keywords returns <tt>results</tt> findings in total, paged by the requested
+ *   page size, except that the pages listed in <tt>failedPages</tt> throw an {@link IOException}.
+ * </p>
+ * <p>
+ *   A fetch waits for {@link #release()} if the fetcher is created held, so that the requests can
+ *   be kept in flight, and the start time of every fetch is recorded.
+ * </p>
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class OntologyPageStubFetcher implements GoPubMedRequestScheduler.OntologyPageFetcher {
+
+  private static final Gson gson = new Gson();
+
+  private final int results;
+
+  private final List<Integer> failedPages;
+
+  private final CountDownLatch held;
+
+  final AtomicInteger fetches = new AtomicInteger();
+
+  final List<Long> startTimes = new CopyOnWriteArrayList<>();
+
+  public OntologyPageStubFetcher(int results, List<Integer> failedPages, boolean held) {
+    this.results = results;
+    this.failedPages = failedPages;
+    this.held = new CountDownLatch(held ? 1 : 0);
+  }
+
+  public void release() {
+    held.countDown();
+  }
+
+  @Override
+  public OntologyServiceResponse.Result fetch(BioASQUtil.Ontology ontology, String keywords,
+          int page, int conceptsPerPage) throws IOException {
+    startTimes.add(System.nanoTime());
+    fetches.incrementAndGet();
+    try {
+      held.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+    if (failedPages.contains(page)) {
+      throw new IOException("Failed page " + page + " of " + keywords);
+    }
+    int findings = Math.max(0, Math.min(conceptsPerPage, results - page * conceptsPerPage));
+    StringBuilder json = new StringBuilder("{\"findings\":[");
+    for (int i = 0; i < findings; i++) {
+      json.append(i == 0 ? "{}" : ",{}");
+    }
+    return gson.fromJson(json.append("]}").toString(), OntologyServiceResponse.Result.class);
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioasq.document.retrieval;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>
+ *   A local stand-in for the line-based document retrieval service used by
+ *   {@link DiXuProprietaryDocumentRetrievalTransport}, which answers each question line with a JSON
+ *   line of two documents, whose document numbers are <tt>{question}#0</tt> and
+ *   <tt>{question}#1</tt>.
+ * </p>
+ * <p>
+ *   A connection is closed after <tt>maxAnswersPerConnection</tt> answers, and each answer is
+ *   delayed by <tt>delay</tt> milliseconds.
+ *   The question <tt>MALFORMED</tt> is answered with a malformed JSON line, and the question
+ *   <tt>CLOSE</tt> closes the connection without an answer.
+ * </p>
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class DiXuEchoServer implements Closeable {
+
+  private final ServerSocket serverSocket;
+
+  private final int maxAnswersPerConnection;
+
+  private final long delay;
+
+  private final ExecutorService es = Executors.newCachedThreadPool(r -> {
+    Thread thread = new Thread(r, "dixu-echo-server");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+  final AtomicInteger connections = new AtomicInteger();
+
+  final Map<String, AtomicInteger> question2count = new ConcurrentHashMap<>();
+
+  public DiXuEchoServer(int port, int maxAnswersPerConnection, long delay) throws IOException {
+    this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    this.maxAnswersPerConnection = maxAnswersPerConnection;
+    this.delay = delay;
+    es.execute(this::accept);
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  public int getCount(String question) {
+    AtomicInteger count = question2count.get(question);
+    return count == null ? 0 : count.get();
+  }
+
+  /**
+   * Closes all the open connections, as a server does to the idle ones.
+   */
+  public void closeConnections() throws IOException {
+    for (Socket socket : sockets) {
+      socket.close();
+    }
+  }
+
+  private void accept() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        connections.incrementAndGet();
+        sockets.add(socket);
+        es.execute(() -> serve(socket));
+      } catch (IOException e) {
+        return;
+      }
+    }
+  }
+
+  private void serve(Socket socket) {
+    try (BufferedReader in = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), UTF_8));
+         Writer out = new OutputStreamWriter(socket.getOutputStream(), UTF_8)) {
+      String question;
+      int answers = 0;
+      while (answers < maxAnswersPerConnection && (question = in.readLine()) != null) {
+        question2count.computeIfAbsent(question, q -> new AtomicInteger()).incrementAndGet();
+        if ("CLOSE".equals(question)) break;
+        if (delay > 0) TimeUnit.MILLISECONDS.sleep(delay);
+        out.write("MALFORMED".equals(question) ? "{\"docno_list\": [" : answer(question));
+        out.write('\n');
+        out.flush();
+        answers++;
+      }
+    } catch (IOException e) {
+      // closed by the client or by closeConnections
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      sockets.remove(socket);
+    }
+  }
+
+  static String answer(String question) {
+    JsonObject answer = new JsonObject();
+    JsonArray docnos = new JsonArray();
+    JsonArray scores = new JsonArray();
+    JsonArray titles = new JsonArray();
+    JsonArray abstracts = new JsonArray();
+    for (int i = 0; i < 2; i++) {
+      docnos.add(new JsonPrimitive(question + "#" + i));
+      scores.add(new JsonPrimitive(1.0 / (i + 1)));
+      titles.add(new JsonPrimitive("title " + i));
+      abstracts.add(new JsonPrimitive("abstract " + i));
+    }
+    answer.add("docno_list", docnos);
+    answer.add("score_list", scores);
+    answer.add("title_list", titles);
+    answer.add("abstract_list", abstracts);
+    return answer.toString();
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    closeConnections();
+    es.shutdownNow();
+  }
+
+  /**
+   * @param args the port, and optionally the maximum number of answers per connection (unlimited
+   *             by default) and the delay of each answer in milliseconds (0 by default)
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int port = Integer.parseInt(args[0]);
+    int maxAnswersPerConnection = args.length > 1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+    long delay = args.length > 2 ? Long.parseLong(args[2]) : 0;
+    DiXuEchoServer server = new DiXuEchoServer(port, maxAnswersPerConnection, delay);
+    System.out.println("Echo server listening on port " + server.getPort());
+    // the server threads are daemon threads, so the main thread serves until it is killed
+    Thread.currentThread().join();
+  }
+
+}
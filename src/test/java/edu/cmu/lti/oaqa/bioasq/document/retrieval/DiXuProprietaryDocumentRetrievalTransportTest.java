@@ -0,0 +1,170 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioasq.document.retrieval;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link DiXuProprietaryDocumentRetrievalTransport} against a {@link DiXuEchoServer}.
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class DiXuProprietaryDocumentRetrievalTransportTest {
+
+  private DiXuEchoServer server;
+
+  private DiXuProprietaryDocumentRetrievalTransport transport;
+
+  @After
+  public void tearDown() throws IOException {
+    if (transport != null) transport.close();
+    if (server != null) server.close();
+  }
+
+  private void start(int maxAnswersPerConnection, long delay, int readTimeout)
+          throws IOException {
+    server = new DiXuEchoServer(0, maxAnswersPerConnection, delay);
+    transport = new DiXuProprietaryDocumentRetrievalTransport("localhost", server.getPort(), 2,
+            1000, readTimeout, 2, 4, 10);
+  }
+
+  private static List<String> questions(String prefix, int n) {
+    return IntStream.range(0, n).mapToObj(i -> prefix + i).collect(Collectors.toList());
+  }
+
+  private static void assertResponses(List<String> questions,
+          List<DiXuProprietaryDocumentRetrievalTransport.Response> responses) {
+    assertEquals(questions.size(), responses.size());
+    for (int i = 0; i < questions.size(); i++) {
+      assertEquals(Arrays.asList(questions.get(i) + "#0", questions.get(i) + "#1"),
+              responses.get(i).docnos);
+      assertEquals(Arrays.asList(1.0, 0.5), responses.get(i).scores);
+    }
+  }
+
+  @Test
+  public void testPipelinedBatches() throws IOException {
+    start(Integer.MAX_VALUE, 0, 5000);
+    List<String> first = questions("what is q", 50);
+    assertResponses(first, transport.search(first));
+    List<String> second = questions("which q", 20);
+    assertResponses(second, transport.search(second));
+    // a question must fit in a line
+    assertEquals("What is BRCA1?#0", transport.search("What is\nBRCA1?").docnos.get(0));
+    assertEquals(1, server.connections.get());
+  }
+
+  @Test(timeout = 60000)
+  public void testBatchLargerThanSocketBuffers() throws IOException {
+    start(Integer.MAX_VALUE, 0, 5000);
+    // about 8 MB of questions and 16 MB of responses, which would fill the socket buffers of both
+    // sides if all the questions were written before reading any response
+    char[] padding = new char[4000];
+    Arrays.fill(padding, 'x');
+    List<String> questions = questions(new String(padding) + " q", 2000);
+    assertResponses(questions, transport.search(questions));
+    assertEquals(1, server.connections.get());
+  }
+
+  @Test
+  public void testOneAnswerPerConnection() throws IOException {
+    start(1, 0, 5000);
+    List<String> questions = questions("q", 5);
+    assertResponses(questions, transport.search(questions));
+    assertEquals(5, server.connections.get());
+    questions.forEach(question -> assertEquals(1, server.getCount(question)));
+  }
+
+  @Test
+  public void testStalePooledConnection() throws Exception {
+    start(Integer.MAX_VALUE, 0, 5000);
+    assertResponses(questions("a", 3), transport.search(questions("a", 3)));
+    server.closeConnections();
+    Thread.sleep(50);
+    assertResponses(questions("b", 3), transport.search(questions("b", 3)));
+    assertEquals(2, server.connections.get());
+  }
+
+  @Test
+  public void testTimeoutIsNotResent() throws IOException {
+    start(Integer.MAX_VALUE, 500, 100);
+    try {
+      transport.search("slow");
+      fail();
+    } catch (SocketTimeoutException e) {
+      // expected
+    }
+    assertEquals(1, server.getCount("slow"));
+    assertEquals(1, server.connections.get());
+  }
+
+  @Test
+  public void testMalformedResponseIsNotResent() throws IOException {
+    start(Integer.MAX_VALUE, 0, 5000);
+    try {
+      transport.search("MALFORMED");
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage().startsWith("Malformed response"));
+    }
+    assertEquals(1, server.getCount("MALFORMED"));
+    // the connection is closed, and the next search opens a new one
+    assertResponses(questions("c", 2), transport.search(questions("c", 2)));
+    assertEquals(2, server.connections.get());
+  }
+
+  @Test
+  public void testClosedNewConnectionIsNotResent() throws IOException {
+    start(Integer.MAX_VALUE, 0, 5000);
+    try {
+      transport.search("CLOSE");
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+    assertEquals(1, server.getCount("CLOSE"));
+    assertEquals(1, server.connections.get());
+  }
+
+  @Test
+  public void testBoundedReconnects() throws Exception {
+    start(Integer.MAX_VALUE, 0, 5000);
+    transport.search("warm up");
+    server.closeConnections();
+    Thread.sleep(50);
+    try {
+      transport.search("CLOSE");
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+    // the stale pooled connection, and the new connection closed before any response
+    assertEquals(1, server.getCount("CLOSE"));
+    assertEquals(2, server.connections.get());
+  }
+
+}
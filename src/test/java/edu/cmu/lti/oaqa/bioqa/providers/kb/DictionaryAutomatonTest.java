@@ -0,0 +1,177 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.cmu.lti.oaqa.bioqa.providers.kb;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class DictionaryAutomatonTest {
+
+  @Test
+  public void testAddAndGetOutput() {
+    DictionaryAutomaton automaton = new DictionaryAutomaton();
+    assertEquals(-1, automaton.add(new int[] {1, 2}, 10));
+    assertEquals(10, automaton.add(new int[] {1, 2}, 11));
+    assertEquals(-1, automaton.add(new int[] {1}, 12));
+    assertEquals(11, automaton.getOutput(new int[] {1, 2}));
+    assertEquals(12, automaton.getOutput(new int[] {1}));
+    assertEquals(-1, automaton.getOutput(new int[] {2}));
+    assertEquals(-1, automaton.getOutput(new int[] {1, 2, 3}));
+    assertEquals(3, automaton.getNumStates());
+  }
+
+  @Test
+  public void testLongestTermAtEachStart() {
+    DictionaryAutomaton automaton = new DictionaryAutomaton();
+    automaton.add(new int[] {1, 2, 3}, 10);
+    automaton.add(new int[] {2, 3}, 20);
+    automaton.add(new int[] {3}, 30);
+    automaton.add(new int[] {2, 3, 4, 5}, 40);
+    automaton.build();
+    int[] lengths = new int[5];
+    int[] outputs = new int[5];
+    automaton.match(new int[] {1, 2, 3, 4, 5}, lengths, outputs);
+    assertArrayEquals(new int[] {3, 4, 1, 0, 0}, lengths);
+    assertEquals(10, outputs[0]);
+    assertEquals(40, outputs[1]);
+    assertEquals(30, outputs[2]);
+  }
+
+  @Test
+  public void testFailureLinks() {
+    DictionaryAutomaton automaton = new DictionaryAutomaton();
+    automaton.add(new int[] {1, 2, 4}, 10);
+    automaton.add(new int[] {2, 3}, 20);
+    automaton.add(new int[] {1, 1, 1}, 30);
+    automaton.build();
+    int[] text = {1, 2, 3, 1, 1, 1, 1};
+    int[] lengths = new int[text.length];
+    int[] outputs = new int[text.length];
+    automaton.match(text, lengths, outputs);
+    assertArrayEquals(new int[] {0, 2, 0, 3, 3, 0, 0}, lengths);
+    assertEquals(20, outputs[1]);
+    assertEquals(30, outputs[3]);
+    assertEquals(30, outputs[4]);
+  }
+
+  @Test
+  public void testUnknownTokenBreaksTerms() {
+    DictionaryAutomaton automaton = new DictionaryAutomaton();
+    automaton.add(new int[] {1, 2}, 10);
+    automaton.add(new int[] {2}, 20);
+    automaton.build();
+    int[] text = {1, -1, 2, 1, 2};
+    int[] lengths = new int[text.length];
+    int[] outputs = new int[text.length];
+    automaton.match(text, lengths, outputs);
+    assertArrayEquals(new int[] {0, 0, 1, 2, 1}, lengths);
+    assertEquals(20, outputs[2]);
+    assertEquals(10, outputs[3]);
+    assertEquals(20, outputs[4]);
+  }
+
+  @Test
+  public void testGrowsBeyondInitialCapacity() {
+    // all the 37448 prefixes of the five-token terms over eight tokens are states, which is more
+    // than the initial capacities of the state arrays and of the goto table
+    DictionaryAutomaton automaton = new DictionaryAutomaton();
+    int[] term = new int[5];
+    for (int code = 0; code < 1 << 15; code++) {
+      for (int i = 0; i < term.length; i++) {
+        term[i] = (code >>> (3 * i)) & 7;
+      }
+      assertEquals(-1, automaton.add(term, code));
+    }
+    assertEquals(1 + 8 + 64 + 512 + 4096 + 32768, automaton.getNumStates());
+    for (int code = 0; code < 1 << 15; code += 97) {
+      for (int i = 0; i < term.length; i++) {
+        term[i] = (code >>> (3 * i)) & 7;
+      }
+      assertEquals(code, automaton.getOutput(term));
+    }
+  }
+
+  @Test
+  public void testMatchesAllShortTexts() {
+    // the terms are the sequences over {0, 1, 2} of up to four tokens with an even sum, and every
+    // text of six tokens over {0, 1, 2, unknown} is matched against a direct lookup
+    Map<List<Integer>, Integer> term2output = new HashMap<>();
+    DictionaryAutomaton automaton = new DictionaryAutomaton();
+    for (int length = 1; length <= 4; length++) {
+      for (int[] term : enumerate(length, 3)) {
+        if (Arrays.stream(term).sum() % 2 != 0) continue;
+        automaton.add(term, term2output.size());
+        term2output.put(toList(term), term2output.size());
+      }
+    }
+    automaton.build();
+    for (int[] text : enumerate(6, 4)) {
+      for (int i = 0; i < text.length; i++) {
+        if (text[i] == 3) text[i] = -1;
+      }
+      int[] lengths = new int[text.length];
+      int[] outputs = new int[text.length];
+      automaton.match(text, lengths, outputs);
+      for (int start = 0; start < text.length; start++) {
+        int expectedLength = 0;
+        for (int end = start + 1; end <= Math.min(text.length, start + 4); end++) {
+          if (term2output.containsKey(toList(Arrays.copyOfRange(text, start, end)))) {
+            expectedLength = end - start;
+          }
+        }
+        assertEquals(Arrays.toString(text), expectedLength, lengths[start]);
+        if (expectedLength > 0) {
+          List<Integer> matched = toList(Arrays.copyOfRange(text, start, start + expectedLength));
+          assertEquals(term2output.get(matched).intValue(), outputs[start]);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return all the sequences of the given length over the tokens <tt>0</tt> to
+   *         <tt>numTokens - 1</tt>
+   */
+  private static List<int[]> enumerate(int length, int numTokens) {
+    List<int[]> sequences = new ArrayList<>();
+    int[] sequence = new int[length];
+    while (true) {
+      sequences.add(sequence.clone());
+      int i = length - 1;
+      while (i >= 0 && sequence[i] == numTokens - 1) {
+        sequence[i--] = 0;
+      }
+      if (i < 0) return sequences;
+      sequence[i]++;
+    }
+  }
+
+  private static List<Integer> toList(int[] tokens) {
+    return Arrays.asList(Arrays.stream(tokens).boxed().toArray(Integer[]::new));
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.kb;
+
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link SingleFlight} with an in-memory cache.
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class SingleFlightTest {
+
+  private final Map<String, Integer> cache = new ConcurrentHashMap<>();
+
+  private final SingleFlight<String, Integer> singleFlight = new SingleFlight<>("test");
+
+  @Test
+  public void testLoadsMissesOnly() throws Exception {
+    cache.put("a", 1);
+    AtomicInteger loads = new AtomicInteger();
+    Map<String, Integer> values = singleFlight.get(Arrays.asList("a", "b", "b"), cache::get,
+            keys -> {
+              loads.addAndGet(keys.size());
+              keys.forEach(key -> cache.put(key, key.length() + 1));
+              return Collections.singletonMap("b", 2);
+            });
+    assertEquals(2, values.size());
+    assertEquals(Integer.valueOf(2), values.get("b"));
+    assertEquals(1, loads.get());
+    assertEquals(Integer.valueOf(2), singleFlight.get("b", cache::get, keys -> {
+      throw new AssertionError("A cached key is loaded again.");
+    }));
+  }
+
+  @Test(timeout = 10000)
+  public void testErrorReleasesJoiners() throws Exception {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch joining = new CountDownLatch(1);
+    CompletableFuture<Object> owner = CompletableFuture.supplyAsync(() -> {
+      try {
+        return singleFlight.get("k", cache::get, keys -> {
+          loading.countDown();
+          try {
+            joining.await();
+            // let the joiner claim or join the key before the error is thrown
+            Thread.sleep(100);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          throw new StackOverflowError();
+        });
+      } catch (AnalysisEngineProcessException e) {
+        return e;
+      }
+    });
+    loading.await();
+    try {
+      singleFlight.get("k", key -> {
+        joining.countDown();
+        return cache.get(key);
+      }, keys -> {
+        throw new AnalysisEngineProcessException();
+      });
+      fail();
+    } catch (AnalysisEngineProcessException e) {
+      // either the error of the owner, or the failure of a new load after the key is released
+    }
+    try {
+      owner.get(5, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof StackOverflowError);
+    }
+    // the key is released after the error, so it is loaded again
+    assertEquals(Integer.valueOf(3), singleFlight.get("k", cache::get,
+            keys -> Collections.singletonMap("k", 3)));
+  }
+
+}
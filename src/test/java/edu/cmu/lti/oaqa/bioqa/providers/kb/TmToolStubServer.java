@@ -0,0 +1,212 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.kb;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.StreamSupport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * <p>
+ *   A local stand-in for the tmTool Submit/Receive protocol used by {@link TmToolTransport}.
+ *   <tt>POST /{trigger}/Submit/</tt> returns a session id, and <tt>GET /{session}/Receive/</tt>
+ *   responds with 501 for the first <tt>pendingPolls</tt> polls, and then with the submitted
+ *   PubAnnotation objects (without any denotation) once, after which the session is gone (404).
+ * </p>
+ * <p>
+ *   The first <tt>unavailableSubmits</tt> submissions are answered with 503, and a submission is
+ *   answered with 429 if the trigger already has <tt>maxSessionsPerTrigger</tt> sessions that
+ *   have not been received.
+ * </p>
+ * <p>
+ *   It can also be run from {@link #main(String[])}, and used by {@link TmToolConceptProvider}
+ *   via <tt>url-prefix: http://localhost:{port}/</tt>.
+ * </p>
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class TmToolStubServer implements Closeable {
+
+  private static class Session {
+
+    final String trigger;
+
+    final String response;
+
+    final AtomicInteger polls = new AtomicInteger();
+
+    Session(String trigger, String response) {
+      this.trigger = trigger;
+      this.response = response;
+    }
+
+  }
+
+  private final HttpServer server;
+
+  private final int pendingPolls;
+
+  private final int maxSessionsPerTrigger;
+
+  private final AtomicInteger unavailableSubmits;
+
+  private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+  private final Map<String, AtomicInteger> trigger2sessions = new ConcurrentHashMap<>();
+
+  private final AtomicInteger sessionCount = new AtomicInteger();
+
+  final AtomicInteger submits = new AtomicInteger();
+
+  final AtomicInteger rejectedSubmits = new AtomicInteger();
+
+  final AtomicInteger receives = new AtomicInteger();
+
+  final AtomicInteger maxConcurrentSessions = new AtomicInteger();
+
+  public TmToolStubServer(int port, int pendingPolls, int maxSessionsPerTrigger,
+          int unavailableSubmits) throws IOException {
+    this.pendingPolls = pendingPolls;
+    this.maxSessionsPerTrigger = maxSessionsPerTrigger;
+    this.unavailableSubmits = new AtomicInteger(unavailableSubmits);
+    server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+    server.createContext("/", this::handle);
+    server.setExecutor(Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "tmtool-stub-server");
+      thread.setDaemon(true);
+      return thread;
+    }));
+    server.start();
+  }
+
+  public String getUrlPrefix() {
+    return "http://localhost:" + server.getAddress().getPort() + "/";
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String[] segs = exchange.getRequestURI().getPath().split("/");
+    if (segs.length == 3 && "Submit".equals(segs[2])
+            && "POST".equals(exchange.getRequestMethod())) {
+      handleSubmit(exchange, segs[1]);
+    } else if (segs.length == 3 && "Receive".equals(segs[2])) {
+      handleReceive(exchange, segs[1]);
+    } else {
+      respond(exchange, 400, "Bad request");
+    }
+  }
+
+  private void handleSubmit(HttpExchange exchange, String trigger) throws IOException {
+    String request = read(exchange.getRequestBody());
+    submits.incrementAndGet();
+    if (unavailableSubmits.getAndDecrement() > 0) {
+      respond(exchange, 503, "Service unavailable");
+      return;
+    }
+    AtomicInteger active = trigger2sessions.computeIfAbsent(trigger, t -> new AtomicInteger());
+    int count = active.incrementAndGet();
+    if (count > maxSessionsPerTrigger) {
+      active.decrementAndGet();
+      rejectedSubmits.incrementAndGet();
+      exchange.getResponseHeaders().add("Retry-After", "0");
+      respond(exchange, 429, "Too many requests");
+      return;
+    }
+    maxConcurrentSessions.accumulateAndGet(count, Math::max);
+    String session = trigger + "-" + sessionCount.incrementAndGet();
+    sessions.put(session, new Session(trigger, annotate(request)));
+    respond(exchange, 200, session);
+  }
+
+  private void handleReceive(HttpExchange exchange, String id) throws IOException {
+    receives.incrementAndGet();
+    Session session = sessions.get(id);
+    if (session == null) {
+      respond(exchange, 404, "No such session");
+    } else if (session.polls.incrementAndGet() <= pendingPolls) {
+      respond(exchange, 501, "Not ready");
+    } else if (sessions.remove(id, session)) {
+      trigger2sessions.get(session.trigger).decrementAndGet();
+      respond(exchange, 200, session.response);
+    } else {
+      respond(exchange, 404, "No such session");
+    }
+  }
+
+  /**
+   * @return the submitted PubAnnotation objects with an empty list of denotations, concatenated
+   *         with commas as the tmTool service does
+   */
+  static String annotate(String request) {
+    JsonArray inputs = new JsonParser().parse(request).getAsJsonArray();
+    return StreamSupport.stream(inputs.spliterator(), false).map(JsonElement::getAsJsonObject)
+            .peek(input -> input.add("denotations", new JsonArray())).map(JsonObject::toString)
+            .collect(joining(","));
+  }
+
+  private static String read(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int n;
+    while ((n = in.read(buffer)) != -1) {
+      out.write(buffer, 0, n);
+    }
+    return new String(out.toByteArray(), UTF_8);
+  }
+
+  private static void respond(HttpExchange exchange, int statusCode, String content)
+          throws IOException {
+    byte[] bytes = content.getBytes(UTF_8);
+    exchange.sendResponseHeaders(statusCode, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+
+  /**
+   * @param args the port, and optionally the number of pending polls (default 2) and the maximum
+   *             number of sessions per trigger (default 2)
+   */
+  public static void main(String[] args) throws IOException {
+    int port = Integer.parseInt(args[0]);
+    int pendingPolls = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+    int maxSessionsPerTrigger = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+    TmToolStubServer server = new TmToolStubServer(port, pendingPolls, maxSessionsPerTrigger, 0);
+    System.out.println("tmTool stub server listening at " + server.getUrlPrefix());
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.kb;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link TmToolTransport} against a {@link TmToolStubServer}.
+ *
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class TmToolTransportTest {
+
+  private static final String REQUEST = "[{\"sourcedb\":\"_DB_\",\"sourceid\":\"0\","
+          + "\"text\":\"aspirin\"}]";
+
+  private TmToolStubServer server;
+
+  private TmToolTransport transport;
+
+  @After
+  public void tearDown() throws IOException {
+    if (transport != null) transport.close();
+    if (server != null) server.close();
+  }
+
+  private void start(int pendingPolls, int maxSessionsPerTrigger, int unavailableSubmits,
+          int maxConcurrencyPerTrigger, int maxSubmitRetries, long timeout) throws IOException {
+    server = new TmToolStubServer(0, pendingPolls, maxSessionsPerTrigger, unavailableSubmits);
+    transport = new TmToolTransport(server.getUrlPrefix(), 8, maxConcurrencyPerTrigger,
+            maxSubmitRetries, 5, 20, timeout);
+  }
+
+  @Test
+  public void testPending() throws Exception {
+    start(3, 2, 0, 2, 0, 10000);
+    String response = transport.submit("tmChem", REQUEST).get();
+    assertEquals(TmToolStubServer.annotate(REQUEST), response);
+    assertEquals(1, server.submits.get());
+    assertEquals(4, server.receives.get());
+  }
+
+  @Test
+  public void testRetryUnavailable() throws Exception {
+    start(0, 2, 2, 2, 3, 10000);
+    assertEquals(TmToolStubServer.annotate(REQUEST), transport.submit("DNorm", REQUEST).get());
+    assertEquals(3, server.submits.get());
+  }
+
+  @Test
+  public void testRetriesExhausted() throws Exception {
+    start(0, 2, 2, 2, 1, 10000);
+    try {
+      transport.submit("DNorm", REQUEST).get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+    assertEquals(2, server.submits.get());
+  }
+
+  @Test
+  public void testConcurrencyPerTrigger() throws Exception {
+    start(2, 1, 0, 1, 0, 10000);
+    List<CompletableFuture<String>> futures = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      futures.add(transport.submit("tmVar", REQUEST));
+    }
+    for (CompletableFuture<String> future : futures) {
+      assertEquals(TmToolStubServer.annotate(REQUEST), future.get());
+    }
+    assertEquals(0, server.rejectedSubmits.get());
+    assertEquals(1, server.maxConcurrentSessions.get());
+  }
+
+  @Test
+  public void testRateLimited() throws Exception {
+    start(2, 1, 0, 4, 100, 10000);
+    List<CompletableFuture<String>> futures = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      futures.add(transport.submit("GNormPlus", REQUEST));
+    }
+    for (CompletableFuture<String> future : futures) {
+      assertEquals(TmToolStubServer.annotate(REQUEST), future.get());
+    }
+    assertTrue(server.rejectedSubmits.get() > 0);
+    assertEquals(1, server.maxConcurrentSessions.get());
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    start(Integer.MAX_VALUE, 2, 0, 2, 0, 100);
+    try {
+      transport.submit("tmChem", REQUEST).get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof TimeoutException);
+    }
+  }
+
+}
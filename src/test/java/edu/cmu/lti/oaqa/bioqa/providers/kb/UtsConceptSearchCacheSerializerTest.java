@@ -0,0 +1,107 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package edu.cmu.lti.oaqa.bioqa.providers.kb;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class UtsConceptSearchCacheSerializerTest {
+
+  private final UtsConceptSearchCacheSerializer serializer = new UtsConceptSearchCacheSerializer();
+
+  @Test
+  public void testPositive() throws IOException {
+    UtsConceptSearchCacheEntry entry = roundTrip(
+            new UtsConceptSearchCacheEntry("Myocardial Infarction", "UMLS:C0027051",
+                    new int[] {0, 127, 128, 70000}));
+    assertEquals(UtsConceptSearchCacheEntry.Kind.POSITIVE, entry.getKind());
+    assertEquals("Myocardial Infarction", entry.getName());
+    assertEquals("UMLS:C0027051", entry.getId());
+    assertArrayEquals(new int[] {0, 127, 128, 70000}, entry.getTypeIndexes());
+  }
+
+  @Test
+  public void testPositiveWithoutNameOrId() throws IOException {
+    UtsConceptSearchCacheEntry entry = roundTrip(
+            new UtsConceptSearchCacheEntry(null, null, new int[] {3}));
+    assertEquals(UtsConceptSearchCacheEntry.Kind.POSITIVE, entry.getKind());
+    assertNull(entry.getName());
+    assertNull(entry.getId());
+    assertArrayEquals(new int[] {3}, entry.getTypeIndexes());
+  }
+
+  @Test
+  public void testNegativeAndError() throws IOException {
+    UtsConceptSearchCacheEntry negative = roundTrip(UtsConceptSearchCacheEntry.negative(42L));
+    assertTrue(negative.isNegative());
+    assertEquals(42L, negative.getTimestamp());
+    UtsConceptSearchCacheEntry error = roundTrip(UtsConceptSearchCacheEntry.error(43L));
+    assertTrue(error.isError());
+    assertEquals(43L, error.getTimestamp());
+  }
+
+  @Test
+  public void testVersion2Positive() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(2);
+    out.writeByte(0);
+    out.writeUTF("aspirin");
+    out.writeByte(1);
+    out.writeByte(5);
+    UtsConceptSearchCacheEntry entry = deserialize(bytes.toByteArray());
+    assertEquals("aspirin", entry.getName());
+    assertNull(entry.getId());
+    assertArrayEquals(new int[] {5}, entry.getTypeIndexes());
+  }
+
+  @Test
+  public void testVersion1Negative() throws IOException {
+    UtsConceptSearchCacheEntry entry = deserialize(new byte[] {1, 1});
+    assertTrue(entry.isNegative());
+    assertEquals(0L, entry.getTimestamp());
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnsupportedVersion() throws IOException {
+    deserialize(new byte[] {(byte) (UtsConceptSearchCacheSerializer.VERSION + 1), 0});
+  }
+
+  private UtsConceptSearchCacheEntry roundTrip(UtsConceptSearchCacheEntry entry)
+          throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    serializer.serialize(new DataOutputStream(bytes), entry);
+    return deserialize(bytes.toByteArray());
+  }
+
+  private UtsConceptSearchCacheEntry deserialize(byte[] bytes) throws IOException {
+    return serializer.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)),
+            bytes.length);
+  }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Open Advancement Question Answering (OAQA) Project Copyright 2016 Carnegie Mellon University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package edu.cmu.lti.oaqa.bioqa.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author <a href="mailto:agent@local">agent</a> created on 10/18/26
+ */
+public class StringPoolTest {
+
+  @Test
+  public void testIntern() {
+    StringPool pool = new StringPool(10);
+    String first = new String("C0027051");
+    String second = new String("C0027051");
+    assertSame(first, pool.intern(first));
+    assertSame(first, pool.intern(second));
+    assertEquals(1, pool.size());
+    assertNull(pool.intern(null));
+  }
+
+  @Test
+  public void testFullPoolKeepsPooledStrings() {
+    StringPool pool = new StringPool(1);
+    String pooled = pool.intern(new String("dsyn"));
+    String other = new String("gngm");
+    assertSame(other, pool.intern(other));
+    assertNotSame(other, pool.intern(new String("gngm")));
+    assertSame(pooled, pool.intern(new String("dsyn")));
+    assertEquals(1, pool.size());
+  }
+
+  @Test
+  public void testDisabled() {
+    StringPool pool = new StringPool(0);
+    String string = new String("dsyn");
+    pool.intern(string);
+    String other = new String("dsyn");
+    assertSame(other, pool.intern(other));
+    assertEquals(0, pool.size());
+  }
+
+}